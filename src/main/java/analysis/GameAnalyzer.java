@@ -6,8 +6,24 @@ import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import book.PolyglotKey;
+import endgame.Bitbases;
+import endgame.Wdl;
+import engine.Position;
+import uci.EngineProfile;
+import uci.EnginePool;
+import uci.EvaluationCache;
+import uci.PersistentEvaluationCache;
+import uci.SearchLimits;
 import uci.StockfishClient;
+import uci.UciPosition;
 
 public class GameAnalyzer {
 
@@ -22,10 +38,20 @@ public class GameAnalyzer {
         public final double loss;
         public final String severity;
         public final String qualityTag;
+        public final List<StockfishClient.PvLine> alternatives;
+        public final boolean onlyMove;
 
         public Entry(int plyIndex, boolean isWhite, String playedMove, String bestMove,
                      List<String> bestLine, double evalBefore, double evalAfter,
                      double loss, String severity, String qualityTag) {
+            this(plyIndex, isWhite, playedMove, bestMove, bestLine, evalBefore, evalAfter,
+                loss, severity, qualityTag, List.of(), false);
+        }
+
+        public Entry(int plyIndex, boolean isWhite, String playedMove, String bestMove,
+                     List<String> bestLine, double evalBefore, double evalAfter,
+                     double loss, String severity, String qualityTag,
+                     List<StockfishClient.PvLine> alternatives, boolean onlyMove) {
             this.plyIndex = plyIndex;
             this.isWhite = isWhite;
             this.playedMove = playedMove;
@@ -36,57 +62,549 @@ public class GameAnalyzer {
             this.loss = loss;
             this.severity = severity;
             this.qualityTag = qualityTag;
+            this.alternatives = alternatives == null ? List.of() : List.copyOf(alternatives);
+            this.onlyMove = onlyMove;
         }
     }
 
-    private final Path enginePath;
+    /**
+     * A best move counts as the "only" move when the second-best line is at
+     * least this much worse, in centipawns.
+     */
+    private static final int ONLY_MOVE_GAP_CP = 150;
+
+    /**
+     * Evaluation, in pawns, given to a solved endgame win; well past the
+     * blunder threshold, so throwing one away into a draw is flagged.
+     */
+    private static final double SOLVED_WIN = 10.0;
+
+    /**
+     * Solved endgames only need the engine for its best move, which a
+     * shallow search finds at once. So do positions the static evaluation
+     * already calls decided.
+     */
+    private static final SearchLimits SHALLOW_LIMITS = SearchLimits.depth(14);
+
+    /**
+     * Static evaluation, in centipawns, past which the game is decided and a
+     * full-length search would not change the review.
+     */
+    private static final int DECIDED_CP = 1500;
+
+    private static final String START_PLACEMENT = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR";
+
+    /**
+     * Shared by every review, so re-analysing a game (or the opening it
+     * shares with the last one) costs no engine time; backed by the on-disk
+     * cache so that also holds across restarts.
+     */
+    private static EvaluationCache reviewCache;
+
+    private static final AtomicInteger WORKER_THREADS = new AtomicInteger();
+
+    /**
+     * In two-tier mode, an eval swing (in pawns) or mate that makes a move
+     * worth a second look even if the time for it has to be borrowed from
+     * later in the game.
+     */
+    private static final double MAJOR_SWING = 2.0;
+
+    /**
+     * A smaller swing, or a played move that is not the engine's first
+     * choice, gets a second look while the game's budget keeps pace.
+     */
+    private static final double MINOR_SWING = 0.5;
+
+    private final List<String> engineCommand;
     private final Duration thinkTime;
+    private final int multiPv;
+    private final int engines;
+    private Duration firstPassTime;
+    private Duration gameBudget;
+    private EngineProfile engineProfile;
 
     public GameAnalyzer(Path enginePath, Duration thinkTime) {
-        this.enginePath = enginePath;
+        this(enginePath, thinkTime, EngineProfile.forUseCase(EngineProfile.UseCase.BACKGROUND_ANALYSIS).multiPv);
+    }
+
+    /**
+     * @param multiPv number of candidate lines searched per position; the
+     *                alternatives feed the only-move and Great/Brilliant checks.
+     */
+    public GameAnalyzer(Path enginePath, Duration thinkTime, int multiPv) {
+        this(enginePath == null ? null : List.of(enginePath.toAbsolutePath().toString()), thinkTime, multiPv);
+    }
+
+    /**
+     * Runs the review against an arbitrary engine command line, e.g. a
+     * {@link uci.FakeUciEngine} for offline load tests.
+     */
+    public GameAnalyzer(List<String> engineCommand, Duration thinkTime, int multiPv) {
+        this(engineCommand, thinkTime, multiPv, defaultEngineCount());
+    }
+
+    /**
+     * @param engines how many engine processes search positions of the game
+     *                at the same time; the background-analysis share of the
+     *                machine is split between them.
+     */
+    public GameAnalyzer(List<String> engineCommand, Duration thinkTime, int multiPv, int engines) {
+        this.engineCommand = engineCommand == null ? null : List.copyOf(engineCommand);
         this.thinkTime = thinkTime;
+        this.multiPv = Math.max(1, multiPv);
+        this.engines = Math.max(1, engines);
+    }
+
+    /**
+     * Switches to two-tier reviews: every position is first searched for
+     * {@code firstPass}, then the positions around critical moves (eval
+     * swings, a different best move, mate) are searched again for the full
+     * think time, until {@code gameBudget} of extra engine time is spent.
+     * Moves get their share of the budget in game order; a big swing or a
+     * mate may borrow ahead. A null budget allows a quarter of what a
+     * fixed-time review of the game would cost.
+     */
+    public void setAdaptiveThinkTime(Duration firstPass, Duration gameBudget) {
+        this.firstPassTime = firstPass;
+        this.gameBudget = gameBudget;
+    }
+
+    /**
+     * Gives every engine of this analyzer {@code profile} instead of a share
+     * of the background-analysis profile, e.g. a batch worker's.
+     */
+    public void setEngineProfile(EngineProfile profile) {
+        this.engineProfile = profile;
+    }
+
+    /**
+     * One single-threaded engine per core of the background-analysis share:
+     * independent positions scale almost linearly across processes, while
+     * one engine's own threads do not.
+     */
+    public static int defaultEngineCount() {
+        return EngineProfile.forUseCase(EngineProfile.UseCase.BACKGROUND_ANALYSIS).threads;
+    }
+
+    public static synchronized EvaluationCache reviewCache() {
+        if (reviewCache == null) {
+            reviewCache = EvaluationCache.withMegabytes(64, PersistentEvaluationCache.shared());
+        }
+        return reviewCache;
     }
 
     public Summary analyze(List<String> moves) throws IOException {
-        List<Entry> result = new ArrayList<>();
-        if (enginePath == null) {
-            return new Summary(result);
-        }
-        try (StockfishClient client = new StockfishClient(enginePath)) {
-            StockfishClient.AnalysisResult before = client.analyzePosition("", thinkTime);
-            List<String> history = new ArrayList<>();
-
-            for (int i = 0; i < moves.size(); i++) {
-                String move = moves.get(i);
-                boolean whiteMove = (i % 2 == 0);
-
-                double evalBefore = before.scoreCp / 100.0;
-                String bestMove = before.bestMove;
-                List<String> pv = before.principalVariation;
-                history.add(move);
-
-                String prefix = String.join(" ", history);
-                StockfishClient.AnalysisResult after = client.analyzePosition(prefix, thinkTime);
-                double evalAfter = after.scoreCp / 100.0;
-
-                double delta = (evalAfter - evalBefore) * (whiteMove ? 1 : -1);
-                double loss = -delta;
-                double improvement = -loss;
-                boolean playedBest = bestMove != null && bestMove.equals(move);
-
-                String severity = classify(loss);
-                if (before.mate != null) {
-                    severity = "Mate in " + before.mate;
+        return analyze(null, moves);
+    }
+
+    /**
+     * Reviews {@code moves} played from {@code startFen} ({@code null} for the
+     * standard start position).
+     */
+    public Summary analyze(String startFen, List<String> moves) throws IOException {
+        return analyze(startFen, moves, null);
+    }
+
+    /**
+     * Like {@link #analyze(String, List)}, also handing every entry to
+     * {@code listener} as soon as both of its positions are searched, in ply
+     * order, so a review can be shown while the rest of the game is still
+     * being analysed.
+     */
+    public Summary analyze(String startFen, List<String> moves, Listener listener) throws IOException {
+        if (engineCommand == null) {
+            return new Summary(new ArrayList<>());
+        }
+        int sideOffset = whiteToMoveIn(startFen) ? 0 : 1;
+
+        // every position of the game, with what is known before searching it
+        List<UciPosition> positions = new ArrayList<>(moves.size() + 1);
+        boolean[] shallow = new boolean[moves.size() + 1];
+        Double[] solved = new Double[moves.size() + 1];
+        UciPosition position = UciPosition.fromFen(startFen);
+        Bitbases bitbases = Bitbases.ifLoaded();
+        char[] squares = bitbases == null ? null
+            : PolyglotKey.squaresFromFen(startFen == null ? START_PLACEMENT : startFen.trim().split("\\s+")[0]);
+        Position staticPosition = staticPosition(startFen);
+        for (int i = 0; ; i++) {
+            solved[i] = solvedEval(bitbases, squares, (i + sideOffset) % 2 == 0);
+            positions.add(position.copy());
+            shallow[i] = solved[i] != null || isDecided(staticPosition);
+            if (i == moves.size()) {
+                break;
+            }
+            position.push(moves.get(i));
+            if (squares != null) {
+                applyMove(squares, moves.get(i));
+            }
+            staticPosition = playStatic(staticPosition, moves.get(i));
+        }
+
+        Review review = new Review(moves, sideOffset, solved, shallow, listener);
+        searchAll(positions, review);
+        return review.summary();
+    }
+
+    /**
+     * Told about each reviewed move, from an analysis thread that waits for
+     * it; hand slow work off to another thread.
+     */
+    public interface Listener {
+        /**
+         * @param soFar the summary of every move reviewed up to and including
+         *              {@code entry}, i.e. the running accuracy
+         */
+        void onEntry(Entry entry, Summary soFar);
+    }
+
+    /**
+     * The searches of one review and the queue of those still to run.
+     * Results may come back in any order; entry {@code i} is built from the
+     * positions before and after move {@code i} once neither can change any
+     * more, and entries are published in ply order.
+     *
+     * <p>A job is a position index shifted left by one, with the low bit set
+     * for a first-pass search, so the queue runs positions lowest ply first
+     * and a second look before the first pass of the same position.</p>
+     */
+    private final class Review {
+        private final List<String> moves;
+        private final int sideOffset;
+        private final Double[] solved;
+        private final boolean[] shallow;
+        private final Listener listener;
+        private final StockfishClient.AnalysisResult[] results;
+        private final boolean[] decided;
+        private final boolean[] deepQueued;
+        private final boolean[] deepDone;
+        private final PriorityQueue<Integer> jobs = new PriorityQueue<>();
+        private final List<Entry> entries = new ArrayList<>();
+        private final boolean adaptive;
+        private final long budgetMillis;
+        private long deepMillisQueued;
+        private long engineMillis;
+        private int running;
+        private boolean failed;
+
+        Review(List<String> moves, int sideOffset, Double[] solved, boolean[] shallow, Listener listener) {
+            this.moves = moves;
+            this.sideOffset = sideOffset;
+            this.solved = solved;
+            this.shallow = shallow;
+            this.listener = listener;
+            int positions = moves.size() + 1;
+            this.results = new StockfishClient.AnalysisResult[positions];
+            this.decided = new boolean[moves.size()];
+            this.deepQueued = new boolean[positions];
+            this.deepDone = new boolean[positions];
+            this.adaptive = firstPassTime != null && firstPassTime.compareTo(thinkTime) < 0;
+            this.budgetMillis = gameBudget != null ? gameBudget.toMillis() : thinkTime.toMillis() * positions / 4;
+            for (int k = 0; k < positions; k++) {
+                jobs.add(k << 1 | 1);
+            }
+        }
+
+        /**
+         * The next job, waiting while others are running and may still queue
+         * a second look; -1 when the review is finished or has failed.
+         */
+        synchronized int take() throws InterruptedException {
+            while (!failed && jobs.isEmpty() && running > 0) {
+                wait();
+            }
+            if (failed || jobs.isEmpty()) {
+                return -1;
+            }
+            running++;
+            return jobs.poll();
+        }
+
+        SearchLimits limitsFor(int job) {
+            if (shallow[job >> 1]) {
+                return SHALLOW_LIMITS;
+            }
+            boolean firstPass = (job & 1) != 0;
+            return SearchLimits.moveTime(firstPass && adaptive ? firstPassTime : thinkTime);
+        }
+
+        synchronized void fail() {
+            failed = true;
+            notifyAll();
+        }
+
+        synchronized void store(int job, StockfishClient.AnalysisResult result, long elapsedMillis) {
+            running--;
+            engineMillis += elapsedMillis;
+            int index = job >> 1;
+            if ((job & 1) == 0) {
+                results[index] = result;
+                deepDone[index] = true;
+            } else if (results[index] == null) {
+                results[index] = result;
+            }
+            for (int i = Math.max(0, index - 1); i <= Math.min(index, moves.size() - 1); i++) {
+                if (!decided[i] && results[i] != null && results[i + 1] != null) {
+                    decided[i] = true;
+                    if (adaptive) {
+                        scheduleSecondLook(i);
+                    }
+                }
+            }
+            publishReady();
+            notifyAll();
+        }
+
+        /**
+         * Queues deeper searches of the positions around move {@code i} when
+         * the first pass calls it critical and the budget allows.
+         */
+        private void scheduleSecondLook(int i) {
+            StockfishClient.AnalysisResult before = results[i];
+            StockfishClient.AnalysisResult after = results[i + 1];
+            double swing = Math.abs(eval(i + 1, after) - eval(i, before));
+            boolean major = swing >= MAJOR_SWING || before.mate != null || after.mate != null;
+            boolean minor = swing >= MINOR_SWING || (before.bestMove != null && !before.bestMove.equals(moves.get(i)));
+            if (!major && !minor) {
+                return;
+            }
+            long cost = 0;
+            for (int k = i; k <= i + 1; k++) {
+                if (!deepQueued[k] && !shallow[k]) {
+                    cost += thinkTime.toMillis();
                 }
+            }
+            long allowance = major ? budgetMillis : budgetMillis * (i + 1) / moves.size();
+            if (cost == 0 || deepMillisQueued + cost > allowance) {
+                return;
+            }
+            deepMillisQueued += cost;
+            for (int k = i; k <= i + 1; k++) {
+                if (!deepQueued[k] && !shallow[k]) {
+                    deepQueued[k] = true;
+                    jobs.add(k << 1);
+                }
+            }
+        }
 
-                String tag = determineQualityTag(playedBest, loss, improvement, severity);
+        /**
+         * A position is final once both moves next to it are decided and any
+         * second look at it has come back.
+         */
+        private boolean isFinal(int k) {
+            return (k == 0 || decided[k - 1]) && (k == moves.size() || decided[k]) && (!deepQueued[k] || deepDone[k]);
+        }
 
-                result.add(new Entry(i, whiteMove, move, bestMove, pv, evalBefore, evalAfter, loss, severity, tag));
+        private void publishReady() {
+            int next = entries.size();
+            while (next < moves.size() && decided[next] && isFinal(next) && isFinal(next + 1)) {
+                Entry entry = buildEntry(next);
+                entries.add(entry);
+                if (listener != null) {
+                    listener.onEntry(entry, new Summary(List.copyOf(entries)));
+                }
+                next++;
+            }
+        }
+
+        synchronized Summary summary() {
+            return new Summary(new ArrayList<>(entries), engineMillis);
+        }
 
-                before = after;
+        /**
+         * Position {@code index} in pawns from White's side, like
+         * {@link #solvedEval}; the engine scores for the side to move.
+         */
+        private double eval(int index, StockfishClient.AnalysisResult result) {
+            if (solved[index] != null) {
+                return solved[index];
             }
+            double score = result.scoreCp / 100.0;
+            return (index + sideOffset) % 2 == 0 ? score : -score;
+        }
+
+        private Entry buildEntry(int i) {
+            String move = moves.get(i);
+            boolean whiteMove = ((i + sideOffset) % 2 == 0);
+            StockfishClient.AnalysisResult before = results[i];
+            StockfishClient.AnalysisResult after = results[i + 1];
+
+            double evalBefore = eval(i, before);
+            double evalAfter = eval(i + 1, after);
+            String bestMove = before.bestMove;
+            List<String> pv = before.principalVariation;
+
+            double delta = (evalAfter - evalBefore) * (whiteMove ? 1 : -1);
+            double loss = -delta;
+            double improvement = -loss;
+            boolean playedBest = bestMove != null && bestMove.equals(move);
+            boolean onlyMove = before.gapToSecondBest() != Integer.MAX_VALUE
+                && before.gapToSecondBest() >= ONLY_MOVE_GAP_CP;
+
+            String severity = classify(loss);
+            if (before.mate != null) {
+                severity = "Mate in " + before.mate;
+            }
+
+            String tag = determineQualityTag(playedBest, onlyMove, loss, improvement, severity);
+
+            return new Entry(i, whiteMove, move, bestMove, pv, evalBefore, evalAfter, loss, severity, tag,
+                before.lines, playedBest && onlyMove);
         }
-        return new Summary(result);
+    }
+
+    /**
+     * Runs the review's searches on up to {@link #engines} engine processes,
+     * each taking the next job from the review's queue until it is empty.
+     */
+    private void searchAll(List<UciPosition> positions, Review review) throws IOException {
+        int workers = Math.min(engines, positions.size());
+        EngineProfile profile = engineProfile != null ? engineProfile
+            : EngineProfile.forUseCase(EngineProfile.UseCase.BACKGROUND_ANALYSIS, workers);
+        if (workers == 1) {
+            searchPositions(profile, positions, review);
+            return;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "game-analyzer-" + WORKER_THREADS.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<?>> futures = new ArrayList<>(workers);
+            for (int w = 0; w < workers; w++) {
+                futures.add(pool.submit(() -> {
+                    searchPositions(profile, positions, review);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while analysing", e);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * One worker of {@link #searchAll}, on an engine borrowed from the
+     * {@link EnginePool#shared shared pool} for the whole review, so
+     * back-to-back reviews skip the engine's startup. The pool starts each
+     * loan with {@code ucinewgame}; an engine whose search failed is not
+     * handed out again.
+     */
+    private void searchPositions(EngineProfile profile, List<UciPosition> positions, Review review)
+        throws IOException {
+        try (EnginePool.Lease lease = EnginePool.shared(engineCommand).borrow(profile)) {
+            StockfishClient client = lease.client();
+            client.setEvaluationCache(reviewCache());
+            try {
+                int job;
+                while ((job = review.take()) >= 0) {
+                    long started = System.nanoTime();
+                    StockfishClient.AnalysisResult result = client.analyzeLines(positions.get(job >> 1),
+                        review.limitsFor(job), multiPv, null);
+                    review.store(job, result, (System.nanoTime() - started) / 1_000_000);
+                }
+            } catch (IOException | RuntimeException | InterruptedException e) {
+                lease.discard();
+                throw e;
+            }
+        } catch (IOException | RuntimeException e) {
+            // the other workers stop taking jobs
+            review.fail();
+            throw e;
+        } catch (InterruptedException e) {
+            review.fail();
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while analysing", e);
+        }
+    }
+
+    /**
+     * Exact evaluation, in pawns from White's side, when the position is a
+     * solved endgame; null otherwise.
+     */
+    private static Double solvedEval(Bitbases bitbases, char[] squares, boolean whiteToMove) {
+        Wdl wdl = bitbases == null ? null : bitbases.probe(squares, whiteToMove);
+        if (wdl == null) {
+            return null;
+        }
+        double value = wdl == Wdl.WIN ? SOLVED_WIN : wdl == Wdl.LOSS ? -SOLVED_WIN : 0;
+        return whiteToMove ? value : -value;
+    }
+
+    /**
+     * The built-in engine's view of the game, for its incremental static
+     * evaluation; null once a position or move is not one it understands.
+     */
+    private static Position staticPosition(String startFen) {
+        try {
+            return Position.fromFen(startFen == null ? Position.START_FEN : startFen);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static Position playStatic(Position position, String move) {
+        if (position == null) {
+            return null;
+        }
+        int parsed = position.parseUciMove(move);
+        if (parsed == Position.NO_MOVE) {
+            return null;
+        }
+        position.makeMove(parsed);
+        return position;
+    }
+
+    /**
+     * Cheap pre-filter: about a queen and a rook ahead on material and
+     * squares alone, the result no longer depends on the search length.
+     */
+    private static boolean isDecided(Position position) {
+        return position != null && Math.abs(position.evaluation()) >= DECIDED_CP;
+    }
+
+    /**
+     * Plays a UCI move on an a1 = 0 square array, including castling, en
+     * passant and promotion.
+     */
+    private static void applyMove(char[] squares, String move) {
+        int from = (move.charAt(1) - '1') * 8 + (move.charAt(0) - 'a');
+        int to = (move.charAt(3) - '1') * 8 + (move.charAt(2) - 'a');
+        char piece = squares[from];
+        boolean white = Character.isUpperCase(piece);
+        if ((piece == 'P' || piece == 'p') && (from & 7) != (to & 7) && squares[to] == 0) {
+            squares[(from & ~7) | (to & 7)] = 0;
+        }
+        if ((piece == 'K' || piece == 'k') && Math.abs(to - from) == 2) {
+            int rookFrom = to > from ? from + 3 : from - 4;
+            squares[(from + to) / 2] = squares[rookFrom];
+            squares[rookFrom] = 0;
+        }
+        if (move.length() > 4) {
+            char promoted = move.charAt(4);
+            piece = white ? Character.toUpperCase(promoted) : promoted;
+        }
+        squares[from] = 0;
+        squares[to] = piece;
+    }
+
+    private static boolean whiteToMoveIn(String fen) {
+        if (fen == null) {
+            return true;
+        }
+        String[] parts = fen.trim().split("\\s+");
+        return parts.length < 2 || !"b".equals(parts[1]);
     }
 
     public static final class Summary {
@@ -102,9 +620,19 @@ public class GameAnalyzer {
         public final double blackAccuracy;
         public final int totalMoves;
         public final List<Entry> entries;
+        /**
+         * Wall-clock time the engines spent searching for this review,
+         * summed over engines; 0 when unknown.
+         */
+        public final long engineMillis;
 
         public Summary(List<Entry> entries) {
+            this(entries, 0);
+        }
+
+        public Summary(List<Entry> entries, long engineMillis) {
             this.entries = entries;
+            this.engineMillis = engineMillis;
             this.totalMoves = entries.size();
             this.avgLoss = entries.stream().mapToDouble(e -> Math.max(0, e.loss)).average().orElse(0);
             this.inaccuracies = (int) entries.stream().filter(e -> "Inaccuracy".equals(e.severity)).count();
@@ -148,7 +676,7 @@ public class GameAnalyzer {
         return "Good";
     }
 
-    private String determineQualityTag(boolean playedBest, double loss, double improvement, String severity) {
+    private String determineQualityTag(boolean playedBest, boolean onlyMove, double loss, double improvement, String severity) {
         if (severity != null && severity.startsWith("Mate")) {
             return "Mate";
         }
@@ -157,7 +685,7 @@ public class GameAnalyzer {
         if (playedBest && absGain >= 1.5) {
             return "Brilliant";
         }
-        if (playedBest && absGain >= 0.5) {
+        if (playedBest && (absGain >= 0.5 || onlyMove)) {
             return "Great";
         }
         if (playedBest) {
@@ -29,6 +29,9 @@ public final class GameReviewFormatter {
                 sb.append(" (loss ").append(fmt(entry.loss)).append(")");
             }
             sb.append(" | Best: ").append(entry.bestMove == null ? "n/a" : entry.bestMove);
+            if (entry.onlyMove) {
+                sb.append(" | Only move");
+            }
             if (!entry.bestLine.isEmpty()) {
                 sb.append(" | Line: ").append(String.join(" ", limitPv(entry.bestLine, 6)));
             }
@@ -0,0 +1,272 @@
+package analysis;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Consumer;
+
+import uci.EngineProfile;
+import uci.EngineRestartedException;
+import uci.SearchInfo;
+import uci.SearchInfoListener;
+import uci.SearchLimits;
+import uci.StockfishClient;
+import uci.UciPosition;
+
+/**
+ * Keeps an engine of its own analysing the current position of a live game
+ * with {@code go infinite}, for an evaluation bar that deepens while the
+ * player thinks.
+ *
+ * <p>{@link #analyze} stops whatever is running and starts on the new
+ * position; {@link #pause} only stops. Updates are delivered at most once per
+ * {@code updateInterval}, on the evaluator's own thread, and carry the
+ * sequence number {@link #analyze} returned so a late update for an old
+ * position can be told apart. The engine is separate from the one playing,
+ * with its own {@link EngineProfile.UseCase#LIVE_EVALUATION} share of the
+ * machine, adjustable with {@link #setThreads}.</p>
+ */
+public final class LiveEvaluator implements Closeable {
+
+    /**
+     * One evaluation of the analysed position, from White's side.
+     */
+    public static final class Update {
+        /** What {@link #analyze} returned for the position. */
+        public final long sequence;
+        public final int depth;
+        /** Centipawns for White; meaningless when {@link #whiteMate} is set. */
+        public final int whiteCp;
+        /** Moves to mate, positive when White mates; null if none. */
+        public final Integer whiteMate;
+        public final String bestMove;
+
+        Update(long sequence, int depth, int whiteCp, Integer whiteMate, String bestMove) {
+            this.sequence = sequence;
+            this.depth = depth;
+            this.whiteCp = whiteCp;
+            this.whiteMate = whiteMate;
+            this.bestMove = bestMove;
+        }
+    }
+
+    private final List<String> engineCommand;
+    private final Consumer<Update> consumer;
+    private final long intervalNanos;
+    private final Object lock = new Object();
+    private final Thread worker;
+    private StockfishClient client;
+    private int threads;
+    /** The position to analyse; null while paused. */
+    private UciPosition requested;
+    private boolean requestedWhiteToMove;
+    private long sequence;
+    /** The sequence number the running (or last) search started with. */
+    private long searchedSequence;
+    private boolean searching;
+    private boolean closed;
+
+    public LiveEvaluator(List<String> engineCommand, Duration updateInterval, Consumer<Update> consumer) {
+        this.engineCommand = List.copyOf(engineCommand);
+        this.consumer = consumer;
+        this.intervalNanos = Math.max(0, updateInterval.toNanos());
+        this.threads = EngineProfile.forUseCase(EngineProfile.UseCase.LIVE_EVALUATION).threads;
+        this.worker = new Thread(this::run, "live-evaluation");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Starts analysing {@code position} (copied), stopping the search of the
+     * previous one.
+     *
+     * @return the sequence number of this position's updates
+     */
+    public long analyze(UciPosition position, boolean whiteToMove) {
+        synchronized (lock) {
+            requested = position.copy();
+            requestedWhiteToMove = whiteToMove;
+            sequence++;
+            stopRunningSearch();
+            lock.notifyAll();
+            return sequence;
+        }
+    }
+
+    /**
+     * Stops analysing until the next {@link #analyze}, e.g. while the playing
+     * engine thinks or a game is reviewed.
+     */
+    public void pause() {
+        synchronized (lock) {
+            requested = null;
+            sequence++;
+            stopRunningSearch();
+        }
+    }
+
+    /**
+     * Engine threads for the searches that follow; the CPU the evaluation
+     * may take from the playing engine. A running search restarts with the
+     * new setting.
+     */
+    public void setThreads(int threads) {
+        synchronized (lock) {
+            if (this.threads == Math.max(1, threads)) {
+                return;
+            }
+            this.threads = Math.max(1, threads);
+            // same position, new sequence: the worker searches it again
+            sequence++;
+            stopRunningSearch();
+            lock.notifyAll();
+        }
+    }
+
+    public int threads() {
+        synchronized (lock) {
+            return threads;
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            requested = null;
+            stopRunningSearch();
+            lock.notifyAll();
+        }
+        worker.interrupt();
+    }
+
+    private void stopRunningSearch() {
+        if (!searching || client == null) {
+            return;
+        }
+        try {
+            client.stopInfinite();
+        } catch (IOException e) {
+            // the search loop sees the failure too
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                UciPosition position;
+                boolean whiteToMove;
+                long current;
+                int wantedThreads;
+                synchronized (lock) {
+                    // a search that ended on its own (mate or stalemate) is not repeated
+                    while (!closed && (requested == null || searchedSequence == sequence)) {
+                        lock.wait();
+                    }
+                    if (closed) {
+                        break;
+                    }
+                    position = requested;
+                    whiteToMove = requestedWhiteToMove;
+                    current = sequence;
+                    searchedSequence = current;
+                    wantedThreads = threads;
+                    searching = true;
+                }
+                try {
+                    search(position, whiteToMove, current, wantedThreads);
+                } finally {
+                    synchronized (lock) {
+                        searching = false;
+                        if (client != null) {
+                            // a stop that came too late for the search that just ended
+                            client.clearQueuedSignal();
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            // closed
+        } finally {
+            closeClient();
+        }
+    }
+
+    private void search(UciPosition position, boolean whiteToMove, long current, int threads)
+        throws InterruptedException {
+        try {
+            if (client == null) {
+                StockfishClient started = new StockfishClient(engineCommand);
+                started.setHashMb(EngineProfile.forUseCase(EngineProfile.UseCase.LIVE_EVALUATION).hashMb);
+                synchronized (lock) {
+                    client = started;
+                    if (current != sequence) {
+                        // moved on while the engine was starting, before a stop could reach it
+                        return;
+                    }
+                }
+            }
+            client.setThreads(threads);
+            client.analyzeLines(position, SearchLimits.infinite(), 1, new Throttle(current, whiteToMove));
+        } catch (EngineRestartedException e) {
+            // the client has restarted the engine; the next position starts afresh
+        } catch (IOException e) {
+            System.err.println("Live evaluation failed: " + e.getMessage());
+            closeClient();
+            Thread.sleep(1000);
+        }
+    }
+
+    private void closeClient() {
+        StockfishClient current;
+        synchronized (lock) {
+            current = client;
+            client = null;
+        }
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Forwards the main line at most once per interval; lines in between are
+     * not even parsed into {@link SearchInfo}s.
+     */
+    private final class Throttle implements SearchInfoListener {
+        private final long sequence;
+        private final boolean whiteToMove;
+        private long lastPublishNanos;
+
+        Throttle(long sequence, boolean whiteToMove) {
+            this.sequence = sequence;
+            this.whiteToMove = whiteToMove;
+            this.lastPublishNanos = System.nanoTime() - intervalNanos;
+        }
+
+        @Override
+        public boolean wantsInfo(int multiPv, int depth, long nowNanos) {
+            return multiPv <= 1 && nowNanos - lastPublishNanos >= intervalNanos;
+        }
+
+        @Override
+        public void onInfo(SearchInfo info) {
+            if (info.lowerBound || info.upperBound || info.principalVariation.isEmpty()) {
+                return;
+            }
+            synchronized (lock) {
+                if (sequence != LiveEvaluator.this.sequence) {
+                    // still reporting after the stop for a newer position
+                    return;
+                }
+            }
+            lastPublishNanos = System.nanoTime();
+            int sign = whiteToMove ? 1 : -1;
+            consumer.accept(new Update(sequence, info.depth, sign * info.scoreCp,
+                info.mate == null ? null : sign * info.mate, info.principalVariation.get(0)));
+        }
+    }
+}
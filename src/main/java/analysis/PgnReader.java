@@ -0,0 +1,187 @@
+package analysis;
+
+import engine.Position;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the games of a PGN file one at a time. Comments, variations, NAGs
+ * and move numbers are skipped; only the main line's SAN moves are kept.
+ */
+public final class PgnReader implements Closeable {
+
+    /**
+     * One game: its tag pairs and main line.
+     */
+    public static final class Game {
+        /** 1-based position of the game in its file. */
+        public final int number;
+        public final Map<String, String> tags;
+        public final List<String> sanMoves;
+
+        Game(int number, Map<String, String> tags, List<String> sanMoves) {
+            this.number = number;
+            this.tags = Collections.unmodifiableMap(tags);
+            this.sanMoves = List.copyOf(sanMoves);
+        }
+
+        /**
+         * The {@code FEN} tag, or null for the standard start position.
+         */
+        public String startFen() {
+            return tags.get("FEN");
+        }
+
+        public String result() {
+            return tags.getOrDefault("Result", "*");
+        }
+
+        /**
+         * The main line in UCI notation.
+         *
+         * @throws IllegalArgumentException on a move that is not legal, or not
+         *                                  unambiguous, where it is played
+         */
+        public List<String> uciMoves() {
+            Position position = Position.fromFen(startFen() == null ? Position.START_FEN : startFen());
+            List<String> moves = new ArrayList<>(sanMoves.size());
+            for (String san : sanMoves) {
+                int move = position.parseSanMove(san);
+                if (move == Position.NO_MOVE) {
+                    throw new IllegalArgumentException("Illegal move " + san + " after "
+                        + (moves.isEmpty() ? "the start" : String.join(" ", moves)));
+                }
+                moves.add(Position.toUci(move));
+                position.makeMove(move);
+            }
+            return moves;
+        }
+    }
+
+    private final BufferedReader reader;
+    private String pendingLine;
+    private int gamesRead;
+
+    public PgnReader(Reader reader) {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+    }
+
+    /**
+     * @return the next game, or null at the end of the input
+     */
+    public Game next() throws IOException {
+        Map<String, String> tags = new LinkedHashMap<>();
+        StringBuilder movetext = new StringBuilder();
+        String line;
+        while ((line = readLine()) != null) {
+            String trimmed = line.trim();
+            if (trimmed.startsWith("[") && !inComment(movetext)) {
+                if (movetext.toString().isBlank()) {
+                    addTag(tags, trimmed);
+                    continue;
+                }
+                pendingLine = line;
+                break;
+            }
+            if (trimmed.startsWith("%")) {
+                continue;
+            }
+            movetext.append(line).append('\n');
+        }
+        if (tags.isEmpty() && movetext.toString().isBlank()) {
+            return null;
+        }
+        return new Game(++gamesRead, tags, sanMoves(movetext));
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private String readLine() throws IOException {
+        if (pendingLine != null) {
+            String line = pendingLine;
+            pendingLine = null;
+            return line;
+        }
+        return reader.readLine();
+    }
+
+    private static void addTag(Map<String, String> tags, String line) {
+        int space = line.indexOf(' ');
+        int open = line.indexOf('"');
+        int close = line.lastIndexOf('"');
+        if (space > 1 && open > space && close > open) {
+            tags.put(line.substring(1, space), line.substring(open + 1, close).replace("\\\"", "\""));
+        }
+    }
+
+    /**
+     * True while {@code movetext} ends inside a brace comment, where a line
+     * starting with {@code [} is not a tag.
+     */
+    private static boolean inComment(CharSequence movetext) {
+        boolean open = false;
+        for (int i = 0; i < movetext.length(); i++) {
+            char c = movetext.charAt(i);
+            if (c == '{') {
+                open = true;
+            } else if (c == '}') {
+                open = false;
+            }
+        }
+        return open;
+    }
+
+    static List<String> sanMoves(CharSequence movetext) {
+        StringBuilder mainLine = new StringBuilder();
+        int variationDepth = 0;
+        for (int i = 0; i < movetext.length(); i++) {
+            char c = movetext.charAt(i);
+            if (c == '{') {
+                int end = indexOf(movetext, '}', i);
+                i = end < 0 ? movetext.length() : end;
+                mainLine.append(' ');
+            } else if (c == ';') {
+                int end = indexOf(movetext, '\n', i);
+                i = end < 0 ? movetext.length() : end;
+                mainLine.append(' ');
+            } else if (c == '(') {
+                variationDepth++;
+            } else if (c == ')') {
+                variationDepth = Math.max(0, variationDepth - 1);
+                mainLine.append(' ');
+            } else if (variationDepth == 0) {
+                mainLine.append(c);
+            }
+        }
+        List<String> moves = new ArrayList<>();
+        for (String token : mainLine.toString().trim().split("\\s+")) {
+            String move = token.replaceFirst("^\\d+\\.+", "");
+            if (move.isEmpty() || move.startsWith("$") || move.equals("*")
+                || move.equals("1-0") || move.equals("0-1") || move.equals("1/2-1/2")) {
+                continue;
+            }
+            moves.add(move);
+        }
+        return moves;
+    }
+
+    private static int indexOf(CharSequence text, char c, int from) {
+        for (int i = from; i < text.length(); i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,458 @@
+package analysis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import uci.PersistentEvaluationCache;
+import uci.StockfishClient;
+
+/**
+ * Binary file of finished game reviews, so a review can be shown again
+ * without running the engines, and reviews of many games kept cheaply.
+ *
+ * <p>A file is a header (magic and format version) followed by any number
+ * of records, each length-prefixed and followed by a CRC32. A record holds
+ * the game's tags, start position and moves and every entry of its
+ * {@link GameAnalyzer.Summary}. Moves, best moves and PVs are packed into two
+ * bytes each, evaluations are stored in centipawns and counts as varints;
+ * the severity and quality labels go through a small per-record string
+ * table. A typical 40-move review with three lines per position takes a few
+ * kilobytes. Records are appended, so a write cut short by a crash only
+ * loses the last one.</p>
+ */
+public final class ReviewArchive {
+
+    private static final long MAGIC = 0x4348455353524556L; // "CHESSREV"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = Long.BYTES + Integer.BYTES;
+
+    // entry flags
+    private static final int WHITE_MOVE = 1;
+    private static final int ONLY_MOVE = 2;
+    private static final int HAS_BEST_MOVE = 4;
+    private static final int FIRST_LINE_IS_BEST_LINE = 8;
+
+    /** Largest record a reader accepts, against a corrupt length prefix. */
+    private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+
+    private ReviewArchive() {
+    }
+
+    /**
+     * One reviewed game.
+     */
+    public static final class Record {
+        public final Map<String, String> tags;
+        /** Null for the standard start position. */
+        public final String startFen;
+        public final List<String> moves;
+        public final GameAnalyzer.Summary summary;
+
+        public Record(Map<String, String> tags, String startFen, List<String> moves, GameAnalyzer.Summary summary) {
+            this.tags = Collections.unmodifiableMap(new LinkedHashMap<>(tags));
+            this.startFen = startFen;
+            this.moves = List.copyOf(moves);
+            this.summary = summary;
+        }
+    }
+
+    /**
+     * Writes {@code record} as the only review in {@code file}, replacing it
+     * in one step so readers never see half a file.
+     */
+    public static void save(Path file, Record record) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = new Writer(Files.newOutputStream(temp), true)) {
+            writer.write(record);
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * The first review in {@code file}.
+     */
+    public static Record load(Path file) throws IOException {
+        try (Reader reader = Reader.open(file)) {
+            Record record = reader.next();
+            if (record == null) {
+                throw new EOFException("No review in " + file);
+            }
+            return record;
+        }
+    }
+
+    /**
+     * Appends reviews to an archive; not thread-safe.
+     */
+    public static final class Writer implements Closeable {
+        private final DataOutputStream out;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(4096);
+        private final CRC32 crc = new CRC32();
+
+        private Writer(OutputStream out, boolean writeHeader) throws IOException {
+            this.out = new DataOutputStream(new BufferedOutputStream(out, 64 * 1024));
+            if (writeHeader) {
+                this.out.writeLong(MAGIC);
+                this.out.writeInt(VERSION);
+            }
+        }
+
+        /**
+         * Opens {@code file} for appending, creating it with a header if it
+         * does not exist yet. A last record left incomplete by a crash is cut
+         * off first, so the new ones stay readable.
+         */
+        public static Writer append(Path file) throws IOException {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            boolean fresh = !Files.exists(file) || Files.size(file) == 0;
+            if (!fresh) {
+                try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+                    checkHeader(in, file);
+                }
+                dropIncompleteTail(file);
+            }
+            return new Writer(Files.newOutputStream(file, StandardOpenOption.CREATE, StandardOpenOption.APPEND),
+                fresh);
+        }
+
+        public void write(Record record) throws IOException {
+            buffer.reset();
+            encode(record, new DataOutputStream(buffer));
+            byte[] bytes = buffer.toByteArray();
+            crc.reset();
+            crc.update(bytes);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            out.writeInt((int) crc.getValue());
+        }
+
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    /**
+     * Reads the reviews of an archive in order.
+     */
+    public static final class Reader implements Closeable {
+        private final DataInputStream in;
+        private final Path file;
+        private final CRC32 crc = new CRC32();
+
+        private Reader(InputStream in, Path file) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(in, 64 * 1024));
+            this.file = file;
+            checkHeader(this.in, file);
+        }
+
+        public static Reader open(Path file) throws IOException {
+            InputStream in = Files.newInputStream(file);
+            try {
+                return new Reader(in, file);
+            } catch (IOException e) {
+                in.close();
+                throw e;
+            }
+        }
+
+        /**
+         * @return the next review, or null at the end of the archive,
+         * including after a last record whose write was cut short
+         * @throws IOException if a complete record fails its checksum
+         */
+        public Record next() throws IOException {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException e) {
+                return null;
+            }
+            if (length < 0 || length > MAX_RECORD_BYTES) {
+                throw new IOException("Corrupt review record in " + file);
+            }
+            byte[] bytes = new byte[length];
+            int checksum;
+            try {
+                in.readFully(bytes);
+                checksum = in.readInt();
+            } catch (EOFException e) {
+                return null;
+            }
+            crc.reset();
+            crc.update(bytes);
+            if ((int) crc.getValue() != checksum) {
+                throw new IOException("Corrupt review record in " + file);
+            }
+            return decode(ByteBuffer.wrap(bytes));
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+
+    /**
+     * Walks the record lengths and truncates whatever follows the last
+     * complete record.
+     */
+    private static void dropIncompleteTail(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            long position = HEADER_BYTES;
+            ByteBuffer length = ByteBuffer.allocate(Integer.BYTES);
+            while (position + Integer.BYTES <= size) {
+                length.clear();
+                channel.read(length, position);
+                long end = position + Integer.BYTES + (length.getInt(0) & 0xFFFFFFFFL) + Integer.BYTES;
+                if (end > size) {
+                    break;
+                }
+                position = end;
+            }
+            if (position < size) {
+                channel.truncate(position);
+            }
+        }
+    }
+
+    private static void checkHeader(DataInputStream in, Path file) throws IOException {
+        long magic;
+        int version;
+        try {
+            magic = in.readLong();
+            version = in.readInt();
+        } catch (EOFException e) {
+            throw new IOException("Not a review archive: " + file);
+        }
+        if (magic != MAGIC) {
+            throw new IOException("Not a review archive: " + file);
+        }
+        if (version != VERSION) {
+            throw new IOException("Unsupported review archive version " + version + " in " + file);
+        }
+    }
+
+    // ------------------------------------------------------------------ encoding
+
+    static void encode(Record record, DataOutputStream out) throws IOException {
+        writeVarint(out, record.tags.size());
+        for (Map.Entry<String, String> tag : record.tags.entrySet()) {
+            writeString(out, tag.getKey());
+            writeString(out, tag.getValue());
+        }
+        writeString(out, record.startFen == null ? "" : record.startFen);
+        writeVarlong(out, record.summary.engineMillis);
+        writeMoves(out, record.moves);
+
+        List<GameAnalyzer.Entry> entries = record.summary.entries;
+        List<String> labels = new ArrayList<>();
+        for (GameAnalyzer.Entry entry : entries) {
+            if (!labels.contains(entry.severity)) {
+                labels.add(entry.severity);
+            }
+            if (!labels.contains(entry.qualityTag)) {
+                labels.add(entry.qualityTag);
+            }
+        }
+        writeVarint(out, labels.size());
+        for (String label : labels) {
+            writeString(out, label == null ? "" : label);
+        }
+
+        writeVarint(out, entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            GameAnalyzer.Entry entry = entries.get(i);
+            if (entry.plyIndex != i || i >= record.moves.size()) {
+                throw new IllegalArgumentException("Review entries must cover the moves in order, from the first");
+            }
+            List<StockfishClient.PvLine> lines = entry.alternatives;
+            boolean firstLineIsBest = !lines.isEmpty() && lines.get(0).principalVariation.equals(entry.bestLine);
+            out.writeByte((entry.isWhite ? WHITE_MOVE : 0)
+                | (entry.onlyMove ? ONLY_MOVE : 0)
+                | (entry.bestMove != null ? HAS_BEST_MOVE : 0)
+                | (firstLineIsBest ? FIRST_LINE_IS_BEST_LINE : 0));
+            writeVarlong(out, zigzag(Math.round(entry.evalBefore * 100)));
+            writeVarlong(out, zigzag(Math.round(entry.evalAfter * 100)));
+            writeVarint(out, labels.indexOf(entry.severity));
+            writeVarint(out, labels.indexOf(entry.qualityTag));
+            if (entry.bestMove != null) {
+                out.writeShort(PersistentEvaluationCache.packMove(entry.bestMove));
+            }
+            writeMoves(out, entry.bestLine);
+            writeVarint(out, lines.size());
+            for (int k = 0; k < lines.size(); k++) {
+                StockfishClient.PvLine line = lines.get(k);
+                out.writeShort(PersistentEvaluationCache.packMove(line.move));
+                writeVarlong(out, zigzag(line.scoreCp));
+                writeVarlong(out, line.mate == null ? 0 : zigzag(line.mate) + 1);
+                writeVarint(out, line.depth);
+                if (k > 0 || !firstLineIsBest) {
+                    writeMoves(out, line.principalVariation);
+                }
+            }
+        }
+    }
+
+    static Record decode(ByteBuffer in) throws IOException {
+        try {
+            int tagCount = readVarint(in);
+            Map<String, String> tags = new LinkedHashMap<>();
+            for (int i = 0; i < tagCount; i++) {
+                tags.put(readString(in), readString(in));
+            }
+            String startFen = readString(in);
+            long engineMillis = readVarlong(in);
+            List<String> moves = readMoves(in);
+
+            String[] labels = new String[readVarint(in)];
+            for (int i = 0; i < labels.length; i++) {
+                labels[i] = readString(in);
+            }
+
+            int entryCount = readVarint(in);
+            List<GameAnalyzer.Entry> entries = new ArrayList<>(entryCount);
+            for (int i = 0; i < entryCount; i++) {
+                int flags = in.get();
+                boolean whiteMove = (flags & WHITE_MOVE) != 0;
+                double evalBefore = unzigzag(readVarlong(in)) / 100.0;
+                double evalAfter = unzigzag(readVarlong(in)) / 100.0;
+                String severity = label(labels, readVarint(in));
+                String tag = label(labels, readVarint(in));
+                String bestMove = (flags & HAS_BEST_MOVE) != 0 ? unpack(in.getShort()) : null;
+                List<String> bestLine = readMoves(in);
+                int lineCount = readVarint(in);
+                List<StockfishClient.PvLine> lines = new ArrayList<>(lineCount);
+                for (int k = 0; k < lineCount; k++) {
+                    String move = unpack(in.getShort());
+                    int scoreCp = (int) unzigzag(readVarlong(in));
+                    long mate = readVarlong(in);
+                    int depth = readVarint(in);
+                    List<String> pv = k == 0 && (flags & FIRST_LINE_IS_BEST_LINE) != 0 ? bestLine : readMoves(in);
+                    lines.add(new StockfishClient.PvLine(k + 1, move, scoreCp,
+                        mate == 0 ? null : (int) unzigzag(mate - 1), depth, pv));
+                }
+                // as GameAnalyzer computes it, so a restored review is the same one
+                double loss = -((evalAfter - evalBefore) * (whiteMove ? 1 : -1));
+                entries.add(new GameAnalyzer.Entry(i, whiteMove, moves.get(i), bestMove, bestLine, evalBefore,
+                    evalAfter, loss, severity, tag, lines, (flags & ONLY_MOVE) != 0));
+            }
+            return new Record(tags, startFen.isEmpty() ? null : startFen, moves,
+                new GameAnalyzer.Summary(entries, engineMillis));
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed review record", e);
+        }
+    }
+
+    private static String label(String[] labels, int index) {
+        return labels[index].isEmpty() ? null : labels[index];
+    }
+
+    private static void writeMoves(DataOutputStream out, List<String> moves) throws IOException {
+        writeVarint(out, moves.size());
+        for (String move : moves) {
+            out.writeShort(PersistentEvaluationCache.packMove(move));
+        }
+    }
+
+    private static List<String> readMoves(ByteBuffer in) {
+        int count = readVarint(in);
+        List<String> moves = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            moves.add(unpack(in.getShort()));
+        }
+        return moves;
+    }
+
+    private static String unpack(short packed) {
+        return packed == 0 ? null : PersistentEvaluationCache.unpackMove(packed);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        byte[] bytes = new byte[readVarint(in)];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        writeVarlong(out, value & 0xFFFFFFFFL);
+    }
+
+    private static void writeVarlong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static int readVarint(ByteBuffer in) {
+        long value = readVarlong(in);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Count out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    private static long readVarlong(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Varint too long");
+    }
+}
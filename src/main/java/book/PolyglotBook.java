@@ -0,0 +1,150 @@
+package book;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Read-only Polyglot {@code .bin} opening book. The file is memory-mapped and
+ * searched in place: 16-byte big-endian entries sorted by key (key, move,
+ * weight, learn), so a probe is a binary search plus a short scan and never
+ * touches the engine.
+ */
+public final class PolyglotBook implements Closeable {
+
+    private static final int ENTRY_BYTES = 16;
+
+    /**
+     * One book move; {@code move} is already in UCI form.
+     */
+    public static final class Entry {
+        public final String move;
+        public final int weight;
+
+        Entry(String move, int weight) {
+            this.move = move;
+            this.weight = weight;
+        }
+
+        @Override
+        public String toString() {
+            return move + " (" + weight + ")";
+        }
+    }
+
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final int entryCount;
+
+    private PolyglotBook(FileChannel channel, MappedByteBuffer map) {
+        this.channel = channel;
+        this.map = map;
+        this.entryCount = map.capacity() / ENTRY_BYTES;
+    }
+
+    public static PolyglotBook open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size % ENTRY_BYTES != 0 || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a Polyglot book: " + file);
+            }
+            return new PolyglotBook(channel, channel.map(FileChannel.MapMode.READ_ONLY, 0, size));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public int size() {
+        return entryCount;
+    }
+
+    /**
+     * All book moves for the position, in file order (highest weight first
+     * in books written by Polyglot). {@code squares} is needed to turn the
+     * book's king-takes-rook castling into UCI's king-two-squares form.
+     */
+    public List<Entry> entries(long key, char[] squares) {
+        List<Entry> entries = new ArrayList<>(4);
+        for (int i = lowerBound(key); i < entryCount && keyAt(i) == key; i++) {
+            int base = i * ENTRY_BYTES;
+            int weight = map.getShort(base + 10) & 0xffff;
+            if (weight > 0) {
+                entries.add(new Entry(toUci(map.getShort(base + 8) & 0xffff, squares), weight));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Picks a book move at random, proportionally to the entry weights, or
+     * returns null when the position is not in the book.
+     */
+    public String pickMove(long key, char[] squares, Random random) {
+        List<Entry> entries = entries(key, squares);
+        int total = 0;
+        for (Entry entry : entries) {
+            total += entry.weight;
+        }
+        if (total == 0) {
+            return null;
+        }
+        int pick = random.nextInt(total);
+        for (Entry entry : entries) {
+            pick -= entry.weight;
+            if (pick < 0) {
+                return entry.move;
+            }
+        }
+        return entries.get(entries.size() - 1).move;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int lowerBound(long key) {
+        int lo = 0;
+        int hi = entryCount;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (Long.compareUnsigned(keyAt(mid), key) < 0) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private long keyAt(int index) {
+        return map.getLong(index * ENTRY_BYTES);
+    }
+
+    static String toUci(int move, char[] squares) {
+        int toFile = move & 7;
+        int toRank = (move >>> 3) & 7;
+        int fromFile = (move >>> 6) & 7;
+        int fromRank = (move >>> 9) & 7;
+        int promotion = (move >>> 12) & 7;
+        char piece = squares[fromRank * 8 + fromFile];
+        if ((piece == 'K' || piece == 'k') && fromFile == 4 && toRank == fromRank && (toFile == 0 || toFile == 7)) {
+            toFile = toFile == 7 ? 6 : 2;
+        }
+        StringBuilder sb = new StringBuilder(5)
+            .append((char) ('a' + fromFile)).append((char) ('1' + fromRank))
+            .append((char) ('a' + toFile)).append((char) ('1' + toRank));
+        if (promotion > 0) {
+            sb.append(" nbrq".charAt(promotion));
+        }
+        return sb.toString();
+    }
+}
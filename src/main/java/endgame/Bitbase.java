@@ -0,0 +1,112 @@
+package endgame;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * Solved win/draw table for one material signature in which only the
+ * stronger side has pieces besides its king ({@code KQK}, {@code KBNK}, ...).
+ * The stronger side is always White here; {@link Bitbases} mirrors Black.
+ *
+ * <p>One bit per position and side to move: set when White wins. The lone
+ * king can never win, so a clear bit means a draw, or an illegal position.
+ * A position is indexed by six bits per square, White king first, then the
+ * Black king, then White's pieces in the order of the name.</p>
+ */
+public final class Bitbase {
+
+    private static final long MAGIC = 0x4348455353424231L; // "CHESSBB1"
+
+    private final String name;
+    private final char[] pieces;
+    final long[] strongToMove;
+    final long[] weakToMove;
+
+    Bitbase(String name) {
+        this(name, new long[words(name)], new long[words(name)]);
+    }
+
+    private Bitbase(String name, long[] strongToMove, long[] weakToMove) {
+        this.name = name;
+        this.pieces = name.substring(1, name.length() - 1).toCharArray();
+        this.strongToMove = strongToMove;
+        this.weakToMove = weakToMove;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    char[] pieces() {
+        return pieces;
+    }
+
+    /**
+     * Number of indexed positions per side to move.
+     */
+    int positions() {
+        return 1 << (6 * (pieces.length + 2));
+    }
+
+    boolean strongWins(boolean strongSideToMove, int index) {
+        long[] bits = strongSideToMove ? strongToMove : weakToMove;
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    static int index(int strongKing, int weakKing, int[] pieceSquares) {
+        int index = strongKing | weakKing << 6;
+        for (int i = 0; i < pieceSquares.length; i++) {
+            index |= pieceSquares[i] << (12 + 6 * i);
+        }
+        return index;
+    }
+
+    private static int words(String name) {
+        return Math.max(1, (1 << (6 * name.length())) >>> 6);
+    }
+
+    /**
+     * Writes the table atomically, so a half-written file from an
+     * interrupted first run is never picked up.
+     */
+    void write(Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Path partial = file.resolveSibling(file.getFileName() + ".partial");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(partial), 1 << 16))) {
+            out.writeLong(MAGIC);
+            out.writeUTF(name);
+            for (long word : strongToMove) {
+                out.writeLong(word);
+            }
+            for (long word : weakToMove) {
+                out.writeLong(word);
+            }
+        }
+        Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static Bitbase read(Path file, String expectedName) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readLong() != MAGIC || !expectedName.equals(in.readUTF())) {
+                throw new IOException("Not a " + expectedName + " bitbase: " + file);
+            }
+            long[] strong = new long[words(expectedName)];
+            long[] weak = new long[strong.length];
+            for (int i = 0; i < strong.length; i++) {
+                strong[i] = in.readLong();
+            }
+            for (int i = 0; i < weak.length; i++) {
+                weak[i] = in.readLong();
+            }
+            return new Bitbase(expectedName, strong, weak);
+        }
+    }
+}
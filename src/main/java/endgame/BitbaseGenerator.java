@@ -0,0 +1,358 @@
+package endgame;
+
+import java.util.Arrays;
+
+/**
+ * Retrograde solver for the {@link Bitbase} endgames.
+ *
+ * <p>Every position with the lone king to move starts with a counter of its
+ * legal king moves; mates are lost outright, while stalemates and positions
+ * where the king can take an undefended piece are marked as never lost.
+ * Lost positions are then walked backwards: each White un-move gives a
+ * position White wins, each Black un-move from that decrements a counter,
+ * and a counter reaching zero means every Black move loses. Pawn promotions
+ * are the only moves leaving the table; they are seeded up front from the
+ * already solved queen and rook endings.</p>
+ */
+final class BitbaseGenerator {
+
+    private static final byte NEVER = -1;
+    private static final long[] KING = new long[64];
+    private static final long[] KNIGHT = new long[64];
+    private static final int[][] DIAGONALS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+    private static final int[][] LINES = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+
+    static {
+        for (int square = 0; square < 64; square++) {
+            KING[square] = jumps(square, new int[][]{{1, 0}, {1, 1}, {0, 1}, {-1, 1}, {-1, 0}, {-1, -1}, {0, -1}, {1, -1}});
+            KNIGHT[square] = jumps(square, new int[][]{{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}});
+        }
+    }
+
+    private final Bitbase table;
+    private final char[] pieces;
+    private final int count;
+    private final Bitbase queenPromotion;
+    private final Bitbase rookPromotion;
+    private final byte[] remaining;
+    private final IntStack lost = new IntStack();
+    private final IntStack won = new IntStack();
+    private final int[] sq;
+
+    private BitbaseGenerator(String name, Bitbase queenPromotion, Bitbase rookPromotion) {
+        this.table = new Bitbase(name);
+        this.pieces = table.pieces();
+        this.count = pieces.length + 2;
+        this.queenPromotion = queenPromotion;
+        this.rookPromotion = rookPromotion;
+        this.remaining = new byte[table.positions()];
+        this.sq = new int[count];
+    }
+
+    /**
+     * Solves {@code name}; endings with a pawn need the solved {@code KQK}
+     * and {@code KRK} tables for promotions.
+     */
+    static Bitbase generate(String name, Bitbase queenPromotion, Bitbase rookPromotion) {
+        BitbaseGenerator generator = new BitbaseGenerator(name, queenPromotion, rookPromotion);
+        if (name.indexOf('P') >= 0 && (queenPromotion == null || rookPromotion == null)) {
+            throw new IllegalArgumentException(name + " needs the KQK and KRK tables");
+        }
+        generator.seed();
+        generator.propagate();
+        return generator.table;
+    }
+
+    private void seed() {
+        int positions = table.positions();
+        for (int index = 0; index < positions; index++) {
+            decode(index);
+            long occupied = occupancy();
+            if (!valid(occupied)) {
+                remaining[index] = NEVER;
+                continue;
+            }
+            seedWeakToMove(index, occupied);
+            if (pawnOnRank(6) >= 0 && !attacked(sq[1], occupied, -1) && promotionWins(occupied)) {
+                markWon(index);
+            }
+        }
+    }
+
+    private void seedWeakToMove(int index, long occupied) {
+        int weakKing = sq[1];
+        long withoutKing = occupied & ~(1L << weakKing);
+        int moves = 0;
+        for (long targets = KING[weakKing] & ~KING[sq[0]]; targets != 0; targets &= targets - 1) {
+            int target = Long.numberOfTrailingZeros(targets);
+            int captured = pieceOn(target);
+            if (attacked(target, withoutKing, captured)) {
+                continue;
+            }
+            if (captured >= 0) {
+                // taking the last piece leaves a bare-king draw
+                remaining[index] = NEVER;
+                return;
+            }
+            moves++;
+        }
+        if (moves > 0) {
+            remaining[index] = (byte) moves;
+        } else if (attacked(weakKing, occupied, -1)) {
+            markLost(index);
+        } else {
+            remaining[index] = NEVER;
+        }
+    }
+
+    private boolean promotionWins(long occupied) {
+        int pawn = pawnOnRank(6);
+        int target = sq[pawn] + 8;
+        if ((occupied & (1L << target)) != 0) {
+            return false;
+        }
+        int promoted = Bitbase.index(sq[0], sq[1], new int[]{target});
+        return queenPromotion.strongWins(false, promoted) || rookPromotion.strongWins(false, promoted);
+    }
+
+    private void propagate() {
+        while (!lost.isEmpty() || !won.isEmpty()) {
+            while (!lost.isEmpty()) {
+                retractStrong(lost.pop());
+            }
+            while (!won.isEmpty()) {
+                retractWeak(won.pop());
+            }
+        }
+    }
+
+    /**
+     * White un-moves from a lost Black-to-move position: every predecessor
+     * with White to move is a win.
+     */
+    private void retractStrong(int index) {
+        decode(index);
+        long occupied = occupancy();
+        for (int piece = 0; piece < count; piece++) {
+            if (piece == 1) {
+                continue;
+            }
+            int from = sq[piece];
+            long origins = origins(piece, from, occupied);
+            for (; origins != 0; origins &= origins - 1) {
+                int origin = Long.numberOfTrailingZeros(origins);
+                sq[piece] = origin;
+                long before = occupied & ~(1L << from) | (1L << origin);
+                if (!attacked(sq[1], before, -1)) {
+                    int predecessor = encode();
+                    if (!table.strongWins(true, predecessor)) {
+                        markWon(predecessor);
+                    }
+                }
+            }
+            sq[piece] = from;
+        }
+    }
+
+    /**
+     * Black un-moves from a won White-to-move position: each one removes a
+     * move that could still have saved the predecessor.
+     */
+    private void retractWeak(int index) {
+        decode(index);
+        long occupied = occupancy();
+        int weakKing = sq[1];
+        for (long origins = KING[weakKing] & ~occupied & ~KING[sq[0]]; origins != 0; origins &= origins - 1) {
+            sq[1] = Long.numberOfTrailingZeros(origins);
+            int predecessor = encode();
+            if (remaining[predecessor] > 0 && --remaining[predecessor] == 0) {
+                markLost(predecessor);
+            }
+        }
+        sq[1] = weakKing;
+    }
+
+    private long origins(int piece, int from, long occupied) {
+        if (piece == 0) {
+            return KING[from] & ~occupied & ~KING[sq[1]];
+        }
+        switch (pieces[piece - 2]) {
+            case 'N':
+                return KNIGHT[from] & ~occupied;
+            case 'B':
+                return rays(from, occupied, DIAGONALS);
+            case 'R':
+                return rays(from, occupied, LINES);
+            case 'Q':
+                return rays(from, occupied, DIAGONALS) | rays(from, occupied, LINES);
+            case 'P':
+                long origins = 0;
+                int rank = from >>> 3;
+                if (rank >= 2 && (occupied & (1L << (from - 8))) == 0) {
+                    origins |= 1L << (from - 8);
+                    if (rank == 3 && (occupied & (1L << (from - 16))) == 0) {
+                        origins |= 1L << (from - 16);
+                    }
+                }
+                return origins;
+            default:
+                throw new IllegalStateException("Unsupported piece " + pieces[piece - 2]);
+        }
+    }
+
+    private void markWon(int index) {
+        table.strongToMove[index >>> 6] |= 1L << index;
+        won.push(index);
+    }
+
+    private void markLost(int index) {
+        table.weakToMove[index >>> 6] |= 1L << index;
+        remaining[index] = 0;
+        lost.push(index);
+    }
+
+    private void decode(int index) {
+        for (int i = 0; i < count; i++) {
+            sq[i] = (index >>> (6 * i)) & 63;
+        }
+    }
+
+    private int encode() {
+        int index = 0;
+        for (int i = 0; i < count; i++) {
+            index |= sq[i] << (6 * i);
+        }
+        return index;
+    }
+
+    private long occupancy() {
+        long occupied = 0;
+        for (int i = 0; i < count; i++) {
+            occupied |= 1L << sq[i];
+        }
+        return occupied;
+    }
+
+    private boolean valid(long occupied) {
+        if (Long.bitCount(occupied) != count || (KING[sq[0]] & (1L << sq[1])) != 0) {
+            return false;
+        }
+        for (int i = 2; i < count; i++) {
+            int rank = sq[i] >>> 3;
+            if (pieces[i - 2] == 'P' && (rank == 0 || rank == 7)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int pawnOnRank(int rank) {
+        for (int i = 2; i < count; i++) {
+            if (pieces[i - 2] == 'P' && (sq[i] >>> 3) == rank) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int pieceOn(int square) {
+        for (int i = 2; i < count; i++) {
+            if (sq[i] == square) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Whether White's pieces other than the king (and {@code ignored}, a
+     * piece being captured) attack {@code target}.
+     */
+    private boolean attacked(int target, long occupied, int ignored) {
+        for (int i = 2; i < count; i++) {
+            if (i != ignored && attacks(pieces[i - 2], sq[i], target, occupied)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean attacks(char piece, int from, int target, long occupied) {
+        int df = (target & 7) - (from & 7);
+        int dr = (target >>> 3) - (from >>> 3);
+        switch (piece) {
+            case 'N':
+                return (KNIGHT[from] & (1L << target)) != 0;
+            case 'P':
+                return dr == 1 && Math.abs(df) == 1;
+            case 'B':
+                return Math.abs(df) == Math.abs(dr) && df != 0 && clear(from, target, df, dr, occupied);
+            case 'R':
+                return (df == 0) != (dr == 0) && clear(from, target, df, dr, occupied);
+            case 'Q':
+                return (Math.abs(df) == Math.abs(dr) && df != 0 || (df == 0) != (dr == 0))
+                    && clear(from, target, df, dr, occupied);
+            default:
+                return false;
+        }
+    }
+
+    private static boolean clear(int from, int target, int df, int dr, long occupied) {
+        int step = Integer.signum(dr) * 8 + Integer.signum(df);
+        for (int square = from + step; square != target; square += step) {
+            if ((occupied & (1L << square)) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long rays(int from, long occupied, int[][] directions) {
+        long squares = 0;
+        for (int[] direction : directions) {
+            int file = from & 7;
+            int rank = from >>> 3;
+            while (true) {
+                file += direction[0];
+                rank += direction[1];
+                if (file < 0 || file > 7 || rank < 0 || rank > 7 || (occupied & (1L << (rank * 8 + file))) != 0) {
+                    break;
+                }
+                squares |= 1L << (rank * 8 + file);
+            }
+        }
+        return squares;
+    }
+
+    private static long jumps(int square, int[][] offsets) {
+        long targets = 0;
+        for (int[] offset : offsets) {
+            int file = (square & 7) + offset[0];
+            int rank = (square >>> 3) + offset[1];
+            if (file >= 0 && file < 8 && rank >= 0 && rank < 8) {
+                targets |= 1L << (rank * 8 + file);
+            }
+        }
+        return targets;
+    }
+
+    private static final class IntStack {
+        private int[] values = new int[1024];
+        private int size;
+
+        void push(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int pop() {
+            return values[--size];
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package endgame;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The solved endgames {@code KQK}, {@code KRK}, {@code KPK} and {@code KBNK}
+ * with either colour as the stronger side. Probing is a handful of array
+ * reads, so callers can ask on every move.
+ *
+ * <p>The tables are generated by retrograde analysis in pure Java. Run this
+ * class as a build step to write them ahead of time, or let
+ * {@link #shared()} generate the missing ones on first use and keep them in
+ * {@code -Dchess.bitbases} or {@code ~/.chess/bitbases}.</p>
+ */
+public final class Bitbases {
+
+    /**
+     * In generation order: {@code KPK} promotes into the first two.
+     */
+    public static final List<String> ENDGAMES = List.of("KQK", "KRK", "KPK", "KBNK");
+
+    private static final String PIECE_ORDER = "QRBNP";
+
+    /** Prints generation times to stdout when {@code -Dchess.stats=true}. */
+    private static final boolean PRINT_STATS = Boolean.getBoolean("chess.stats");
+
+    private static volatile Bitbases shared;
+    private static boolean sharedLoaded;
+
+    private final Map<String, Bitbase> tables;
+
+    private Bitbases(Map<String, Bitbase> tables) {
+        this.tables = tables;
+    }
+
+    /**
+     * Solves every endgame in memory.
+     */
+    public static Bitbases generate() {
+        Map<String, Bitbase> tables = new LinkedHashMap<>();
+        for (String name : ENDGAMES) {
+            tables.put(name, BitbaseGenerator.generate(name, tables.get("KQK"), tables.get("KRK")));
+        }
+        return new Bitbases(tables);
+    }
+
+    /**
+     * Reads the tables from {@code directory}, generating and writing any
+     * that are missing or unreadable.
+     */
+    public static Bitbases load(Path directory) throws IOException {
+        Map<String, Bitbase> tables = new LinkedHashMap<>();
+        for (String name : ENDGAMES) {
+            Path file = directory.resolve(name + ".bb");
+            Bitbase table = null;
+            if (Files.isRegularFile(file)) {
+                try {
+                    table = Bitbase.read(file, name);
+                } catch (IOException e) {
+                    System.err.println("Regenerating " + file + ": " + e.getMessage());
+                }
+            }
+            if (table == null) {
+                long started = System.nanoTime();
+                table = BitbaseGenerator.generate(name, tables.get("KQK"), tables.get("KRK"));
+                table.write(file);
+                if (PRINT_STATS) {
+                    System.out.println(String.format("Generated %s bitbase in %d ms",
+                        name, (System.nanoTime() - started) / 1_000_000));
+                }
+            }
+            tables.put(name, table);
+        }
+        return new Bitbases(tables);
+    }
+
+    /**
+     * The tables in the default directory, loaded (or generated) once per
+     * JVM; null if they could not be written.
+     */
+    public static synchronized Bitbases shared() {
+        if (!sharedLoaded) {
+            sharedLoaded = true;
+            String configured = System.getProperty("chess.bitbases");
+            Path directory = configured != null
+                ? Paths.get(configured)
+                : Paths.get(System.getProperty("user.home"), ".chess", "bitbases");
+            try {
+                shared = load(directory);
+            } catch (IOException e) {
+                System.err.println("Endgame bitbases disabled, cannot write " + directory + ": " + e.getMessage());
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * The shared tables if {@link #shared()} has finished, without waiting
+     * for a first-run generation.
+     */
+    public static Bitbases ifLoaded() {
+        return shared;
+    }
+
+    Bitbase table(String name) {
+        return tables.get(name);
+    }
+
+    /**
+     * @param squares FEN piece letters indexed a1 = 0 ... h8 = 63, with
+     *                {@code 0} or {@code ' '} for empty squares
+     * @return the value for the side to move, or null when the material is
+     * not one of the solved endgames
+     */
+    public Wdl probe(char[] squares, boolean whiteToMove) {
+        int whiteKing = -1;
+        int blackKing = -1;
+        int pieceCount = 0;
+        boolean strongIsWhite = false;
+        char[] letters = new char[2];
+        int[] pieceSquares = new int[2];
+        for (int square = 0; square < 64; square++) {
+            char c = squares[square];
+            if (c == 0 || c == ' ') {
+                continue;
+            }
+            if (c == 'K') {
+                whiteKing = square;
+            } else if (c == 'k') {
+                blackKing = square;
+            } else {
+                boolean white = Character.isUpperCase(c);
+                if (pieceCount == letters.length || (pieceCount > 0 && white != strongIsWhite)) {
+                    return null;
+                }
+                strongIsWhite = white;
+                letters[pieceCount] = Character.toUpperCase(c);
+                pieceSquares[pieceCount++] = square;
+            }
+        }
+        if (whiteKing < 0 || blackKing < 0 || pieceCount == 0) {
+            return null;
+        }
+        if (pieceCount == 2 && PIECE_ORDER.indexOf(letters[0]) > PIECE_ORDER.indexOf(letters[1])) {
+            char letter = letters[0];
+            letters[0] = letters[1];
+            letters[1] = letter;
+            int square = pieceSquares[0];
+            pieceSquares[0] = pieceSquares[1];
+            pieceSquares[1] = square;
+        }
+        Bitbase table = tables.get("K" + new String(letters, 0, pieceCount) + "K");
+        if (table == null) {
+            return null;
+        }
+        int mirror = strongIsWhite ? 0 : 56;
+        int[] strongPieces = new int[pieceCount];
+        for (int i = 0; i < pieceCount; i++) {
+            strongPieces[i] = pieceSquares[i] ^ mirror;
+        }
+        int index = strongIsWhite
+            ? Bitbase.index(whiteKing, blackKing, strongPieces)
+            : Bitbase.index(blackKing ^ mirror, whiteKing ^ mirror, strongPieces);
+        boolean strongToMove = whiteToMove == strongIsWhite;
+        if (!table.strongWins(strongToMove, index)) {
+            return Wdl.DRAW;
+        }
+        return strongToMove ? Wdl.WIN : Wdl.LOSS;
+    }
+
+    /**
+     * Build-time entry point: {@code java endgame.Bitbases <directory>}.
+     */
+    public static void main(String[] args) throws IOException {
+        Path directory = Paths.get(args.length > 0 ? args[0] : "bitbases");
+        load(directory);
+        System.out.println("Bitbases ready in " + directory.toAbsolutePath());
+    }
+}
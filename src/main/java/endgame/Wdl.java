@@ -0,0 +1,14 @@
+package endgame;
+
+/**
+ * Game-theoretic value of a position for the side to move.
+ */
+public enum Wdl {
+    WIN,
+    DRAW,
+    LOSS;
+
+    public Wdl negate() {
+        return this == WIN ? LOSS : this == LOSS ? WIN : DRAW;
+    }
+}
@@ -0,0 +1,169 @@
+package engine;
+
+/**
+ * Static evaluation for the built-in engine: material plus piece-square
+ * bonuses, tapered between middlegame and endgame values by the material
+ * left on the board. {@link Position} keeps the White-side totals and the
+ * phase up to date in make and unmake, so an evaluation is only the blend.
+ */
+final class Evaluator {
+
+    static final int[] PIECE_VALUES = {0, 100, 320, 330, 500, 900, 0};
+    static final int[] ENDGAME_VALUES = {0, 120, 300, 320, 530, 950, 0};
+
+    /**
+     * Phase weight per piece type; the starting material adds up to
+     * {@link #MAX_PHASE}, a bare-king-and-pawns ending to 0.
+     */
+    static final int[] PHASE_WEIGHTS = {0, 0, 1, 1, 2, 4, 0};
+    static final int MAX_PHASE = 24;
+
+    /**
+     * Middlegame bonuses for White, a1 first; Black reads them mirrored.
+     */
+    private static final int[][] MIDDLEGAME_SQUARES = {
+        {},
+        { // pawn
+            0, 0, 0, 0, 0, 0, 0, 0,
+            5, 10, 10, -20, -20, 10, 10, 5,
+            5, -5, -10, 0, 0, -10, -5, 5,
+            0, 0, 0, 20, 20, 0, 0, 0,
+            5, 5, 10, 25, 25, 10, 5, 5,
+            10, 10, 20, 30, 30, 20, 10, 10,
+            50, 50, 50, 50, 50, 50, 50, 50,
+            0, 0, 0, 0, 0, 0, 0, 0},
+        { // knight
+            -50, -40, -30, -30, -30, -30, -40, -50,
+            -40, -20, 0, 5, 5, 0, -20, -40,
+            -30, 5, 10, 15, 15, 10, 5, -30,
+            -30, 0, 15, 20, 20, 15, 0, -30,
+            -30, 5, 15, 20, 20, 15, 5, -30,
+            -30, 0, 10, 15, 15, 10, 0, -30,
+            -40, -20, 0, 0, 0, 0, -20, -40,
+            -50, -40, -30, -30, -30, -30, -40, -50},
+        { // bishop
+            -20, -10, -10, -10, -10, -10, -10, -20,
+            -10, 5, 0, 0, 0, 0, 5, -10,
+            -10, 10, 10, 10, 10, 10, 10, -10,
+            -10, 0, 10, 10, 10, 10, 0, -10,
+            -10, 5, 5, 10, 10, 5, 5, -10,
+            -10, 0, 5, 10, 10, 5, 0, -10,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -20, -10, -10, -10, -10, -10, -10, -20},
+        { // rook
+            0, 0, 0, 5, 5, 0, 0, 0,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            -5, 0, 0, 0, 0, 0, 0, -5,
+            5, 10, 10, 10, 10, 10, 10, 5,
+            0, 0, 0, 0, 0, 0, 0, 0},
+        { // queen
+            -20, -10, -10, -5, -5, -10, -10, -20,
+            -10, 0, 5, 0, 0, 0, 0, -10,
+            -10, 5, 5, 5, 5, 5, 0, -10,
+            0, 0, 5, 5, 5, 5, 0, -5,
+            -5, 0, 5, 5, 5, 5, 0, -5,
+            -10, 0, 5, 5, 5, 5, 0, -10,
+            -10, 0, 0, 0, 0, 0, 0, -10,
+            -20, -10, -10, -5, -5, -10, -10, -20},
+        { // king
+            20, 30, 10, 0, 0, 10, 30, 20,
+            20, 20, 0, 0, 0, 0, 20, 20,
+            -10, -20, -20, -20, -20, -20, -20, -10,
+            -20, -30, -30, -40, -40, -30, -30, -20,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30,
+            -30, -40, -40, -50, -50, -40, -40, -30},
+    };
+
+    private static final int[] ENDGAME_PAWN = {
+        0, 0, 0, 0, 0, 0, 0, 0,
+        0, 0, 0, 0, 0, 0, 0, 0,
+        5, 5, 5, 5, 5, 5, 5, 5,
+        15, 15, 15, 15, 15, 15, 15, 15,
+        30, 30, 30, 30, 30, 30, 30, 30,
+        50, 50, 50, 50, 50, 50, 50, 50,
+        80, 80, 80, 80, 80, 80, 80, 80,
+        0, 0, 0, 0, 0, 0, 0, 0};
+
+    private static final int[] ENDGAME_KING = {
+        -50, -30, -30, -30, -30, -30, -30, -50,
+        -30, -30, 0, 0, 0, 0, -30, -30,
+        -30, -10, 20, 30, 30, 20, -10, -30,
+        -30, -10, 30, 40, 40, 30, -10, -30,
+        -30, -10, 30, 40, 40, 30, -10, -30,
+        -30, -10, 20, 30, 30, 20, -10, -30,
+        -30, -20, -10, 0, 0, -10, -20, -30,
+        -50, -40, -30, -20, -20, -30, -40, -50};
+
+    /**
+     * Endgame bonuses: pawns gain by advancing and the king belongs in the
+     * centre; the other pieces keep their middlegame squares.
+     */
+    private static final int[][] ENDGAME_SQUARES = {
+        {}, ENDGAME_PAWN, MIDDLEGAME_SQUARES[2], MIDDLEGAME_SQUARES[3], MIDDLEGAME_SQUARES[4],
+        MIDDLEGAME_SQUARES[5], ENDGAME_KING};
+
+    /**
+     * Material plus square bonus per piece code and square, signed for
+     * White, so make and unmake only add and subtract table entries.
+     */
+    static final int[][] MIDDLEGAME = new int[16][64];
+    static final int[][] ENDGAME = new int[16][64];
+    static final int[] PHASE = new int[16];
+
+    static {
+        for (int type = Position.PAWN; type <= Position.KING; type++) {
+            for (int square = 0; square < 64; square++) {
+                MIDDLEGAME[Position.WHITE | type][square] = PIECE_VALUES[type] + MIDDLEGAME_SQUARES[type][square];
+                MIDDLEGAME[Position.BLACK | type][square] =
+                    -PIECE_VALUES[type] - MIDDLEGAME_SQUARES[type][square ^ 56];
+                ENDGAME[Position.WHITE | type][square] = ENDGAME_VALUES[type] + ENDGAME_SQUARES[type][square];
+                ENDGAME[Position.BLACK | type][square] = -ENDGAME_VALUES[type] - ENDGAME_SQUARES[type][square ^ 56];
+            }
+            PHASE[Position.WHITE | type] = PHASE_WEIGHTS[type];
+            PHASE[Position.BLACK | type] = PHASE_WEIGHTS[type];
+        }
+    }
+
+    private Evaluator() {
+    }
+
+    /**
+     * Centipawns from the side to move.
+     */
+    static int evaluate(Position position) {
+        int score = taper(position.middlegame, position.endgame, position.phase);
+        return position.whiteToMove() ? score : -score;
+    }
+
+    /**
+     * Centipawns from White's side.
+     */
+    static int taper(int middlegame, int endgame, int phase) {
+        int mg = Math.min(phase, MAX_PHASE);
+        return (middlegame * mg + endgame * (MAX_PHASE - mg)) / MAX_PHASE;
+    }
+
+    /**
+     * Recomputes the totals {@link Position} tracks, from scratch:
+     * {@code {middlegame, endgame, phase}}.
+     */
+    static int[] totals(int[] board) {
+        int middlegame = 0;
+        int endgame = 0;
+        int phase = 0;
+        for (int square = 0; square < 64; square++) {
+            int piece = board[square];
+            if (piece != 0) {
+                middlegame += MIDDLEGAME[piece][square];
+                endgame += ENDGAME[piece][square];
+                phase += PHASE[piece];
+            }
+        }
+        return new int[]{middlegame, endgame, phase};
+    }
+}
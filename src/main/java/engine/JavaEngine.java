@@ -0,0 +1,269 @@
+package engine;
+
+import uci.AnalysisEngine;
+import uci.SearchInfo;
+import uci.SearchInfoListener;
+import uci.SearchLimits;
+import uci.StockfishClient;
+import uci.UciPosition;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The built-in engine behind the same {@link AnalysisEngine} calls as
+ * {@link StockfishClient}, searching in the calling thread instead of a
+ * separate process. It is far weaker than Stockfish but costs no process or
+ * pipe round-trips, so many low-rated bots can share one JVM; it also plays
+ * when no Stockfish binary is configured.
+ *
+ * <p>With more than one thread the search is Lazy SMP: helper threads search
+ * copies of the root at staggered depths, sharing only the transposition
+ * table, while the calling thread runs the main search and reports its
+ * result. Helpers are stopped as soon as the main search returns.</p>
+ */
+public final class JavaEngine implements AnalysisEngine {
+
+    /**
+     * At or above this rating the engine searches at full strength.
+     */
+    public static final int FULL_STRENGTH_ELO = 2000;
+
+    private static final int DEFAULT_MOVES_TO_GO = 30;
+    private static final int DEFAULT_HASH_MB = 16;
+
+    private static final AtomicInteger HELPER_THREADS = new AtomicInteger();
+
+    private TranspositionTable table = new TranspositionTable(DEFAULT_HASH_MB);
+    private volatile Search[] searches = {new Search(table)};
+    private ExecutorService helperPool;
+    private final Random random = new Random();
+    private int maxDepth = Search.MAX_PLY - 1;
+    private int evalNoise;
+
+    /**
+     * Weakens the engine to roughly {@code elo} by capping the search depth
+     * and blurring its evaluation.
+     */
+    public synchronized void setTargetElo(int elo) {
+        if (elo >= FULL_STRENGTH_ELO) {
+            maxDepth = Search.MAX_PLY - 1;
+            evalNoise = 0;
+        } else {
+            maxDepth = Math.max(1, Math.min(8, 1 + (elo - 600) / 150));
+            evalNoise = (FULL_STRENGTH_ELO - elo) / 8;
+        }
+    }
+
+    /**
+     * Replaces the transposition table with an empty one of
+     * {@code megabytes}, like the UCI {@code Hash} option.
+     */
+    public synchronized void setHashMegabytes(int megabytes) {
+        table = new TranspositionTable(megabytes);
+        createSearches(searches.length);
+    }
+
+    /**
+     * Searches with {@code threads} threads, the caller's included, like the
+     * UCI {@code Threads} option. Move-ordering statistics start afresh.
+     */
+    public synchronized void setThreads(int threads) {
+        int count = Math.max(1, threads);
+        if (count == searches.length) {
+            return;
+        }
+        if (helperPool != null) {
+            helperPool.shutdownNow();
+            helperPool = null;
+        }
+        createSearches(count);
+        if (count > 1) {
+            helperPool = Executors.newFixedThreadPool(count - 1, runnable -> {
+                Thread thread = new Thread(runnable, "java-engine-helper-" + HELPER_THREADS.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    public int threads() {
+        return searches.length;
+    }
+
+    private void createSearches(int count) {
+        Search[] created = new Search[count];
+        for (int i = 0; i < count; i++) {
+            created[i] = new Search(table);
+            created[i].setHelperIndex(i);
+        }
+        searches = created;
+    }
+
+    @Override
+    public synchronized StockfishClient.AnalysisResult analyzePosition(UciPosition position, SearchLimits limits,
+                                                                       SearchInfoListener listener) throws IOException {
+        return analyzeLines(position, limits, 1, listener);
+    }
+
+    @Override
+    public synchronized StockfishClient.AnalysisResult analyzeLines(UciPosition position, SearchLimits limits,
+                                                                    int lineCount, SearchInfoListener listener)
+        throws IOException {
+        Position root;
+        try {
+            root = Position.of(position.startFen(), position.moves());
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        long started = System.nanoTime();
+        long budgetNanos = timeBudgetMillis(limits, root.whiteToMove()) * 1_000_000L;
+        long hardDeadline = budgetNanos > 0 ? started + budgetNanos : 0;
+        // with a clock, do not start an iteration that probably cannot finish
+        long softDeadline = budgetNanos > 0 && limits.moveTimeMillis <= 0 ? started + budgetNanos / 2 : hardDeadline;
+        int depth = limits.depth > 0 ? Math.min(limits.depth, maxDepth) : maxDepth;
+        Search[] threads = searches;
+        Search search = threads[0];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i].clearStop();
+            threads[i].setEvalNoise(evalNoise, i == 0 ? random : new Random(random.nextLong()));
+        }
+        table.newSearch();
+        List<Future<?>> helpers = new ArrayList<>(threads.length - 1);
+        for (int i = 1; i < threads.length; i++) {
+            Search helper = threads[i];
+            Position copy = root.copy();
+            helpers.add(helperPool.submit(() ->
+                helper.run(copy, depth, 1, softDeadline, hardDeadline, 0, null)));
+        }
+
+        List<SearchInfo> infos = new ArrayList<>();
+        List<Search.Line> lines = search.run(root, depth, lineCount, softDeadline, hardDeadline, limits.nodes,
+            (completedDepth, selDepth, found, mainNodes) -> {
+                infos.clear();
+                long nodes = nodes(threads);
+                long elapsed = Math.max(1, (System.nanoTime() - started) / 1_000_000);
+                for (int rank = 1; rank <= found.size(); rank++) {
+                    infos.add(toInfo(found.get(rank - 1), rank, selDepth, nodes, table.hashfull(), elapsed));
+                }
+                if (listener != null) {
+                    long now = System.nanoTime();
+                    for (SearchInfo info : infos) {
+                        if (listener.wantsInfo(info.multiPv, info.depth, now)) {
+                            listener.onInfo(info);
+                        }
+                    }
+                }
+            });
+        for (int i = 1; i < threads.length; i++) {
+            threads[i].stop();
+        }
+        for (Future<?> helper : helpers) {
+            try {
+                helper.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while stopping helper threads", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Helper search failed", e.getCause());
+            }
+        }
+
+        StockfishClient.AnalysisResult result;
+        if (lines.isEmpty()) {
+            result = new StockfishClient.AnalysisResult(null, 0, root.inCheck() ? 0 : null, List.of());
+        } else {
+            List<StockfishClient.PvLine> pvLines = new ArrayList<>(infos.size());
+            for (SearchInfo info : infos) {
+                pvLines.add(new StockfishClient.PvLine(info.multiPv, info.principalVariation.get(0),
+                    info.effectiveScoreCp(), info.mate, info.depth, info.principalVariation));
+            }
+            SearchInfo best = infos.get(0);
+            List<String> pv = best.principalVariation;
+            result = new StockfishClient.AnalysisResult(pv.get(0), best.effectiveScoreCp(), best.mate, pv, best,
+                pv.size() > 1 ? pv.get(1) : null, pvLines);
+        }
+        if (listener != null) {
+            listener.onSearchComplete(result);
+        }
+        return result;
+    }
+
+    @Override
+    public synchronized void newGame() {
+        for (Search search : searches) {
+            search.clearHistory();
+        }
+        table.clear();
+    }
+
+    @Override
+    public void stop() {
+        for (Search search : searches) {
+            search.stop();
+        }
+    }
+
+    @Override
+    public void close() {
+        stop();
+        synchronized (this) {
+            if (helperPool != null) {
+                helperPool.shutdownNow();
+                helperPool = null;
+                createSearches(1);
+            }
+        }
+    }
+
+    private static long nodes(Search[] threads) {
+        long total = 0;
+        for (Search search : threads) {
+            total += search.nodes();
+        }
+        return total;
+    }
+
+    /**
+     * Time for this move in milliseconds, or 0 when only depth or nodes
+     * bound the search: the movetime, or an even share of the mover's clock
+     * plus most of the increment.
+     */
+    static long timeBudgetMillis(SearchLimits limits, boolean whiteToMove) {
+        if (limits.moveTimeMillis > 0) {
+            return limits.moveTimeMillis;
+        }
+        if (!limits.usesClock()) {
+            return 0;
+        }
+        long remaining = whiteToMove ? limits.whiteTimeMillis : limits.blackTimeMillis;
+        long increment = whiteToMove ? limits.whiteIncrementMillis : limits.blackIncrementMillis;
+        int movesToGo = limits.movesToGo > 0 ? limits.movesToGo : DEFAULT_MOVES_TO_GO;
+        long budget = remaining / movesToGo + increment * 3 / 4;
+        return Math.max(10, Math.min(budget, remaining / 2));
+    }
+
+    private static SearchInfo toInfo(Search.Line line, int rank, int selDepth, long nodes, int hashfull,
+                                     long elapsedMillis) {
+        Integer mate = null;
+        int scoreCp = line.score;
+        if (Math.abs(line.score) >= Search.MATE - Search.MAX_PLY) {
+            int plies = Search.MATE - Math.abs(line.score);
+            mate = (plies + 1) / 2 * Integer.signum(line.score);
+            scoreCp = 0;
+        }
+        List<String> pv = new ArrayList<>(line.moves.length);
+        for (int move : line.moves) {
+            pv.add(Position.toUci(move));
+        }
+        return new SearchInfo(line.depth, Math.max(line.depth, selDepth), rank, scoreCp, mate, false, false,
+            nodes, nodes * 1000 / elapsedMillis, hashfull, elapsedMillis, pv);
+    }
+}
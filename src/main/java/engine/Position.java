@@ -0,0 +1,833 @@
+package engine;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Mutable chess position for the built-in engine: a 64-square mailbox
+ * (a1 = 0 ... h8 = 63), side to move, castling rights, en-passant square and
+ * a Zobrist key, with make/unmake instead of copying. Moves are plain
+ * {@code int}s; see {@link #move}.
+ *
+ * <p>Moves are generated pseudo-legally; {@link #makeMove(int)} rejects (and
+ * takes back) a move that leaves the mover's king in check.</p>
+ */
+public final class Position {
+
+    public static final int WHITE = 0;
+    public static final int BLACK = 8;
+
+    public static final int PAWN = 1;
+    public static final int KNIGHT = 2;
+    public static final int BISHOP = 3;
+    public static final int ROOK = 4;
+    public static final int QUEEN = 5;
+    public static final int KING = 6;
+
+    public static final String START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    public static final int NO_MOVE = 0;
+    static final int FLAG_CAPTURE = 1 << 15;
+    static final int FLAG_EN_PASSANT = 1 << 16;
+    static final int FLAG_CASTLE = 1 << 17;
+    static final int FLAG_DOUBLE_PUSH = 1 << 18;
+
+    /**
+     * Upper bound on pseudo-legal moves in any position.
+     */
+    public static final int MAX_MOVES = 256;
+
+    private static final int WHITE_KINGSIDE = 1;
+    private static final int WHITE_QUEENSIDE = 2;
+    private static final int BLACK_KINGSIDE = 4;
+    private static final int BLACK_QUEENSIDE = 8;
+    private static final int MAX_HISTORY = 2048;
+    private static final String PIECE_LETTERS = ".PNBRQK";
+
+    static final int[][] KNIGHT_TARGETS = new int[64][];
+    static final int[][] KING_TARGETS = new int[64][];
+    /**
+     * Squares along each direction, nearest first: 0-3 orthogonal
+     * (N, S, E, W), 4-7 diagonal (NE, NW, SE, SW).
+     */
+    static final int[][][] RAYS = new int[8][64][];
+
+    private static final int[] CASTLE_MASK = new int[64];
+    private static final long[][] PIECE_KEYS = new long[16][64];
+    private static final long[] CASTLING_KEYS = new long[16];
+    private static final long[] EN_PASSANT_KEYS = new long[8];
+    private static final long SIDE_KEY;
+
+    static {
+        int[][] knight = {{1, 2}, {2, 1}, {2, -1}, {1, -2}, {-1, -2}, {-2, -1}, {-2, 1}, {-1, 2}};
+        int[][] king = {{0, 1}, {0, -1}, {1, 0}, {-1, 0}, {1, 1}, {-1, 1}, {1, -1}, {-1, -1}};
+        for (int square = 0; square < 64; square++) {
+            KNIGHT_TARGETS[square] = targets(square, knight, false);
+            KING_TARGETS[square] = targets(square, king, false);
+            for (int direction = 0; direction < 8; direction++) {
+                RAYS[direction][square] = targets(square, new int[][]{king[direction]}, true);
+            }
+        }
+        Arrays.fill(CASTLE_MASK, 15);
+        CASTLE_MASK[4] = ~(WHITE_KINGSIDE | WHITE_QUEENSIDE) & 15;
+        CASTLE_MASK[0] = ~WHITE_QUEENSIDE & 15;
+        CASTLE_MASK[7] = ~WHITE_KINGSIDE & 15;
+        CASTLE_MASK[60] = ~(BLACK_KINGSIDE | BLACK_QUEENSIDE) & 15;
+        CASTLE_MASK[56] = ~BLACK_QUEENSIDE & 15;
+        CASTLE_MASK[63] = ~BLACK_KINGSIDE & 15;
+
+        SplittableRandom random = new SplittableRandom(0x5EED_C0DEL);
+        for (long[] keys : PIECE_KEYS) {
+            for (int square = 0; square < 64; square++) {
+                keys[square] = random.nextLong();
+            }
+        }
+        for (int i = 0; i < CASTLING_KEYS.length; i++) {
+            CASTLING_KEYS[i] = random.nextLong();
+        }
+        for (int i = 0; i < EN_PASSANT_KEYS.length; i++) {
+            EN_PASSANT_KEYS[i] = random.nextLong();
+        }
+        SIDE_KEY = random.nextLong();
+    }
+
+    final int[] board = new int[64];
+    final int[] kingSquare = new int[2];
+    int sideToMove;
+    int castling;
+    int enPassant = -1;
+    int halfmoveClock;
+    int fullmoveNumber = 1;
+    long key;
+    /**
+     * Evaluation terms kept up to date by make and unmake, signed for White;
+     * see {@link Evaluator}.
+     */
+    int middlegame;
+    int endgame;
+    int phase;
+
+    private int ply;
+    private final long[] keyHistory = new long[MAX_HISTORY];
+    private final int[] moveHistory = new int[MAX_HISTORY];
+    private final int[] capturedHistory = new int[MAX_HISTORY];
+    private final int[] castlingHistory = new int[MAX_HISTORY];
+    private final int[] enPassantHistory = new int[MAX_HISTORY];
+    private final int[] halfmoveHistory = new int[MAX_HISTORY];
+    private final int[] middlegameHistory = new int[MAX_HISTORY];
+    private final int[] endgameHistory = new int[MAX_HISTORY];
+    private final int[] phaseHistory = new int[MAX_HISTORY];
+
+    private Position() {
+    }
+
+    public static Position startpos() {
+        return fromFen(START_FEN);
+    }
+
+    public static Position fromFen(String fen) {
+        String[] parts = fen.trim().split("\\s+");
+        if (parts.length < 2) {
+            throw new IllegalArgumentException("Bad FEN: " + fen);
+        }
+        Position position = new Position();
+        int rank = 7;
+        int file = 0;
+        for (char c : parts[0].toCharArray()) {
+            if (c == '/') {
+                rank--;
+                file = 0;
+            } else if (Character.isDigit(c)) {
+                file += c - '0';
+            } else {
+                int type = PIECE_LETTERS.indexOf(Character.toUpperCase(c));
+                if (type <= 0 || rank < 0 || file > 7) {
+                    throw new IllegalArgumentException("Bad FEN: " + fen);
+                }
+                int piece = type | (Character.isUpperCase(c) ? WHITE : BLACK);
+                position.board[rank * 8 + file] = piece;
+                if (type == KING) {
+                    position.kingSquare[colorIndex(piece)] = rank * 8 + file;
+                }
+                file++;
+            }
+        }
+        position.sideToMove = parts[1].equals("b") ? BLACK : WHITE;
+        String castling = parts.length > 2 ? parts[2] : "-";
+        position.castling = (castling.indexOf('K') >= 0 ? WHITE_KINGSIDE : 0)
+            | (castling.indexOf('Q') >= 0 ? WHITE_QUEENSIDE : 0)
+            | (castling.indexOf('k') >= 0 ? BLACK_KINGSIDE : 0)
+            | (castling.indexOf('q') >= 0 ? BLACK_QUEENSIDE : 0);
+        if (parts.length > 3 && parts[3].length() == 2) {
+            position.enPassant = square(parts[3]);
+        }
+        position.halfmoveClock = parts.length > 4 ? Integer.parseInt(parts[4]) : 0;
+        position.fullmoveNumber = parts.length > 5 ? Integer.parseInt(parts[5]) : 1;
+        position.key = position.computeKey();
+        position.keyHistory[0] = position.key;
+        int[] totals = Evaluator.totals(position.board);
+        position.middlegame = totals[0];
+        position.endgame = totals[1];
+        position.phase = totals[2];
+        return position;
+    }
+
+    /**
+     * The position after {@code moves} (UCI notation) from {@code startFen},
+     * {@code null} meaning the standard start position.
+     *
+     * @throws IllegalArgumentException on an illegal move
+     */
+    public static Position of(String startFen, List<String> moves) {
+        Position position = fromFen(startFen == null ? START_FEN : startFen);
+        for (String uci : moves) {
+            int move = position.parseUciMove(uci);
+            if (move == NO_MOVE) {
+                throw new IllegalArgumentException("Illegal move " + uci + " in " + position.toFen());
+            }
+            position.makeMove(move);
+        }
+        return position;
+    }
+
+    /**
+     * Independent copy, including the move history used for repetitions.
+     */
+    public Position copy() {
+        Position copy = new Position();
+        System.arraycopy(board, 0, copy.board, 0, 64);
+        System.arraycopy(kingSquare, 0, copy.kingSquare, 0, 2);
+        copy.sideToMove = sideToMove;
+        copy.castling = castling;
+        copy.enPassant = enPassant;
+        copy.halfmoveClock = halfmoveClock;
+        copy.fullmoveNumber = fullmoveNumber;
+        copy.key = key;
+        copy.middlegame = middlegame;
+        copy.endgame = endgame;
+        copy.phase = phase;
+        copy.ply = ply;
+        System.arraycopy(keyHistory, 0, copy.keyHistory, 0, ply + 1);
+        System.arraycopy(moveHistory, 0, copy.moveHistory, 0, ply);
+        System.arraycopy(capturedHistory, 0, copy.capturedHistory, 0, ply);
+        System.arraycopy(castlingHistory, 0, copy.castlingHistory, 0, ply);
+        System.arraycopy(enPassantHistory, 0, copy.enPassantHistory, 0, ply);
+        System.arraycopy(halfmoveHistory, 0, copy.halfmoveHistory, 0, ply);
+        System.arraycopy(middlegameHistory, 0, copy.middlegameHistory, 0, ply);
+        System.arraycopy(endgameHistory, 0, copy.endgameHistory, 0, ply);
+        System.arraycopy(phaseHistory, 0, copy.phaseHistory, 0, ply);
+        return copy;
+    }
+
+    public String toFen() {
+        StringBuilder sb = new StringBuilder(90);
+        for (int rank = 7; rank >= 0; rank--) {
+            int empty = 0;
+            for (int file = 0; file < 8; file++) {
+                int piece = board[rank * 8 + file];
+                if (piece == 0) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    sb.append(empty);
+                    empty = 0;
+                }
+                char letter = PIECE_LETTERS.charAt(piece & 7);
+                sb.append(color(piece) == WHITE ? letter : Character.toLowerCase(letter));
+            }
+            if (empty > 0) {
+                sb.append(empty);
+            }
+            if (rank > 0) {
+                sb.append('/');
+            }
+        }
+        sb.append(sideToMove == WHITE ? " w " : " b ");
+        if (castling == 0) {
+            sb.append('-');
+        } else {
+            if ((castling & WHITE_KINGSIDE) != 0) sb.append('K');
+            if ((castling & WHITE_QUEENSIDE) != 0) sb.append('Q');
+            if ((castling & BLACK_KINGSIDE) != 0) sb.append('k');
+            if ((castling & BLACK_QUEENSIDE) != 0) sb.append('q');
+        }
+        sb.append(' ').append(enPassant < 0 ? "-" : squareName(enPassant));
+        sb.append(' ').append(halfmoveClock).append(' ').append(fullmoveNumber);
+        return sb.toString();
+    }
+
+    public boolean whiteToMove() {
+        return sideToMove == WHITE;
+    }
+
+    public int pieceAt(int square) {
+        return board[square];
+    }
+
+    public long key() {
+        return key;
+    }
+
+    /**
+     * Static evaluation in centipawns from White's side: material and piece
+     * squares, tapered by phase. Kept incrementally, so it is cheap enough to
+     * call after every move.
+     */
+    public int evaluation() {
+        return Evaluator.taper(middlegame, endgame, phase);
+    }
+
+    // ------------------------------------------------------------------ moves
+
+    static int move(int from, int to, int promotion, int flags) {
+        return from | (to << 6) | (promotion << 12) | flags;
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    public static int promotion(int move) {
+        return (move >>> 12) & 7;
+    }
+
+    static boolean isCapture(int move) {
+        return (move & FLAG_CAPTURE) != 0;
+    }
+
+    public static String toUci(int move) {
+        String uci = squareName(from(move)) + squareName(to(move));
+        int promotion = promotion(move);
+        return promotion == 0 ? uci : uci + Character.toLowerCase(PIECE_LETTERS.charAt(promotion));
+    }
+
+    /**
+     * The legal move written as {@code uci}, or {@link #NO_MOVE}.
+     */
+    public int parseUciMove(String uci) {
+        if (uci == null || uci.length() < 4) {
+            return NO_MOVE;
+        }
+        int from = square(uci.substring(0, 2));
+        int to = square(uci.substring(2, 4));
+        int promotion = uci.length() > 4 ? PIECE_LETTERS.indexOf(Character.toUpperCase(uci.charAt(4))) : 0;
+        for (int move : legalMoves()) {
+            if (from(move) == from && to(move) == to && promotion(move) == Math.max(0, promotion)) {
+                return move;
+            }
+        }
+        return NO_MOVE;
+    }
+
+    /**
+     * The legal move written as {@code san} (standard algebraic notation, as
+     * in PGN), or {@link #NO_MOVE} when none or more than one move fits.
+     * Check marks and annotations such as {@code +}, {@code #} or {@code !?}
+     * are ignored.
+     */
+    public int parseSanMove(String san) {
+        if (san == null) {
+            return NO_MOVE;
+        }
+        String text = san.trim().replaceAll("[+#!?]+$", "");
+        if (text.equals("O-O") || text.equals("0-0") || text.equals("O-O-O") || text.equals("0-0-0")) {
+            boolean kingside = text.length() == 3;
+            for (int move : legalMoves()) {
+                if ((move & FLAG_CASTLE) != 0 && (to(move) > from(move)) == kingside) {
+                    return move;
+                }
+            }
+            return NO_MOVE;
+        }
+        int type = PAWN;
+        if (!text.isEmpty() && "NBRQK".indexOf(text.charAt(0)) >= 0) {
+            type = PIECE_LETTERS.indexOf(text.charAt(0));
+            text = text.substring(1);
+        }
+        int promotion = 0;
+        int equals = text.indexOf('=');
+        if (equals >= 0 && equals + 1 < text.length()) {
+            promotion = PIECE_LETTERS.indexOf(Character.toUpperCase(text.charAt(equals + 1)));
+            text = text.substring(0, equals);
+        } else if (type == PAWN && text.length() >= 3 && "NBRQ".indexOf(text.charAt(text.length() - 1)) >= 0) {
+            promotion = PIECE_LETTERS.indexOf(text.charAt(text.length() - 1));
+            text = text.substring(0, text.length() - 1);
+        }
+        text = text.replace("x", "").replace("-", "");
+        if (promotion < 0 || text.length() < 2 || text.length() > 4) {
+            return NO_MOVE;
+        }
+        char toFile = text.charAt(text.length() - 2);
+        char toRank = text.charAt(text.length() - 1);
+        if (toFile < 'a' || toFile > 'h' || toRank < '1' || toRank > '8') {
+            return NO_MOVE;
+        }
+        int to = (toRank - '1') * 8 + (toFile - 'a');
+        int fromFile = -1;
+        int fromRank = -1;
+        for (char c : text.substring(0, text.length() - 2).toCharArray()) {
+            if (c >= 'a' && c <= 'h') {
+                fromFile = c - 'a';
+            } else if (c >= '1' && c <= '8') {
+                fromRank = c - '1';
+            } else {
+                return NO_MOVE;
+            }
+        }
+        int found = NO_MOVE;
+        for (int move : legalMoves()) {
+            int from = from(move);
+            if (to(move) != to || (board[from] & 7) != type || promotion(move) != promotion
+                || (fromFile >= 0 && (from & 7) != fromFile) || (fromRank >= 0 && (from >> 3) != fromRank)) {
+                continue;
+            }
+            if (found != NO_MOVE) {
+                return NO_MOVE;
+            }
+            found = move;
+        }
+        return found;
+    }
+
+    public int[] legalMoves() {
+        int[] moves = new int[MAX_MOVES];
+        int count = generateMoves(moves, false);
+        int legal = 0;
+        for (int i = 0; i < count; i++) {
+            if (makeMove(moves[i])) {
+                unmakeMove();
+                moves[legal++] = moves[i];
+            }
+        }
+        return Arrays.copyOf(moves, legal);
+    }
+
+    /**
+     * Pseudo-legal moves into {@code moves}; with {@code capturesOnly},
+     * captures and queen promotions for quiescence search.
+     *
+     * @return number of moves written
+     */
+    int generateMoves(int[] moves, boolean capturesOnly) {
+        int count = 0;
+        int us = sideToMove;
+        int them = us ^ BLACK;
+        for (int from = 0; from < 64; from++) {
+            int piece = board[from];
+            if (piece == 0 || color(piece) != us) {
+                continue;
+            }
+            switch (piece & 7) {
+                case PAWN:
+                    count = pawnMoves(moves, count, from, us, capturesOnly);
+                    break;
+                case KNIGHT:
+                    count = jumpMoves(moves, count, from, KNIGHT_TARGETS[from], them, capturesOnly);
+                    break;
+                case KING:
+                    count = jumpMoves(moves, count, from, KING_TARGETS[from], them, capturesOnly);
+                    if (!capturesOnly) {
+                        count = castlingMoves(moves, count, from, us);
+                    }
+                    break;
+                case BISHOP:
+                    count = slideMoves(moves, count, from, 4, 8, them, capturesOnly);
+                    break;
+                case ROOK:
+                    count = slideMoves(moves, count, from, 0, 4, them, capturesOnly);
+                    break;
+                case QUEEN:
+                    count = slideMoves(moves, count, from, 0, 8, them, capturesOnly);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return count;
+    }
+
+    private int pawnMoves(int[] moves, int count, int from, int us, boolean capturesOnly) {
+        int forward = us == WHITE ? 8 : -8;
+        int startRank = us == WHITE ? 1 : 6;
+        int lastRank = us == WHITE ? 7 : 0;
+        int file = from & 7;
+        int to = from + forward;
+        if (board[to] == 0) {
+            if ((to >>> 3) == lastRank) {
+                count = promotions(moves, count, from, to, 0, capturesOnly);
+            } else if (!capturesOnly) {
+                moves[count++] = move(from, to, 0, 0);
+                if ((from >>> 3) == startRank && board[to + forward] == 0) {
+                    moves[count++] = move(from, to + forward, 0, FLAG_DOUBLE_PUSH);
+                }
+            }
+        }
+        for (int side = -1; side <= 1; side += 2) {
+            if (file + side < 0 || file + side > 7) {
+                continue;
+            }
+            int target = to + side;
+            int victim = board[target];
+            if (victim != 0 && color(victim) != us) {
+                if ((target >>> 3) == lastRank) {
+                    count = promotions(moves, count, from, target, FLAG_CAPTURE, false);
+                } else {
+                    moves[count++] = move(from, target, 0, FLAG_CAPTURE);
+                }
+            } else if (target == enPassant) {
+                moves[count++] = move(from, target, 0, FLAG_CAPTURE | FLAG_EN_PASSANT);
+            }
+        }
+        return count;
+    }
+
+    private static int promotions(int[] moves, int count, int from, int to, int flags, boolean queenOnly) {
+        moves[count++] = move(from, to, QUEEN, flags);
+        if (!queenOnly) {
+            moves[count++] = move(from, to, KNIGHT, flags);
+            moves[count++] = move(from, to, ROOK, flags);
+            moves[count++] = move(from, to, BISHOP, flags);
+        }
+        return count;
+    }
+
+    private int jumpMoves(int[] moves, int count, int from, int[] targets, int them, boolean capturesOnly) {
+        for (int to : targets) {
+            int victim = board[to];
+            if (victim == 0) {
+                if (!capturesOnly) {
+                    moves[count++] = move(from, to, 0, 0);
+                }
+            } else if (color(victim) == them) {
+                moves[count++] = move(from, to, 0, FLAG_CAPTURE);
+            }
+        }
+        return count;
+    }
+
+    private int slideMoves(int[] moves, int count, int from, int firstDirection, int lastDirection, int them,
+                           boolean capturesOnly) {
+        for (int direction = firstDirection; direction < lastDirection; direction++) {
+            for (int to : RAYS[direction][from]) {
+                int victim = board[to];
+                if (victim == 0) {
+                    if (!capturesOnly) {
+                        moves[count++] = move(from, to, 0, 0);
+                    }
+                    continue;
+                }
+                if (color(victim) == them) {
+                    moves[count++] = move(from, to, 0, FLAG_CAPTURE);
+                }
+                break;
+            }
+        }
+        return count;
+    }
+
+    private int castlingMoves(int[] moves, int count, int from, int us) {
+        int them = us ^ BLACK;
+        int home = us == WHITE ? 4 : 60;
+        if (from != home || isAttacked(home, them)) {
+            return count;
+        }
+        int kingside = us == WHITE ? WHITE_KINGSIDE : BLACK_KINGSIDE;
+        int queenside = us == WHITE ? WHITE_QUEENSIDE : BLACK_QUEENSIDE;
+        int rook = us | ROOK;
+        if ((castling & kingside) != 0 && board[home + 3] == rook && board[home + 1] == 0 && board[home + 2] == 0
+            && !isAttacked(home + 1, them) && !isAttacked(home + 2, them)) {
+            moves[count++] = move(home, home + 2, 0, FLAG_CASTLE);
+        }
+        if ((castling & queenside) != 0 && board[home - 4] == rook && board[home - 1] == 0 && board[home - 2] == 0
+            && board[home - 3] == 0 && !isAttacked(home - 1, them) && !isAttacked(home - 2, them)) {
+            moves[count++] = move(home, home - 2, 0, FLAG_CASTLE);
+        }
+        return count;
+    }
+
+    // ------------------------------------------------------------ make/unmake
+
+    /**
+     * Plays a pseudo-legal move. Returns false, with the position unchanged,
+     * when the move would leave the mover in check.
+     */
+    public boolean makeMove(int move) {
+        int from = from(move);
+        int to = to(move);
+        int piece = board[from];
+        int us = sideToMove;
+        int them = us ^ BLACK;
+        int capturedSquare = (move & FLAG_EN_PASSANT) != 0 ? to + (us == WHITE ? -8 : 8) : to;
+        int captured = board[capturedSquare];
+
+        if (ply + 1 >= MAX_HISTORY) {
+            throw new IllegalStateException("Game too long");
+        }
+        moveHistory[ply] = move;
+        capturedHistory[ply] = captured;
+        castlingHistory[ply] = castling;
+        enPassantHistory[ply] = enPassant;
+        halfmoveHistory[ply] = halfmoveClock;
+        middlegameHistory[ply] = middlegame;
+        endgameHistory[ply] = endgame;
+        phaseHistory[ply] = phase;
+
+        long k = key ^ SIDE_KEY ^ CASTLING_KEYS[castling];
+        if (enPassant >= 0) {
+            k ^= EN_PASSANT_KEYS[enPassant & 7];
+        }
+        if (captured != 0) {
+            board[capturedSquare] = 0;
+            k ^= PIECE_KEYS[captured][capturedSquare];
+            middlegame -= Evaluator.MIDDLEGAME[captured][capturedSquare];
+            endgame -= Evaluator.ENDGAME[captured][capturedSquare];
+            phase -= Evaluator.PHASE[captured];
+        }
+        board[from] = 0;
+        int placed = promotion(move) == 0 ? piece : (us | promotion(move));
+        board[to] = placed;
+        k ^= PIECE_KEYS[piece][from] ^ PIECE_KEYS[placed][to];
+        middlegame += Evaluator.MIDDLEGAME[placed][to] - Evaluator.MIDDLEGAME[piece][from];
+        endgame += Evaluator.ENDGAME[placed][to] - Evaluator.ENDGAME[piece][from];
+        phase += Evaluator.PHASE[placed] - Evaluator.PHASE[piece];
+        if ((piece & 7) == KING) {
+            kingSquare[colorIndex(us)] = to;
+            if ((move & FLAG_CASTLE) != 0) {
+                int rookFrom = to > from ? from + 3 : from - 4;
+                int rookTo = to > from ? from + 1 : from - 1;
+                int rook = board[rookFrom];
+                board[rookFrom] = 0;
+                board[rookTo] = rook;
+                k ^= PIECE_KEYS[rook][rookFrom] ^ PIECE_KEYS[rook][rookTo];
+                middlegame += Evaluator.MIDDLEGAME[rook][rookTo] - Evaluator.MIDDLEGAME[rook][rookFrom];
+                endgame += Evaluator.ENDGAME[rook][rookTo] - Evaluator.ENDGAME[rook][rookFrom];
+            }
+        }
+        castling &= CASTLE_MASK[from] & CASTLE_MASK[to];
+        k ^= CASTLING_KEYS[castling];
+        enPassant = (move & FLAG_DOUBLE_PUSH) != 0 ? (from + to) / 2 : -1;
+        if (enPassant >= 0) {
+            k ^= EN_PASSANT_KEYS[enPassant & 7];
+        }
+        halfmoveClock = (piece & 7) == PAWN || captured != 0 ? 0 : halfmoveClock + 1;
+        if (us == BLACK) {
+            fullmoveNumber++;
+        }
+        sideToMove = them;
+        key = k;
+        keyHistory[++ply] = k;
+
+        if (isAttacked(kingSquare[colorIndex(us)], them)) {
+            unmakeMove();
+            return false;
+        }
+        return true;
+    }
+
+    public void unmakeMove() {
+        int move = moveHistory[--ply];
+        int from = from(move);
+        int to = to(move);
+        int them = sideToMove;
+        int us = them ^ BLACK;
+        int piece = promotion(move) == 0 ? board[to] : (us | PAWN);
+        board[from] = piece;
+        board[to] = 0;
+        int captured = capturedHistory[ply];
+        if (captured != 0) {
+            board[(move & FLAG_EN_PASSANT) != 0 ? to + (us == WHITE ? -8 : 8) : to] = captured;
+        }
+        if ((piece & 7) == KING) {
+            kingSquare[colorIndex(us)] = from;
+            if ((move & FLAG_CASTLE) != 0) {
+                int rookFrom = to > from ? from + 3 : from - 4;
+                int rookTo = to > from ? from + 1 : from - 1;
+                board[rookFrom] = board[rookTo];
+                board[rookTo] = 0;
+            }
+        }
+        castling = castlingHistory[ply];
+        enPassant = enPassantHistory[ply];
+        halfmoveClock = halfmoveHistory[ply];
+        middlegame = middlegameHistory[ply];
+        endgame = endgameHistory[ply];
+        phase = phaseHistory[ply];
+        if (us == BLACK) {
+            fullmoveNumber--;
+        }
+        sideToMove = us;
+        key = keyHistory[ply];
+    }
+
+    /**
+     * Passes the move, for null-move pruning. Never call it in check.
+     */
+    void makeNullMove() {
+        moveHistory[ply] = NO_MOVE;
+        capturedHistory[ply] = 0;
+        castlingHistory[ply] = castling;
+        enPassantHistory[ply] = enPassant;
+        halfmoveHistory[ply] = halfmoveClock;
+        long k = key ^ SIDE_KEY;
+        if (enPassant >= 0) {
+            k ^= EN_PASSANT_KEYS[enPassant & 7];
+        }
+        enPassant = -1;
+        halfmoveClock++;
+        sideToMove ^= BLACK;
+        key = k;
+        keyHistory[++ply] = k;
+    }
+
+    void unmakeNullMove() {
+        ply--;
+        enPassant = enPassantHistory[ply];
+        halfmoveClock = halfmoveHistory[ply];
+        sideToMove ^= BLACK;
+        key = keyHistory[ply];
+    }
+
+    // ----------------------------------------------------------------- queries
+
+    public boolean inCheck() {
+        return isAttacked(kingSquare[colorIndex(sideToMove)], sideToMove ^ BLACK);
+    }
+
+    boolean isAttacked(int square, int by) {
+        int file = square & 7;
+        int pawn = by | PAWN;
+        if (by == WHITE) {
+            if (file > 0 && square >= 9 && board[square - 9] == pawn) return true;
+            if (file < 7 && square >= 7 && board[square - 7] == pawn) return true;
+        } else {
+            if (file < 7 && square <= 54 && board[square + 9] == pawn) return true;
+            if (file > 0 && square <= 56 && board[square + 7] == pawn) return true;
+        }
+        int knight = by | KNIGHT;
+        for (int from : KNIGHT_TARGETS[square]) {
+            if (board[from] == knight) return true;
+        }
+        int king = by | KING;
+        for (int from : KING_TARGETS[square]) {
+            if (board[from] == king) return true;
+        }
+        int queen = by | QUEEN;
+        for (int direction = 0; direction < 8; direction++) {
+            int slider = by | (direction < 4 ? ROOK : BISHOP);
+            for (int from : RAYS[direction][square]) {
+                int piece = board[from];
+                if (piece != 0) {
+                    if (piece == slider || piece == queen) return true;
+                    break;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Draw by the fifty-move rule or by repeating a position since the last
+     * capture or pawn move; one repetition is enough inside a search.
+     */
+    boolean isRepetitionOrFiftyMoves() {
+        if (halfmoveClock >= 100) {
+            return true;
+        }
+        int earliest = Math.max(0, ply - halfmoveClock);
+        for (int i = ply - 2; i >= earliest; i -= 2) {
+            if (keyHistory[i] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Bare kings, or a lone minor piece against a bare king.
+     */
+    boolean isInsufficientMaterial() {
+        int minors = 0;
+        for (int piece : board) {
+            int type = piece & 7;
+            if (type == PAWN || type == ROOK || type == QUEEN) {
+                return false;
+            }
+            if (type == KNIGHT || type == BISHOP) {
+                minors++;
+            }
+        }
+        return minors <= 1;
+    }
+
+    /**
+     * Whether the side to move has anything besides pawns and king; null
+     * moves are unsafe without it (zugzwang).
+     */
+    boolean hasNonPawnMaterial() {
+        for (int piece : board) {
+            int type = piece & 7;
+            if (piece != 0 && color(piece) == sideToMove && type != PAWN && type != KING) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static int color(int piece) {
+        return piece & BLACK;
+    }
+
+    static int colorIndex(int piece) {
+        return (piece & BLACK) >>> 3;
+    }
+
+    static String squareName(int square) {
+        return "" + (char) ('a' + (square & 7)) + (char) ('1' + (square >>> 3));
+    }
+
+    static int square(String name) {
+        return (name.charAt(1) - '1') * 8 + (name.charAt(0) - 'a');
+    }
+
+    private long computeKey() {
+        long k = CASTLING_KEYS[castling];
+        for (int square = 0; square < 64; square++) {
+            if (board[square] != 0) {
+                k ^= PIECE_KEYS[board[square]][square];
+            }
+        }
+        if (enPassant >= 0) {
+            k ^= EN_PASSANT_KEYS[enPassant & 7];
+        }
+        return sideToMove == WHITE ? k : k ^ SIDE_KEY;
+    }
+
+    private static int[] targets(int square, int[][] steps, boolean slide) {
+        int[] buffer = new int[8];
+        int count = 0;
+        for (int[] step : steps) {
+            int file = square & 7;
+            int rank = square >>> 3;
+            do {
+                file += step[0];
+                rank += step[1];
+                if (file < 0 || file > 7 || rank < 0 || rank > 7) {
+                    break;
+                }
+                buffer[count++] = rank * 8 + file;
+            } while (slide);
+        }
+        return Arrays.copyOf(buffer, count);
+    }
+
+    @Override
+    public String toString() {
+        return toFen();
+    }
+}
@@ -0,0 +1,496 @@
+package engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Iterative-deepening principal variation search: alpha-beta with null-move
+ * pruning and late move reductions, a quiescence search over captures, and
+ * moves ordered by the transposition table's best move, MVV-LVA, killers
+ * and history. Several best lines can be searched by excluding the earlier ones at the
+ * root (MultiPV). Not thread-safe; one instance per searching thread.
+ * Several instances sharing one {@link TranspositionTable} make a Lazy SMP
+ * search: helpers skip some depths so they run ahead of the main thread and
+ * fill the table with results it can use.
+ */
+final class Search {
+
+    static final int INFINITE = 32_000;
+    static final int MATE = 31_000;
+    static final int MAX_PLY = 128;
+
+    private static final int CHECK_INTERVAL = 1023;
+    private static final int HASH_MOVE_SCORE = 1_000_000;
+    private static final int CAPTURE_SCORE = 100_000;
+    private static final int PROMOTION_SCORE = 90_000;
+    private static final int KILLER_SCORE = 80_000;
+    private static final int[] SKIP_SIZE = {1, 1, 2, 2, 2, 2, 3, 3, 3, 3, 3, 3, 4, 4, 4, 4, 4, 4, 4, 4};
+    private static final int[] SKIP_PHASE = {0, 1, 0, 1, 2, 3, 0, 1, 2, 3, 4, 5, 0, 1, 2, 3, 4, 5, 6, 7};
+
+    /**
+     * A finished root line: the principal variation and its score, in
+     * centipawns from the side to move at the root.
+     */
+    static final class Line {
+        final int[] moves;
+        final int score;
+        final int depth;
+
+        Line(int[] moves, int score, int depth) {
+            this.moves = moves;
+            this.score = score;
+            this.depth = depth;
+        }
+
+        int move() {
+            return moves[0];
+        }
+    }
+
+    /**
+     * Told about every completed iteration.
+     */
+    interface IterationListener {
+        void onIteration(int depth, int selDepth, List<Line> lines, long nodes);
+    }
+
+    private final TranspositionTable table;
+    private Position position;
+    private final int[][] moves = new int[MAX_PLY + 1][Position.MAX_MOVES];
+    private final int[][] orderScores = new int[MAX_PLY + 1][Position.MAX_MOVES];
+    private final int[][] killers = new int[MAX_PLY + 1][2];
+    private final int[][] history = new int[64][64];
+    private final int[][] pv = new int[MAX_PLY + 1][MAX_PLY + 1];
+    private final int[] pvLength = new int[MAX_PLY + 1];
+
+    private long nodes;
+    private int selDepth;
+    private boolean canAbort;
+    private boolean aborted;
+    private volatile boolean stopRequested;
+    private long deadlineNanos;
+    private long nodeLimit;
+    private int evalNoise;
+    private Random noise;
+    private int skipSize;
+    private int skipPhase;
+
+    Search(TranspositionTable table) {
+        this.table = table;
+    }
+
+    /**
+     * Makes this a Lazy SMP helper: helper {@code index} (from 1) searches
+     * only some depths, staggered against the other helpers. Index 0 is the
+     * main thread, which searches every depth.
+     */
+    void setHelperIndex(int index) {
+        if (index <= 0) {
+            skipSize = 0;
+        } else {
+            skipSize = SKIP_SIZE[(index - 1) % SKIP_SIZE.length];
+            skipPhase = SKIP_PHASE[(index - 1) % SKIP_PHASE.length];
+        }
+    }
+
+    /**
+     * Adds up to {@code centipawns} of random error to every evaluation, the
+     * simplest way to make the engine play weaker.
+     */
+    void setEvalNoise(int centipawns, Random random) {
+        this.evalNoise = Math.max(0, centipawns);
+        this.noise = random;
+    }
+
+    void stop() {
+        stopRequested = true;
+    }
+
+    /**
+     * Undoes {@link #stop()} before the next {@link #run}; separate from it
+     * so a stop sent just before a helper starts is not lost.
+     */
+    void clearStop() {
+        stopRequested = false;
+    }
+
+    /**
+     * Nodes searched by the current or last run; only approximate when read
+     * from another thread while searching.
+     */
+    long nodes() {
+        return nodes;
+    }
+
+    /**
+     * Forgets move-ordering statistics, e.g. for a new game.
+     */
+    void clearHistory() {
+        for (int[] row : history) {
+            Arrays.fill(row, 0);
+        }
+        for (int[] row : killers) {
+            Arrays.fill(row, Position.NO_MOVE);
+        }
+    }
+
+    /**
+     * Searches {@code position} until {@code maxDepth}, the node limit or the
+     * deadline is reached. A new iteration is not started past
+     * {@code softDeadlineNanos}; the running one is abandoned at
+     * {@code hardDeadlineNanos}. Depth 1 is always completed, so there is a
+     * move to play.
+     *
+     * @return the lines of the deepest completed iteration, best first;
+     * empty when there is no legal move
+     */
+    List<Line> run(Position position, int maxDepth, int multiPv, long softDeadlineNanos, long hardDeadlineNanos,
+                   long nodeLimit, IterationListener listener) {
+        this.position = position;
+        this.nodes = 0;
+        this.selDepth = 0;
+        this.aborted = false;
+        this.deadlineNanos = hardDeadlineNanos;
+        this.nodeLimit = nodeLimit;
+        for (int[] row : history) {
+            for (int i = 0; i < 64; i++) {
+                row[i] >>= 1;
+            }
+        }
+
+        int[] rootMoves = position.legalMoves();
+        List<Line> best = new ArrayList<>();
+        int lineCount = Math.min(Math.max(1, multiPv), rootMoves.length);
+        for (int depth = 1; depth <= Math.max(1, maxDepth) && rootMoves.length > 0; depth++) {
+            if (skipSize > 0 && ((depth + skipPhase) / skipSize) % 2 != 0) {
+                continue;
+            }
+            canAbort = depth > 1 || skipSize > 0;
+            List<Line> lines = new ArrayList<>(lineCount);
+            boolean[] excluded = new boolean[rootMoves.length];
+            for (int rank = 0; rank < lineCount; rank++) {
+                Line line = searchRoot(depth, rootMoves, excluded);
+                if (aborted) {
+                    break;
+                }
+                lines.add(line);
+                for (int i = 0; i < rootMoves.length; i++) {
+                    if (rootMoves[i] == line.move()) {
+                        excluded[i] = true;
+                    }
+                }
+            }
+            if (aborted) {
+                break;
+            }
+            lines.sort(Comparator.comparingInt((Line line) -> line.score).reversed());
+            best = lines;
+            orderRoot(rootMoves, lines);
+            if (listener != null) {
+                listener.onIteration(depth, selDepth, lines, nodes);
+            }
+            if (Math.abs(lines.get(0).score) >= MATE - depth || rootMoves.length == 1 && multiPv <= 1) {
+                break;
+            }
+            if ((softDeadlineNanos > 0 && System.nanoTime() > softDeadlineNanos) || stopRequested
+                || (nodeLimit > 0 && nodes >= nodeLimit)) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    private Line searchRoot(int depth, int[] rootMoves, boolean[] excluded) {
+        int alpha = -INFINITE;
+        int beta = INFINITE;
+        int bestScore = -INFINITE;
+        int[] bestLine = null;
+        int searched = 0;
+        for (int i = 0; i < rootMoves.length; i++) {
+            if (excluded[i]) {
+                continue;
+            }
+            int move = rootMoves[i];
+            position.makeMove(move);
+            int score;
+            if (searched++ == 0) {
+                score = -negamax(depth - 1, -beta, -alpha, 1);
+            } else {
+                score = -negamax(depth - 1, -alpha - 1, -alpha, 1);
+                if (!aborted && score > alpha && score < beta) {
+                    score = -negamax(depth - 1, -beta, -alpha, 1);
+                }
+            }
+            position.unmakeMove();
+            if (aborted) {
+                return null;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                bestLine = new int[pvLength[1]];
+                bestLine[0] = move;
+                System.arraycopy(pv[1], 1, bestLine, 1, pvLength[1] - 1);
+                alpha = Math.max(alpha, score);
+            }
+        }
+        return new Line(bestLine, bestScore, depth);
+    }
+
+    private int negamax(int depth, int alpha, int beta, int ply) {
+        pvLength[ply] = ply;
+        if (position.isRepetitionOrFiftyMoves() || position.isInsufficientMaterial()) {
+            return 0;
+        }
+        boolean inCheck = position.inCheck();
+        if (inCheck) {
+            depth++;
+        }
+        if (depth <= 0) {
+            return quiesce(alpha, beta, ply);
+        }
+        if (ply >= MAX_PLY) {
+            return evaluate();
+        }
+        if (shouldAbort()) {
+            return 0;
+        }
+        nodes++;
+
+        alpha = Math.max(alpha, -MATE + ply);
+        beta = Math.min(beta, MATE - ply - 1);
+        if (alpha >= beta) {
+            return alpha;
+        }
+        boolean pvNode = beta - alpha > 1;
+
+        long entry = table.probe(position.key());
+        int hashMove = TranspositionTable.move(entry);
+        if (entry != TranspositionTable.NO_ENTRY && !pvNode && TranspositionTable.depth(entry) >= depth) {
+            int score = scoreFromTable(TranspositionTable.score(entry), ply);
+            int bound = TranspositionTable.bound(entry);
+            if (bound == TranspositionTable.BOUND_EXACT
+                || (bound == TranspositionTable.BOUND_LOWER && score >= beta)
+                || (bound == TranspositionTable.BOUND_UPPER && score <= alpha)) {
+                return score;
+            }
+        }
+        int originalAlpha = alpha;
+
+        if (!pvNode && !inCheck && depth >= 3 && position.hasNonPawnMaterial() && evaluate() >= beta) {
+            position.makeNullMove();
+            int score = -negamax(depth - 3, -beta, -beta + 1, ply + 1);
+            position.unmakeNullMove();
+            if (aborted) {
+                return 0;
+            }
+            if (score >= beta) {
+                return beta;
+            }
+        }
+
+        int count = position.generateMoves(moves[ply], false);
+        scoreMoves(ply, count, hashMove);
+        int legal = 0;
+        int bestScore = -INFINITE;
+        int bestMove = Position.NO_MOVE;
+        for (int i = 0; i < count; i++) {
+            int move = pickNext(ply, i, count);
+            if (!position.makeMove(move)) {
+                continue;
+            }
+            legal++;
+            boolean quiet = !Position.isCapture(move) && Position.promotion(move) == 0;
+            int score;
+            if (legal == 1) {
+                score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+            } else {
+                int reduction = depth >= 3 && legal > 4 && quiet && !inCheck && !position.inCheck() ? 1 : 0;
+                score = -negamax(depth - 1 - reduction, -alpha - 1, -alpha, ply + 1);
+                if (!aborted && score > alpha && (reduction > 0 || score < beta)) {
+                    score = -negamax(depth - 1, -beta, -alpha, ply + 1);
+                }
+            }
+            position.unmakeMove();
+            if (aborted) {
+                return 0;
+            }
+            if (score > bestScore) {
+                bestScore = score;
+                if (score > alpha) {
+                    alpha = score;
+                    bestMove = move;
+                    updatePv(ply, move);
+                    if (score >= beta) {
+                        if (quiet) {
+                            rememberQuietCutoff(ply, move, depth);
+                        }
+                        table.store(position.key(), move, scoreToTable(score, ply), depth,
+                            TranspositionTable.BOUND_LOWER);
+                        return score;
+                    }
+                }
+            }
+        }
+        if (legal == 0) {
+            return inCheck ? -MATE + ply : 0;
+        }
+        table.store(position.key(), bestMove, scoreToTable(bestScore, ply), depth,
+            alpha > originalAlpha ? TranspositionTable.BOUND_EXACT : TranspositionTable.BOUND_UPPER);
+        return bestScore;
+    }
+
+    /**
+     * Mate scores are stored relative to the node, not the root, so they
+     * stay right when the entry is found at another ply.
+     */
+    private static int scoreToTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) {
+            return score + ply;
+        }
+        if (score <= -MATE + MAX_PLY) {
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static int scoreFromTable(int score, int ply) {
+        if (score >= MATE - MAX_PLY) {
+            return score - ply;
+        }
+        if (score <= -MATE + MAX_PLY) {
+            return score + ply;
+        }
+        return score;
+    }
+
+    private int quiesce(int alpha, int beta, int ply) {
+        pvLength[ply] = ply;
+        if (shouldAbort()) {
+            return 0;
+        }
+        nodes++;
+        selDepth = Math.max(selDepth, ply);
+        int standPat = evaluate();
+        if (ply >= MAX_PLY || standPat >= beta) {
+            return standPat;
+        }
+        alpha = Math.max(alpha, standPat);
+        int count = position.generateMoves(moves[ply], true);
+        scoreMoves(ply, count, Position.NO_MOVE);
+        for (int i = 0; i < count; i++) {
+            int move = pickNext(ply, i, count);
+            if (!position.makeMove(move)) {
+                continue;
+            }
+            int score = -quiesce(-beta, -alpha, ply + 1);
+            position.unmakeMove();
+            if (aborted) {
+                return 0;
+            }
+            if (score > alpha) {
+                alpha = score;
+                updatePv(ply, move);
+                if (score >= beta) {
+                    return score;
+                }
+            }
+        }
+        return alpha;
+    }
+
+    private int evaluate() {
+        int score = Evaluator.evaluate(position);
+        if (evalNoise > 0) {
+            score += noise.nextInt(2 * evalNoise + 1) - evalNoise;
+        }
+        return score;
+    }
+
+    private boolean shouldAbort() {
+        if (!aborted && canAbort && (nodes & CHECK_INTERVAL) == 0) {
+            aborted = stopRequested
+                || (deadlineNanos > 0 && System.nanoTime() > deadlineNanos)
+                || (nodeLimit > 0 && nodes >= nodeLimit);
+        }
+        return aborted;
+    }
+
+    private void updatePv(int ply, int move) {
+        pv[ply][ply] = move;
+        int childLength = pvLength[ply + 1];
+        System.arraycopy(pv[ply + 1], ply + 1, pv[ply], ply + 1, childLength - ply - 1);
+        pvLength[ply] = Math.max(ply + 1, childLength);
+    }
+
+    private void rememberQuietCutoff(int ply, int move, int depth) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        history[Position.from(move)][Position.to(move)] += depth * depth;
+    }
+
+    private void scoreMoves(int ply, int count, int hashMove) {
+        int[] list = moves[ply];
+        int[] scores = orderScores[ply];
+        for (int i = 0; i < count; i++) {
+            int move = list[i];
+            if (move == hashMove) {
+                scores[i] = HASH_MOVE_SCORE;
+            } else if (Position.isCapture(move)) {
+                int victim = position.board[Position.to(move)] & 7;
+                int attacker = position.board[Position.from(move)] & 7;
+                scores[i] = CAPTURE_SCORE + (victim == 0 ? Position.PAWN : victim) * 10 - attacker;
+            } else if (Position.promotion(move) != 0) {
+                scores[i] = PROMOTION_SCORE + Position.promotion(move);
+            } else if (move == killers[ply][0]) {
+                scores[i] = KILLER_SCORE;
+            } else if (move == killers[ply][1]) {
+                scores[i] = KILLER_SCORE - 1;
+            } else {
+                scores[i] = Math.min(history[Position.from(move)][Position.to(move)], KILLER_SCORE - 2);
+            }
+        }
+    }
+
+    /**
+     * Selection sort step: swaps the best remaining move into slot {@code i}.
+     */
+    private int pickNext(int ply, int i, int count) {
+        int[] list = moves[ply];
+        int[] scores = orderScores[ply];
+        int best = i;
+        for (int j = i + 1; j < count; j++) {
+            if (scores[j] > scores[best]) {
+                best = j;
+            }
+        }
+        int move = list[best];
+        list[best] = list[i];
+        list[i] = move;
+        int score = scores[best];
+        scores[best] = scores[i];
+        scores[i] = score;
+        return move;
+    }
+
+    /**
+     * Puts the lines just found first, in rank order, for the next iteration.
+     */
+    private static void orderRoot(int[] rootMoves, List<Line> lines) {
+        int next = 0;
+        for (Line line : lines) {
+            for (int i = next; i < rootMoves.length; i++) {
+                if (rootMoves[i] == line.move()) {
+                    int move = rootMoves[i];
+                    System.arraycopy(rootMoves, next, rootMoves, next + 1, i - next);
+                    rootMoves[next++] = move;
+                    break;
+                }
+            }
+        }
+    }
+}
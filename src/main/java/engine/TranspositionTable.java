@@ -0,0 +1,167 @@
+package engine;
+
+/**
+ * Hash table of search results shared by every thread searching the same
+ * game, held in one {@code long[]} with no object per entry.
+ *
+ * <p>An entry is two longs: the packed data (best move, score, depth, bound
+ * and the search generation) and the Zobrist key XOR-ed with that data.
+ * Writers store both words without locking; a reader recomputes the key from
+ * the pair and ignores the entry when it does not match, so an entry torn by
+ * two racing writers reads as a miss instead of a wrong move.</p>
+ *
+ * <p>Entries come in buckets of two. The first slot keeps the deepest result
+ * of the current search and is only overwritten by one at least as deep or
+ * by a newer search; everything else goes to the second slot, which is
+ * always replaced.</p>
+ */
+public final class TranspositionTable {
+
+    public static final int BOUND_EXACT = 1;
+    public static final int BOUND_LOWER = 2;
+    public static final int BOUND_UPPER = 3;
+
+    /**
+     * What {@link #probe} returns for a miss; no stored entry packs to 0
+     * because the bound is never 0.
+     */
+    public static final long NO_ENTRY = 0L;
+
+    private static final int LONGS_PER_BUCKET = 4;
+    private static final int BYTES_PER_BUCKET = LONGS_PER_BUCKET * Long.BYTES;
+
+    private static final int MOVE_BITS = 20;
+    private static final int SCORE_SHIFT = MOVE_BITS;
+    private static final int DEPTH_SHIFT = SCORE_SHIFT + 16;
+    private static final int BOUND_SHIFT = DEPTH_SHIFT + 8;
+    private static final int AGE_SHIFT = BOUND_SHIFT + 2;
+    private static final int HASHFULL_SAMPLE = 500;
+
+    private final long[] table;
+    private final int bucketMask;
+    private volatile int age;
+
+    /**
+     * @param megabytes the table size, rounded down to a power of two number
+     *                  of buckets
+     */
+    public TranspositionTable(int megabytes) {
+        long buckets = Math.max(1, megabytes) * 1024L * 1024L / BYTES_PER_BUCKET;
+        int bucketCount = Integer.highestOneBit((int) Math.min(buckets, Integer.MAX_VALUE / LONGS_PER_BUCKET));
+        this.table = new long[bucketCount * LONGS_PER_BUCKET];
+        this.bucketMask = bucketCount - 1;
+    }
+
+    /**
+     * Forgets everything, e.g. for a new game. Not safe while searching.
+     */
+    public void clear() {
+        java.util.Arrays.fill(table, 0L);
+        age = 0;
+    }
+
+    /**
+     * Starts a new search generation, so entries left by earlier searches
+     * give way in the depth-preferred slot.
+     */
+    public void newSearch() {
+        age = (age + 1) & 0xFF;
+    }
+
+    public int capacity() {
+        return table.length / 2;
+    }
+
+    public long sizeBytes() {
+        return (long) table.length * Long.BYTES;
+    }
+
+    /**
+     * @return the packed entry for {@code key}, or {@link #NO_ENTRY}
+     */
+    public long probe(long key) {
+        int base = bucketBase(key);
+        for (int slot = base; slot < base + LONGS_PER_BUCKET; slot += 2) {
+            long data = table[slot + 1];
+            if ((table[slot] ^ data) == key && data != NO_ENTRY) {
+                return data;
+            }
+        }
+        return NO_ENTRY;
+    }
+
+    /**
+     * @param score already adjusted for the distance to any mate by the caller
+     */
+    public void store(long key, int move, int score, int depth, int bound) {
+        int base = bucketBase(key);
+        int currentAge = age;
+        long deep = table[base + 1];
+        boolean sameKey = (table[base] ^ deep) == key;
+        int slot = base + 2;
+        if (sameKey || age(deep) != currentAge || depth >= depth(deep)) {
+            slot = base;
+            if (move == Position.NO_MOVE && sameKey) {
+                // keep the best move of a shallower result
+                move = move(deep);
+            }
+        } else if (move == Position.NO_MOVE) {
+            long shallow = table[base + 3];
+            if ((table[base + 2] ^ shallow) == key) {
+                move = move(shallow);
+            }
+        }
+        long data = pack(move, score, depth, bound, currentAge);
+        table[slot] = key ^ data;
+        table[slot + 1] = data;
+    }
+
+    /**
+     * Permille of sampled depth-preferred slots filled by the current
+     * search, as UCI reports it.
+     */
+    public int hashfull() {
+        int currentAge = age;
+        int samples = Math.min(HASHFULL_SAMPLE, bucketMask + 1);
+        int used = 0;
+        for (int bucket = 0; bucket < samples; bucket++) {
+            long data = table[bucket * LONGS_PER_BUCKET + 1];
+            if (data != NO_ENTRY && age(data) == currentAge) {
+                used++;
+            }
+        }
+        return used * 1000 / samples;
+    }
+
+    public static int move(long data) {
+        return (int) (data & ((1 << MOVE_BITS) - 1));
+    }
+
+    public static int score(long data) {
+        return (short) (data >>> SCORE_SHIFT);
+    }
+
+    public static int depth(long data) {
+        return (int) (data >>> DEPTH_SHIFT) & 0xFF;
+    }
+
+    public static int bound(long data) {
+        return (int) (data >>> BOUND_SHIFT) & 3;
+    }
+
+    private static int age(long data) {
+        return (int) (data >>> AGE_SHIFT) & 0xFF;
+    }
+
+    private static long pack(int move, int score, int depth, int bound, int age) {
+        return (move & ((1L << MOVE_BITS) - 1))
+            | (score & 0xFFFFL) << SCORE_SHIFT
+            | (long) Math.max(0, Math.min(depth, 0xFF)) << DEPTH_SHIFT
+            | (long) bound << BOUND_SHIFT
+            | (long) age << AGE_SHIFT;
+    }
+
+    private int bucketBase(long key) {
+        return (int) (key & bucketMask) * LONGS_PER_BUCKET;
+    }
+}
@@ -0,0 +1,445 @@
+package main;
+
+import analysis.GameAnalyzer;
+import analysis.PgnReader;
+import analysis.ReviewArchive;
+import uci.EngineProfile;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Headless game review of PGN files, without the Swing window:
+ *
+ * <pre>
+ * java -cp target/classes main.BatchAnalysis games/ --out reviews --format json --workers 6
+ * </pre>
+ *
+ * <p>Every game of every {@code .pgn} file (a directory is searched
+ * recursively) is reviewed by {@link GameAnalyzer}, one game per worker and
+ * one engine per game, and written to the output directory as
+ * {@code <file>-<game>.json} or {@code .csv}, in the same subdirectory as
+ * the PGN file has under the input directory. CSV output also gets a
+ * {@code summary.csv} with one row per game; {@code --format bin} appends
+ * every review to one compact {@code reviews.bin} {@link ReviewArchive}
+ * instead. Progress, games per hour and
+ * how busy the engines were are printed as games finish.</p>
+ *
+ * <p>The engine is found the same way as by the window: {@code STOCKFISH_PATH},
+ * {@code -Dstockfish.path} or {@code -Dstockfish.fake}.</p>
+ */
+public final class BatchAnalysis {
+
+    private static final String USAGE = "usage: BatchAnalysis <pgn file or directory> [--out DIR]"
+        + " [--format json|csv|bin] [--workers N] [--movetime MS] [--first-pass MS]";
+
+    /** Games read ahead of the workers, per worker. */
+    private static final int QUEUED_PER_WORKER = 2;
+
+    private final List<String> engineCommand;
+    private final Path outDirectory;
+    private final String format;
+    private ReviewArchive.Writer archive;
+    private final int workers;
+    private final Duration thinkTime;
+    private final Duration firstPass;
+
+    private final AtomicInteger finished = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong plies = new AtomicLong();
+    private final AtomicLong engineMillis = new AtomicLong();
+    private long startedNanos;
+    /** Games in all files; -1 while they are still being read. */
+    private volatile int total = -1;
+
+    private BatchAnalysis(List<String> engineCommand, Path outDirectory, String format, int workers,
+                          Duration thinkTime, Duration firstPass) {
+        this.engineCommand = engineCommand;
+        this.outDirectory = outDirectory;
+        this.format = format;
+        this.workers = workers;
+        this.thinkTime = thinkTime;
+        this.firstPass = firstPass;
+    }
+
+    public static void main(String[] args) throws Exception {
+        System.exit(run(args, Board.resolveEngineCommand()));
+    }
+
+    /**
+     * Parses {@code args} and reviews the games with {@code engineCommand}.
+     *
+     * @return the exit status: 0 if every game was reviewed, 1 if any failed
+     *         or the engine is not configured, 2 for bad arguments
+     */
+    static int run(String[] args, List<String> engineCommand) throws IOException, InterruptedException {
+        Path input = null;
+        Path out = Paths.get("reviews");
+        String format = "json";
+        int workers = EngineProfile.maxBatchWorkers();
+        long moveTimeMillis = 800;
+        long firstPassMillis = 200;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (arg.startsWith("--") && i + 1 >= args.length) {
+                return usage("Missing value for " + arg);
+            }
+            switch (arg) {
+                case "--out":
+                    out = Paths.get(args[++i]);
+                    break;
+                case "--format":
+                    format = args[++i].toLowerCase(Locale.ROOT);
+                    if (!List.of("json", "csv", "bin").contains(format)) {
+                        return usage("Unknown format " + format);
+                    }
+                    break;
+                case "--workers":
+                    workers = Math.max(1, Integer.parseInt(args[++i]));
+                    break;
+                case "--movetime":
+                    moveTimeMillis = Long.parseLong(args[++i]);
+                    break;
+                case "--first-pass":
+                    firstPassMillis = Long.parseLong(args[++i]);
+                    break;
+                default:
+                    if (arg.startsWith("--") || input != null) {
+                        return usage("Unexpected argument " + arg);
+                    }
+                    input = Paths.get(arg);
+            }
+        }
+        if (input == null) {
+            return usage("No PGN file or directory given");
+        }
+        if (engineCommand == null) {
+            System.err.println("Engine path not configured. Set STOCKFISH_PATH to enable analysis.");
+            return 1;
+        }
+        Files.createDirectories(out);
+        BatchAnalysis batch = new BatchAnalysis(engineCommand, out, format, workers,
+            Duration.ofMillis(moveTimeMillis), firstPassMillis > 0 ? Duration.ofMillis(firstPassMillis) : null);
+        Path root = Files.isDirectory(input) ? input.toAbsolutePath() : input.toAbsolutePath().getParent();
+        int failures = batch.reviewFiles(root, pgnFiles(input));
+        return failures == 0 ? 0 : 1;
+    }
+
+    private static int usage(String problem) {
+        System.err.println(problem);
+        System.err.println(USAGE);
+        return 2;
+    }
+
+    private static List<Path> pgnFiles(Path input) throws IOException {
+        if (!Files.isDirectory(input)) {
+            return List.of(input);
+        }
+        try (Stream<Path> files = Files.walk(input)) {
+            return files.filter(Files::isRegularFile)
+                .filter(file -> file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".pgn"))
+                .sorted()
+                .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Reviews every game of {@code files}; returns the number that failed.
+     *
+     * <p>Games are read as the workers get to them: at most
+     * {@link #QUEUED_PER_WORKER} per worker wait to be reviewed, so a
+     * database of any size is never held in memory. The total is only known
+     * once the last file has been read.</p>
+     */
+    private int reviewFiles(Path root, List<Path> files) throws IOException, InterruptedException {
+        EngineProfile profile = EngineProfile.forUseCase(EngineProfile.UseCase.BATCH_WORKER, workers);
+        System.out.println(String.format("Reviewing games from %d files with %d workers (%s)",
+            files.size(), workers, profile));
+
+        Map<Integer, String> summaryRows = new ConcurrentSkipListMap<>();
+        if (format.equals("bin")) {
+            archive = ReviewArchive.Writer.append(outDirectory.resolve("reviews.bin"));
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        Semaphore queued = new Semaphore(workers * QUEUED_PER_WORKER);
+        int read = 0;
+        int unreadable = 0;
+        startedNanos = System.nanoTime();
+        try {
+            for (Path file : files) {
+                Path relative = root.relativize(file.toAbsolutePath());
+                try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    PgnReader pgn = new PgnReader(reader);
+                    PgnReader.Game game;
+                    while ((game = pgn.next()) != null) {
+                        Job job = new Job(file, relative, game, read++);
+                        queued.acquire();
+                        pool.execute(() -> {
+                            try {
+                                String row = review(job, profile);
+                                if (row != null) {
+                                    summaryRows.put(job.index, row);
+                                }
+                            } catch (RuntimeException e) {
+                                // review() reports its own failures; this is a bug
+                                failed.incrementAndGet();
+                                System.err.println("Review of " + job.outputName() + " failed: " + e.getMessage());
+                            } finally {
+                                queued.release();
+                            }
+                        });
+                    }
+                } catch (IOException e) {
+                    unreadable++;
+                    System.err.println("Unable to read " + file + ": " + e.getMessage());
+                }
+            }
+            total = read;
+            System.out.println(String.format("All %d games read", read));
+            pool.shutdown();
+            while (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                // still reviewing
+            }
+        } finally {
+            pool.shutdownNow();
+            if (archive != null) {
+                archive.close();
+            }
+        }
+        if (format.equals("csv")) {
+            writeSummaryCsv(summaryRows.values());
+        }
+        double hours = elapsedMillis() / 3_600_000.0;
+        System.out.println(String.format("Done: %d reviewed, %d failed, %d plies in %s; %.1f games/h, %s",
+            finished.get() - failed.get(), failed.get(), plies.get(), formatDuration(elapsedMillis()),
+            hours > 0 ? (finished.get() - failed.get()) / hours : 0, utilisation()));
+        return failed.get() + unreadable;
+    }
+
+    /**
+     * @return the game's summary.csv row, or null if it could not be reviewed
+     */
+    private String review(Job job, EngineProfile profile) {
+        String name = job.outputName();
+        try {
+            List<String> uciMoves = job.game.uciMoves();
+            GameAnalyzer analyzer = new GameAnalyzer(engineCommand, thinkTime,
+                EngineProfile.forUseCase(EngineProfile.UseCase.BATCH_WORKER).multiPv, 1);
+            analyzer.setEngineProfile(profile);
+            if (firstPass != null) {
+                analyzer.setAdaptiveThinkTime(firstPass, null);
+            }
+            GameAnalyzer.Summary summary = analyzer.analyze(job.game.startFen(), uciMoves);
+            if (archive != null) {
+                ReviewArchive.Record record = new ReviewArchive.Record(job.game.tags, job.game.startFen(),
+                    uciMoves, summary);
+                synchronized (archive) {
+                    archive.write(record);
+                }
+            } else {
+                Path output = outDirectory.resolve(name + "." + format);
+                Files.createDirectories(output.getParent());
+                try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+                    if (format.equals("csv")) {
+                        writeEntriesCsv(writer, job, summary);
+                    } else {
+                        writeJson(writer, job, summary);
+                    }
+                }
+            }
+            plies.addAndGet(uciMoves.size());
+            engineMillis.addAndGet(summary.engineMillis);
+            progress(name, uciMoves.size() + " plies", summary.engineMillis);
+            return summaryCsvRow(name, job, summary);
+        } catch (IOException | IllegalArgumentException e) {
+            failed.incrementAndGet();
+            progress(name, "FAILED: " + e.getMessage(), 0);
+            return null;
+        }
+    }
+
+    private void progress(String name, String outcome, long gameEngineMillis) {
+        int done = finished.incrementAndGet();
+        double hours = elapsedMillis() / 3_600_000.0;
+        int known = total;
+        System.out.println(String.format("[%d/%s] %s: %s, engine %.1f s | %.1f games/h, %s",
+            done, known < 0 ? "?" : String.valueOf(known), name, outcome, gameEngineMillis / 1000.0,
+            hours > 0 ? (done - failed.get()) / hours : 0, utilisation()));
+    }
+
+    /**
+     * Share of the workers' wall-clock time their engines spent searching.
+     */
+    private String utilisation() {
+        long available = elapsedMillis() * workers;
+        return String.format("engines busy %.0f%%", available > 0 ? 100.0 * engineMillis.get() / available : 0);
+    }
+
+    private long elapsedMillis() {
+        return (System.nanoTime() - startedNanos) / 1_000_000;
+    }
+
+    // ------------------------------------------------------------------ output
+
+    private static void writeJson(Writer out, Job job, GameAnalyzer.Summary summary) throws IOException {
+        StringBuilder json = new StringBuilder(4096);
+        json.append("{\n  \"file\": ").append(quote(job.file.toString()))
+            .append(",\n  \"game\": ").append(job.game.number)
+            .append(",\n  \"tags\": {");
+        boolean first = true;
+        for (Map.Entry<String, String> tag : job.game.tags.entrySet()) {
+            json.append(first ? "" : ", ").append(quote(tag.getKey())).append(": ").append(quote(tag.getValue()));
+            first = false;
+        }
+        json.append("},\n  \"summary\": {")
+            .append("\"whiteAccuracy\": ").append(number(summary.whiteAccuracy))
+            .append(", \"blackAccuracy\": ").append(number(summary.blackAccuracy))
+            .append(", \"accuracy\": ").append(number(summary.accuracyScore))
+            .append(", \"avgLoss\": ").append(number(summary.avgLoss))
+            .append(", \"maxLoss\": ").append(number(summary.maxLoss))
+            .append(", \"inaccuracies\": ").append(summary.inaccuracies)
+            .append(", \"mistakes\": ").append(summary.mistakes)
+            .append(", \"blunders\": ").append(summary.blunders)
+            .append(", \"bestMoves\": ").append(summary.bestCount)
+            .append(", \"moves\": ").append(summary.totalMoves)
+            .append(", \"engineMillis\": ").append(summary.engineMillis)
+            .append("},\n  \"entries\": [");
+        for (int i = 0; i < summary.entries.size(); i++) {
+            GameAnalyzer.Entry entry = summary.entries.get(i);
+            json.append(i == 0 ? "\n" : ",\n").append("    {\"ply\": ").append(entry.plyIndex)
+                .append(", \"color\": ").append(quote(entry.isWhite ? "white" : "black"))
+                .append(", \"san\": ").append(quote(san(job, entry)))
+                .append(", \"played\": ").append(quote(entry.playedMove))
+                .append(", \"best\": ").append(quote(entry.bestMove))
+                .append(", \"evalBefore\": ").append(number(entry.evalBefore))
+                .append(", \"evalAfter\": ").append(number(entry.evalAfter))
+                .append(", \"loss\": ").append(number(entry.loss))
+                .append(", \"severity\": ").append(quote(entry.severity))
+                .append(", \"tag\": ").append(quote(entry.qualityTag))
+                .append(", \"onlyMove\": ").append(entry.onlyMove)
+                .append(", \"line\": [")
+                .append(entry.bestLine.stream().map(BatchAnalysis::quote).collect(Collectors.joining(", ")))
+                .append("]}");
+        }
+        json.append(summary.entries.isEmpty() ? "]\n}\n" : "\n  ]\n}\n");
+        out.write(json.toString());
+    }
+
+    private static void writeEntriesCsv(Writer out, Job job, GameAnalyzer.Summary summary) throws IOException {
+        out.write("ply,color,san,played,best,eval_before,eval_after,loss,severity,tag,only_move,line\n");
+        for (GameAnalyzer.Entry entry : summary.entries) {
+            out.write(String.join(",", String.valueOf(entry.plyIndex), entry.isWhite ? "white" : "black",
+                csvField(san(job, entry)), entry.playedMove, csvField(entry.bestMove), number(entry.evalBefore),
+                number(entry.evalAfter), number(entry.loss), csvField(entry.severity), csvField(entry.qualityTag),
+                String.valueOf(entry.onlyMove), csvField(String.join(" ", entry.bestLine))));
+            out.write('\n');
+        }
+    }
+
+    private static String summaryCsvRow(String name, Job job, GameAnalyzer.Summary summary) {
+        return String.join(",", csvField(name), csvField(job.game.tags.getOrDefault("White", "?")),
+            csvField(job.game.tags.getOrDefault("Black", "?")), csvField(job.game.result()),
+            String.valueOf(summary.totalMoves), number(summary.whiteAccuracy), number(summary.blackAccuracy),
+            String.valueOf(summary.inaccuracies), String.valueOf(summary.mistakes),
+            String.valueOf(summary.blunders), String.valueOf(summary.engineMillis));
+    }
+
+    private void writeSummaryCsv(Collection<String> rows) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(outDirectory.resolve("summary.csv"), StandardCharsets.UTF_8)) {
+            writer.write("game,white,black,result,moves,white_accuracy,black_accuracy,"
+                + "inaccuracies,mistakes,blunders,engine_ms\n");
+            for (String row : rows) {
+                writer.write(row);
+                writer.write('\n');
+            }
+        }
+    }
+
+    private static String san(Job job, GameAnalyzer.Entry entry) {
+        List<String> san = job.game.sanMoves;
+        return entry.plyIndex < san.size() ? san.get(entry.plyIndex) : entry.playedMove;
+    }
+
+    private static String number(double value) {
+        return String.format(Locale.ROOT, "%.2f", Math.abs(value) < 0.005 ? 0.0 : value);
+    }
+
+    private static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String formatDuration(long millis) {
+        long seconds = millis / 1000;
+        return String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+    }
+
+    private static final class Job {
+        final Path file;
+        /** {@link #file} relative to the input directory. */
+        final Path relative;
+        final PgnReader.Game game;
+        /** Position of the game in the whole input, for the order of summary.csv. */
+        final int index;
+
+        Job(Path file, Path relative, PgnReader.Game game, int index) {
+            this.file = file;
+            this.relative = relative;
+            this.game = game;
+            this.index = index;
+        }
+
+        /**
+         * The PGN file's path under the input directory without its
+         * extension, plus the game number; unique across the whole input,
+         * so files of the same name in different directories do not
+         * overwrite each other's reviews.
+         */
+        String outputName() {
+            String path = relative.toString().replace(relative.getFileSystem().getSeparator(), "/");
+            int dot = path.lastIndexOf('.');
+            return (dot > path.lastIndexOf('/') + 1 ? path.substring(0, dot) : path) + "-" + game.number;
+        }
+    }
+}
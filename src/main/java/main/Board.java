@@ -1,7 +1,15 @@
 package main;
 
 import analysis.GameAnalyzer;
+import analysis.LiveEvaluator;
+import analysis.ReviewArchive;
 import analysis.GameReviewFormatter;
+import book.PolyglotBook;
+import book.PolyglotKey;
+import endgame.Bitbases;
+import endgame.Wdl;
+import engine.JavaEngine;
+import engine.Position;
 import pieces.*;
 
 import javax.swing.*;
@@ -11,6 +19,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -19,16 +28,37 @@ import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 import java.util.function.Consumer;
 import javazoom.jl.player.Player;
 
+import uci.AnalysisEngine;
+import uci.EngineProfile;
+import uci.EngineRestartedException;
+import uci.EvaluationCache;
+import uci.FakeUciEngine;
+import uci.PersistentEvaluationCache;
+import uci.SearchLimits;
 import uci.StockfishClient;
+import uci.UciPosition;
 
 public class Board extends JPanel {
 
+    private static final Duration ENGINE_WARM_UP = Duration.ofMillis(250);
+    private static final int LIVE_CACHE_MB = 16;
+    private static final Duration REVIEW_THINK_TIME = Duration.ofMillis(800);
+    private static final Duration REVIEW_FIRST_PASS = Duration.ofMillis(200);
+    private static final int DEFAULT_MAX_BOOK_PLY = 20;
+    /** Stockfish will not limit its strength below this {@code UCI_Elo}. */
+    private static final int STOCKFISH_MIN_ELO = 1320;
+    /** Longest the live evaluation waits between label updates. */
+    private static final Duration LIVE_EVALUATION_INTERVAL = Duration.ofMillis(250);
+    /** Prints timing and hit-rate figures to stdout when {@code -Dchess.stats=true}. */
+    private static final boolean PRINT_STATS = Boolean.getBoolean("chess.stats");
+
     public String fenStartingPosition = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
 
     public int tileSize = 75;
@@ -56,37 +86,64 @@ public class Board extends JPanel {
     private final ArrayList<String> capturedByWhite = new ArrayList<>();
     private final ArrayList<String> capturedByBlack = new ArrayList<>();
     private final ArrayList<String> sanHistory = new ArrayList<>();
-    private StockfishClient stockfishClient;
+    private String gameStartFen = fenStartingPosition;
+    private final UciPosition enginePosition = UciPosition.startpos();
+    /** Follows {@link #enginePosition} for the live evaluation; null if it could not. */
+    private Position evalPosition = Position.startpos();
+    private volatile StockfishClient stockfishClient;
+    private final JavaEngine builtInEngine = new JavaEngine();
+    private boolean builtInEngineOnly = false;
     private ExecutorService engineExecutor;
     private ExecutorService analysisExecutor = Executors.newSingleThreadExecutor();
-    private boolean engineEnabled = false;
+    private volatile boolean engineEnabled = false;
+    private boolean engineStartupDone = false;
+    private boolean engineReady = false;
+    private boolean engineHashWarm = false;
+    private LiveEvaluator liveEvaluator;
+    private boolean liveEvaluationEnabled = Boolean.parseBoolean(System.getProperty("chess.liveEval", "true"));
+    /** What the live evaluator returned for the position it is on; -1 while paused. */
+    private long liveEvaluationSequence = -1;
+    private long liveEvaluationKey;
+    private boolean firstFramePainted = false;
+    private PolyglotBook openingBook;
+    private PolyglotKey bookKey;
+    private int maxBookPly = DEFAULT_MAX_BOOK_PLY;
+    private final java.util.Random bookRandom = new java.util.Random();
     private boolean engineIsWhite = false;
     private boolean flipBoard = false;
     private int engineSkillLevel = 8;
     private int engineElo = 1200;
     private Duration engineThinkTime = Duration.ofMillis(500);
+    private boolean engineUsesClock = true;
+    private final EngineProfile liveEngineProfile = EngineProfile.forUseCase(EngineProfile.UseCase.LIVE_PLAY);
+    private boolean ponderEnabled = true;
+    private volatile PonderSession ponderSession;
+    private int ponderHits;
+    private int ponderMisses;
     private long initialClockMillis = Duration.ofMinutes(10).toMillis();
     private long whiteClockMillis = initialClockMillis;
     private long blackClockMillis = initialClockMillis;
+    private long incrementMillis = 0;
     private javax.swing.Timer clockTimer;
     private String lastResultTag = "*";
     private boolean isDraggingPiece = false;
     private int dragScreenX;
     private int dragScreenY;
-    private byte[] moveSound;
-    private byte[] captureSound;
-    private byte[] promoteSound;
-    private byte[] castleSound;
-    private byte[] checkSound;
-    private byte[] notifySound;
+    private volatile byte[] moveSound;
+    private volatile byte[] captureSound;
+    private volatile byte[] promoteSound;
+    private volatile byte[] castleSound;
+    private volatile byte[] checkSound;
+    private volatile byte[] notifySound;
     private boolean soundEnabled = !GraphicsEnvironment.isHeadless();
     private Consumer<String> statusConsumer;
     private Consumer<String> gameEndConsumer;
     private Consumer<String> evaluationConsumer;
+    private Consumer<String> liveEvaluationConsumer;
     private java.util.function.BiConsumer<String, String> captureConsumer;
     private java.util.function.Consumer<java.util.List<String>> moveLogConsumer;
     private java.util.function.BiConsumer<String, String> clockConsumer;
-    private Path engineBinaryPath;
+    private List<String> engineCommand;
     private boolean lastMoveDeliveredCheck;
     private boolean lastMoveDeliveredMate;
 
@@ -97,7 +154,10 @@ public class Board extends JPanel {
     private java.util.List<String> reviewSanMoves = java.util.List.of();
     private java.util.List<GameAnalyzer.Entry> reviewEntries = java.util.List.of();
     private GameAnalyzer.Summary lastAnalysisSummary;
+    /** Bumped whenever a review starts or ends, so late entries of an old one are dropped. */
+    private int reviewGeneration;
     private java.util.function.Consumer<AnalysisFrame> analysisFrameConsumer;
+    private Consumer<Boolean> engineReadyConsumer;
     private MoveHighlight bestMoveArrow;
     private String currentQualityTag;
     private LiveGameState liveStateBackup;
@@ -111,8 +171,11 @@ public class Board extends JPanel {
         this.addMouseListener(input);
         this.addMouseMotionListener(input);
         loadPositionFromFEN(fenStartingPosition);
+        loadOpeningBook();
         initializeEngineIntegration();
-        loadSounds();
+        Thread soundLoader = new Thread(this::loadSounds, "sound-loader");
+        soundLoader.setDaemon(true);
+        soundLoader.start();
         updateCheckMarkers();
     }
 
@@ -128,6 +191,7 @@ public class Board extends JPanel {
             piecesSnapshot,
             new ArrayList<>(capturedByWhite),
             new ArrayList<>(capturedByBlack),
+            gameStartFen,
             new ArrayList<>(moveHistory),
             new ArrayList<>(displayMoves),
             new ArrayList<>(sanHistory),
@@ -148,6 +212,7 @@ public class Board extends JPanel {
     }
 
     private void restoreLiveGameState(){
+        reviewGeneration++;
         if(liveStateBackup == null){
             analysisMode = false;
             analysisSnapshots.clear();
@@ -187,6 +252,13 @@ public class Board extends JPanel {
         capturedByBlack.addAll(liveStateBackup.capturedByBlack);
         moveHistory.clear();
         moveHistory.addAll(liveStateBackup.moveHistory);
+        gameStartFen = liveStateBackup.startFen;
+        enginePosition.reset(gameStartFen);
+        resetEvalPosition(gameStartFen);
+        for(String uci : moveHistory){
+            enginePosition.push(uci);
+            trackEvalMove(uci);
+        }
         displayMoves.clear();
         displayMoves.addAll(liveStateBackup.displayMoves);
         sanHistory.clear();
@@ -245,6 +317,27 @@ public class Board extends JPanel {
         this.evaluationConsumer = consumer;
     }
 
+    /**
+     * Told the engine's live evaluation of the current position as it
+     * deepens, e.g. "White +0.45 (depth 18)", next to the static one from
+     * {@link #setEvaluationConsumer}; an empty string while it is paused.
+     */
+    public void setLiveEvaluationConsumer(Consumer<String> consumer){
+        this.liveEvaluationConsumer = consumer;
+    }
+
+    /**
+     * Told on the EDT once engine startup has finished: {@code true} when the
+     * engine is up and warmed, {@code false} when there is none. Fires right
+     * away if startup is already over.
+     */
+    public void setEngineReadyConsumer(Consumer<Boolean> consumer){
+        this.engineReadyConsumer = consumer;
+        if(engineStartupDone && consumer != null){
+            consumer.accept(engineReady);
+        }
+    }
+
     public void setCaptureConsumer(java.util.function.BiConsumer<String, String> consumer){
         this.captureConsumer = consumer;
     }
@@ -278,6 +371,7 @@ public class Board extends JPanel {
     }
 
     public void setEnginePlaysWhite(boolean playsWhite){
+        cancelPonder();
         this.engineIsWhite = playsWhite;
         this.flipBoard = playsWhite;
         if(isGameActive && isWhiteToMove == engineIsWhite){
@@ -286,10 +380,10 @@ public class Board extends JPanel {
     }
 
     public void setHumanVsHuman(boolean enabled){
-        this.engineEnabled = !enabled && stockfishClient != null;
+        this.engineEnabled = !enabled && (stockfishClient != null || builtInEngineOnly);
         if(enabled){
             shutdownEngine();
-        } else if(stockfishClient == null){
+        } else if(stockfishClient == null && engineExecutor == null){
             initializeEngineIntegration();
         }
     }
@@ -303,13 +397,22 @@ public class Board extends JPanel {
         loadPositionFromFEN(fenStartingPosition);
         isGameActive = true;
         lastResultTag = "*";
+        ponderHits = 0;
+        ponderMisses = 0;
         resetClock();
         if(statusConsumer != null){
             statusConsumer.accept("Game started. White to move.");
         }
+        cancelPonder();
+        builtInEngine.newGame();
         if(stockfishClient != null){
             try{
-                stockfishClient.newGame();
+                if(engineHashWarm){
+                    // keep the hash filled by the warm-up search for the first game
+                    engineHashWarm = false;
+                } else {
+                    stockfishClient.newGame();
+                }
                 configureEngine();
             } catch (IOException e){
                 System.err.println("Unable to reset engine: " + e.getMessage());
@@ -392,6 +495,7 @@ public class Board extends JPanel {
             }
 
             recordMove(move, notation);
+            applyIncrement(move.piece.isWhite);
 
             requestEngineMoveIfNeeded();
             notifyEvaluation();
@@ -533,6 +637,9 @@ public class Board extends JPanel {
     public void loadPositionFromFEN(String fenString){
         pieceList.clear();
         moveHistory.clear();
+        gameStartFen = fenString;
+        enginePosition.reset(fenString);
+        resetEvalPosition(fenString);
         lastMove = null;
         isGameOver = false;
         capturedByWhite.clear();
@@ -631,6 +738,8 @@ public class Board extends JPanel {
             finishGame(message);
         } else if (insufficientMaterial(true) && insufficientMaterial(false)) {
             finishGame("Draw: Insufficient material!");
+        } else if (isTheoreticalDraw()){
+            finishGame("Draw: Theoretical endgame!");
         } else if (kingChecked){
             playSound(checkSound);
             if(statusConsumer != null){
@@ -661,27 +770,127 @@ public class Board extends JPanel {
         if(gameEndConsumer != null){
             gameEndConsumer.accept(message);
         }
+        if(PRINT_STATS && ponderHits + ponderMisses > 0){
+            System.out.println(String.format("Ponder hits: %d/%d (%.0f%%)",
+                ponderHits, ponderHits + ponderMisses, getPonderHitRate() * 100));
+        }
         notifyEvaluation();
     }
 
     private void notifyEvaluation(){
+        updateLiveEvaluation();
         if(evaluationConsumer == null){
             return;
         }
-        int whiteScore = materialScore(true);
-        int blackScore = materialScore(false);
-        int diff = whiteScore - blackScore;
+        Position position = evalPosition;
+        if(position == null){
+            int diff = materialScore(true) - materialScore(false);
+            evaluationConsumer.accept(diff == 0 ? "Material even"
+                : (diff > 0 ? "White +" : "Black +") + Math.abs(diff));
+            return;
+        }
+        int centipawns = position.evaluation();
         String evaluationText;
-        if(diff > 0){
-            evaluationText = "White +" + diff;
-        } else if(diff < 0){
-            evaluationText = "Black +" + Math.abs(diff);
+        if(centipawns > 0){
+            evaluationText = String.format("White +%.2f", centipawns / 100.0);
+        } else if(centipawns < 0){
+            evaluationText = String.format("Black +%.2f", -centipawns / 100.0);
         } else {
-            evaluationText = "Material even";
+            evaluationText = "Even";
         }
         evaluationConsumer.accept(evaluationText);
     }
 
+    /**
+     * Enables or disables the engine evaluation that replaces the static one
+     * while the player thinks (on by default; {@code -Dchess.liveEval=false}).
+     */
+    public void setLiveEvaluationEnabled(boolean enabled){
+        liveEvaluationEnabled = enabled;
+        notifyEvaluation();
+    }
+
+    public boolean isLiveEvaluationEnabled(){
+        return liveEvaluationEnabled;
+    }
+
+    /**
+     * Engine threads the live evaluation may use, i.e. how much CPU it takes
+     * from pondering; the playing engine's own searches never share the
+     * machine with it.
+     */
+    public void setLiveEvaluationThreads(int threads){
+        if(liveEvaluator != null){
+            liveEvaluator.setThreads(threads);
+        }
+    }
+
+    /**
+     * Points the live evaluator at the current position, or pauses it while
+     * the playing engine is searching, in a review, or after the game.
+     */
+    private void updateLiveEvaluation(){
+        LiveEvaluator evaluator = liveEvaluator;
+        if(evaluator == null){
+            return;
+        }
+        boolean engineToMove = engineEnabled && isGameActive && isWhiteToMove == engineIsWhite;
+        if(!liveEvaluationEnabled || analysisMode || isGameOver || engineToMove){
+            if(liveEvaluationSequence != -1){
+                evaluator.pause();
+                liveEvaluationSequence = -1;
+                if(liveEvaluationConsumer != null){
+                    liveEvaluationConsumer.accept("");
+                }
+            }
+            return;
+        }
+        long key = enginePosition.key();
+        if(liveEvaluationSequence != -1 && key == liveEvaluationKey){
+            return;
+        }
+        liveEvaluationKey = key;
+        liveEvaluationSequence = evaluator.analyze(enginePosition, isWhiteToMove);
+    }
+
+    private void onLiveEvaluation(LiveEvaluator.Update update){
+        if(update.sequence != liveEvaluationSequence || liveEvaluationConsumer == null){
+            return;
+        }
+        String evaluationText;
+        if(update.whiteMate != null){
+            evaluationText = (update.whiteMate > 0 ? "White" : "Black") + " mates in " + Math.abs(update.whiteMate);
+        } else if(update.whiteCp > 0){
+            evaluationText = String.format("White +%.2f", update.whiteCp / 100.0);
+        } else if(update.whiteCp < 0){
+            evaluationText = String.format("Black +%.2f", -update.whiteCp / 100.0);
+        } else {
+            evaluationText = "Even";
+        }
+        liveEvaluationConsumer.accept(evaluationText + " (depth " + update.depth + ")");
+    }
+
+    private void resetEvalPosition(String fen){
+        try{
+            evalPosition = Position.fromFen(fen);
+        } catch (IllegalArgumentException e){
+            evalPosition = null;
+        }
+    }
+
+    private void trackEvalMove(String uci){
+        Position position = evalPosition;
+        if(position == null){
+            return;
+        }
+        int move = position.parseUciMove(uci);
+        if(move == Position.NO_MOVE){
+            evalPosition = null;
+        } else {
+            position.makeMove(move);
+        }
+    }
+
     private int materialScore(boolean forWhite){
         return pieceList.stream()
             .filter(p -> p.isWhite == forWhite)
@@ -819,6 +1028,12 @@ public class Board extends JPanel {
     @Override
     public void paintComponent(Graphics g) {
         super.paintComponent(g);
+        if(!firstFramePainted){
+            firstFramePainted = true;
+            if(PRINT_STATS){
+                System.out.println("First frame after " + uptimeMillis() + " ms");
+            }
+        }
         Graphics2D g2d = (Graphics2D) g;
 
         //Painting board
@@ -1152,36 +1367,139 @@ public class Board extends JPanel {
     }
 
 
+    /**
+     * Starts the engine on the engine thread so the window can show at once.
+     * The handshake, options and a short warm-up search run there; the first
+     * real {@code go} then finds the engine and its hash already paged in.
+     * Without a Stockfish binary, or if it fails to start, the built-in
+     * engine plays instead, unless {@code -Dchess.builtinEngine=false}.
+     */
     private void initializeEngineIntegration(){
+        List<String> command = resolveEngineCommand();
+        if(command == null){
+            fallBackToBuiltInEngine("Stockfish not configured");
+            return;
+        }
+        engineCommand = command;
+        if(liveEvaluator == null){
+            // its engine only starts with the first position to analyse
+            liveEvaluator = new LiveEvaluator(command, LIVE_EVALUATION_INTERVAL,
+                update -> SwingUtilities.invokeLater(() -> onLiveEvaluation(update)));
+        }
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        engineExecutor = executor;
+        executor.submit(() -> {
+            try{
+                StockfishClient client = new StockfishClient(command);
+                String transcript = System.getProperty("stockfish.transcript");
+                if(transcript != null){
+                    client.recordTranscript(Paths.get(transcript));
+                }
+                client.setRestartListener(reason -> System.err.println("Stockfish restarted: " + reason));
+                liveEngineProfile.applyTo(client);
+                client.analyzePosition(UciPosition.startpos(), ENGINE_WARM_UP, null);
+                // after the warm-up, which must really run on the engine
+                client.setEvaluationCache(EvaluationCache.withMegabytes(LIVE_CACHE_MB,
+                    PersistentEvaluationCache.shared()));
+                SwingUtilities.invokeLater(() -> onEngineStarted(executor, client));
+            } catch (IOException e){
+                System.err.println("Unable to start Stockfish: " + e.getMessage());
+                SwingUtilities.invokeLater(() -> onEngineFailed(executor));
+            }
+        });
+    }
+
+    private void onEngineFailed(ExecutorService executor){
+        if(engineExecutor != executor){
+            // switched to human vs human while the engine was starting
+            return;
+        }
+        if(liveEvaluator != null){
+            // it would run the same command
+            liveEvaluator.close();
+            liveEvaluator = null;
+        }
+        fallBackToBuiltInEngine("Stockfish failed to start");
+    }
+
+    private void fallBackToBuiltInEngine(String reason){
+        if(!Boolean.parseBoolean(System.getProperty("chess.builtinEngine", "true"))){
+            engineStartupFinished(false);
+            return;
+        }
+        builtInEngineOnly = true;
+        if(engineExecutor == null){
+            engineExecutor = Executors.newSingleThreadExecutor();
+        }
+        engineEnabled = true;
+        configureEngine();
+        if(PRINT_STATS){
+            System.out.println(reason + ", playing with the built-in engine");
+        }
+        engineStartupFinished(true);
+        requestEngineMoveIfNeeded();
+    }
+
+    /**
+     * The Stockfish command line from {@code -Dstockfish.fake},
+     * {@code STOCKFISH_PATH} or {@code -Dstockfish.path}; null if none is
+     * configured.
+     */
+    static List<String> resolveEngineCommand(){
+        String fakeEngine = System.getProperty("stockfish.fake");
+        if(fakeEngine != null){
+            return FakeUciEngine.command(fakeEngine.trim().split("\\s+"));
+        }
         String configuredPath = System.getenv("STOCKFISH_PATH");
         if(configuredPath == null){
             configuredPath = System.getProperty("stockfish.path");
         }
         if(configuredPath == null){
-            return;
+            return null;
         }
-
         Path enginePath = Paths.get(configuredPath);
         if(!Files.exists(enginePath)){
             System.err.println("Stockfish engine not found at " + enginePath.toAbsolutePath());
+            return null;
+        }
+        return List.of(enginePath.toAbsolutePath().toString());
+    }
+
+    private void onEngineStarted(ExecutorService executor, StockfishClient client){
+        if(engineExecutor != executor){
+            // switched to human vs human while the engine was starting
+            try{
+                client.close();
+            } catch (IOException ignored){
+            }
             return;
         }
+        stockfishClient = client;
+        engineHashWarm = true;
+        configureEngine();
+        engineEnabled = true;
+        if(PRINT_STATS){
+            System.out.println("Stockfish ready after " + uptimeMillis() + " ms: " + String.join(" ", engineCommand));
+        }
+        engineStartupFinished(true);
+        requestEngineMoveIfNeeded();
+    }
 
-        try{
-            engineBinaryPath = enginePath;
-            stockfishClient = new StockfishClient(enginePath);
-            configureEngine();
-            engineExecutor = Executors.newSingleThreadExecutor();
-            engineEnabled = true;
-            engineIsWhite = false;
-            System.out.println("Stockfish ready on path " + enginePath.toAbsolutePath());
-        } catch (IOException e){
-            System.err.println("Unable to start Stockfish: " + e.getMessage());
+    private void engineStartupFinished(boolean ready){
+        engineStartupDone = true;
+        engineReady = ready;
+        if(engineReadyConsumer != null){
+            engineReadyConsumer.accept(ready);
         }
     }
 
+    private static long uptimeMillis(){
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+
     private void requestEngineMoveIfNeeded(){
-        if(!engineEnabled || stockfishClient == null || engineExecutor == null || !isGameActive){
+        if(!engineEnabled || engineExecutor == null || !isGameActive){
+            cancelPonder();
             return;
         }
         if(isGameOver){
@@ -1191,12 +1509,21 @@ public class Board extends JPanel {
         if(isWhiteToMove != engineIsWhite){
             return;
         }
-        final String moves = String.join(" ", moveHistory);
+        String bookMove = pickBookMove();
+        if(bookMove != null){
+            cancelPonder();
+            SwingUtilities.invokeLater(() -> onBookMove(bookMove));
+            return;
+        }
+        if(resolvePonder()){
+            return;
+        }
+        SearchLimits limits = engineSearchLimits();
         engineExecutor.submit(() -> {
             try{
-                String uciMove = stockfishClient.requestBestMove(moves, engineThinkTime);
-                if(uciMove != null){
-                    SwingUtilities.invokeLater(() -> applyUciMove(uciMove));
+                StockfishClient.AnalysisResult result = searchEngineMove(limits);
+                if(result.bestMove != null){
+                    SwingUtilities.invokeLater(() -> onEngineResult(result));
                 }
             } catch (IOException e){
                 System.err.println("Engine failure: " + e.getMessage());
@@ -1204,6 +1531,255 @@ public class Board extends JPanel {
         });
     }
 
+    /**
+     * The client restarts a hung engine on its own; a search that was lost
+     * with it gets one more try on the fresh process.
+     */
+    private StockfishClient.AnalysisResult searchEngineMove(SearchLimits limits) throws IOException {
+        AnalysisEngine engine = playingEngine();
+        try{
+            return engine.analyzePosition(enginePosition, limits, null);
+        } catch (EngineRestartedException e){
+            System.err.println(e.getMessage() + ", retrying");
+            return engine.analyzePosition(enginePosition, limits, null);
+        }
+    }
+
+    /**
+     * Stockfish when it is running and can play at the chosen level; the
+     * built-in engine below that or without a binary.
+     */
+    private AnalysisEngine playingEngine(){
+        StockfishClient client = stockfishClient;
+        return client != null && engineElo >= STOCKFISH_MIN_ELO ? client : builtInEngine;
+    }
+
+    /**
+     * Opens the Polyglot book named by {@code CHESS_BOOK} or
+     * {@code -Dchess.book}, if any.
+     */
+    private void loadOpeningBook(){
+        String configured = System.getenv("CHESS_BOOK");
+        if(configured == null){
+            configured = System.getProperty("chess.book");
+        }
+        if(configured == null){
+            return;
+        }
+        try{
+            bookKey = PolyglotKey.standard();
+            openingBook = PolyglotBook.open(Paths.get(configured));
+            if(PRINT_STATS){
+                System.out.println("Opening book loaded: " + openingBook.size() + " entries");
+            }
+        } catch (IOException e){
+            System.err.println("Opening book disabled: " + e.getMessage());
+            openingBook = null;
+        }
+    }
+
+    public void setMaxBookPly(int plies){
+        this.maxBookPly = Math.max(0, plies);
+    }
+
+    /**
+     * A weighted-random book reply for the current position, or null when out
+     * of book or past {@link #maxBookPly}.
+     */
+    private String pickBookMove(){
+        if(openingBook == null || enginePosition.size() >= maxBookPly){
+            return null;
+        }
+        char[] squares = boardSquares();
+        int enPassant = enPassantTile < 0 ? -1 : (rows - 1 - enPassantTile / cols) * 8 + enPassantTile % cols;
+        long key = bookKey.hash(squares, isWhiteToMove, castlingRights(), enPassant);
+        return openingBook.pickMove(key, squares, bookRandom);
+    }
+
+    /**
+     * Piece letters indexed a1 = 0 ... h8 = 63, as the book and the
+     * endgame bitbases expect.
+     */
+    private char[] boardSquares(){
+        char[] squares = new char[64];
+        for(Piece piece : pieceList){
+            squares[(rows - 1 - piece.row) * 8 + piece.col] = fenLetter(piece);
+        }
+        return squares;
+    }
+
+    /**
+     * A solved endgame (e.g. K+P vs K with the defending king in front) that
+     * neither side can win; only answered once the bitbases have loaded.
+     */
+    private boolean isTheoreticalDraw(){
+        Bitbases bitbases = Bitbases.ifLoaded();
+        return bitbases != null && bitbases.probe(boardSquares(), isWhiteToMove) == Wdl.DRAW;
+    }
+
+    private void onBookMove(String move){
+        if(!engineEnabled || !isGameActive || isWhiteToMove != engineIsWhite){
+            return;
+        }
+        applyUciMove(move);
+    }
+
+    private String castlingRights(){
+        StringBuilder rights = new StringBuilder(4);
+        if(canStillCastle(true, 7)) rights.append('K');
+        if(canStillCastle(true, 0)) rights.append('Q');
+        if(canStillCastle(false, 7)) rights.append('k');
+        if(canStillCastle(false, 0)) rights.append('q');
+        return rights.length() == 0 ? "-" : rights.toString();
+    }
+
+    private boolean canStillCastle(boolean white, int rookCol){
+        int homeRow = white ? rows - 1 : 0;
+        Piece king = getPiece(4, homeRow);
+        Piece rook = getPiece(rookCol, homeRow);
+        return king instanceof King && king.isWhite == white && king.isFirstMove
+            && rook instanceof Rook && rook.isWhite == white && rook.isFirstMove;
+    }
+
+    private static char fenLetter(Piece piece){
+        char letter;
+        switch (piece.name){
+            case "Knight": letter = 'n'; break;
+            case "Bishop": letter = 'b'; break;
+            case "Rook": letter = 'r'; break;
+            case "Queen": letter = 'q'; break;
+            case "King": letter = 'k'; break;
+            default: letter = 'p';
+        }
+        return piece.isWhite ? Character.toUpperCase(letter) : letter;
+    }
+
+    private void onEngineResult(StockfishClient.AnalysisResult result){
+        if(!engineEnabled || isWhiteToMove != engineIsWhite){
+            return;
+        }
+        applyUciMove(result.bestMove);
+        startPonder(result);
+    }
+
+    /**
+     * Lets the engine think on the human's time, assuming they play the reply
+     * the engine's own PV predicts. The ponder search occupies the engine
+     * thread until {@link #resolvePonder()} sends ponderhit or stop.
+     */
+    private void startPonder(StockfishClient.AnalysisResult result){
+        if(!ponderEnabled || !engineEnabled || stockfishClient == null || engineExecutor == null
+            || playingEngine() != stockfishClient){
+            return;
+        }
+        if(!isGameActive || isGameOver || isWhiteToMove == engineIsWhite){
+            return;
+        }
+        String predicted = result.predictedReply();
+        if(predicted == null || !result.bestMove.equals(enginePosition.lastMove())){
+            return;
+        }
+        UciPosition ponderPosition = enginePosition.copy();
+        ponderPosition.push(predicted);
+        PonderSession session = new PonderSession(predicted);
+        ponderSession = session;
+        SearchLimits limits = engineSearchLimits();
+        engineExecutor.submit(() -> {
+            try{
+                StockfishClient.AnalysisResult ponderResult = stockfishClient.ponder(ponderPosition, limits, null);
+                if(session.hit && ponderResult.bestMove != null){
+                    SwingUtilities.invokeLater(() -> onEngineResult(ponderResult));
+                }
+            } catch (IOException e){
+                System.err.println("Engine failure while pondering: " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Called on the engine's turn. Returns true when the human played the
+     * predicted move, in which case the running ponder search turns into the
+     * real one; otherwise any ponder search is stopped and a fresh search is
+     * needed.
+     */
+    private boolean resolvePonder(){
+        PonderSession session = ponderSession;
+        if(session == null){
+            return false;
+        }
+        ponderSession = null;
+        boolean hit = session.predictedMove.equals(enginePosition.lastMove());
+        try{
+            if(hit){
+                ponderHits++;
+                session.hit = true;
+                stockfishClient.ponderHit();
+            } else {
+                ponderMisses++;
+                stockfishClient.stopPonder();
+            }
+        } catch (IOException e){
+            System.err.println("Engine failure while pondering: " + e.getMessage());
+            return false;
+        }
+        return hit;
+    }
+
+    private void cancelPonder(){
+        PonderSession session = ponderSession;
+        if(session == null){
+            return;
+        }
+        ponderSession = null;
+        if(stockfishClient != null){
+            try{
+                stockfishClient.stopPonder();
+            } catch (IOException ignored){
+            }
+        }
+    }
+
+    /**
+     * In a timed game the engine gets the real clocks and budgets its own
+     * time; otherwise (or when disabled) it thinks for a fixed engineThinkTime.
+     */
+    private SearchLimits engineSearchLimits(){
+        if(engineUsesClock && clockTimer != null){
+            return SearchLimits.clock(whiteClockMillis, blackClockMillis, incrementMillis, incrementMillis, 0);
+        }
+        return SearchLimits.moveTime(engineThinkTime);
+    }
+
+    public void setEngineUsesClock(boolean usesClock){
+        this.engineUsesClock = usesClock;
+    }
+
+    public void setEngineThinkTime(Duration thinkTime){
+        this.engineThinkTime = thinkTime;
+    }
+
+    public void setIncrementSeconds(int seconds){
+        this.incrementMillis = Duration.ofSeconds(Math.max(0, seconds)).toMillis();
+    }
+
+    public void setPonderEnabled(boolean enabled){
+        this.ponderEnabled = enabled;
+        configureEngine();
+    }
+
+    public int getPonderHits(){
+        return ponderHits;
+    }
+
+    public int getPonderMisses(){
+        return ponderMisses;
+    }
+
+    public double getPonderHitRate(){
+        int total = ponderHits + ponderMisses;
+        return total == 0 ? 0 : (double) ponderHits / total;
+    }
+
     private void applyUciMove(String uciMove){
         Move engineMove = createMoveFromUci(uciMove);
         if(engineMove != null && isValidMove(engineMove)){
@@ -1228,7 +1804,10 @@ public class Board extends JPanel {
     }
 
     private void recordMove(Move move, String notation){
-        moveHistory.add(toUci(move.oldCol, move.oldRow, move.newCol, move.newRow, move.piece));
+        String uci = toUci(move.oldCol, move.oldRow, move.newCol, move.newRow, move.piece);
+        moveHistory.add(uci);
+        enginePosition.push(uci);
+        trackEvalMove(uci);
         if(move.piece.isWhite){
             int moveNumber = displayMoves.size() + 1;
             displayMoves.add(moveNumber + ". " + notation);
@@ -1263,14 +1842,16 @@ public class Board extends JPanel {
         return "" + file + rank;
     }
 
-    private void prepareAnalysisReview(GameAnalyzer.Summary summary, java.util.List<String> movesUci, java.util.List<String> sanMoves){
+    private void prepareAnalysisReview(GameAnalyzer.Summary summary, String startFen, java.util.List<String> movesUci, java.util.List<String> sanMoves){
         if(liveStateBackup == null){
             liveStateBackup = captureLiveGameState();
         }
+        cancelPonder();
         analysisMode = true;
         isGameActive = false;
         isGameOver = false;
         engineEnabled = false;
+        updateLiveEvaluation();
         bestMoveArrow = null;
         currentQualityTag = null;
         reviewUciMoves = new ArrayList<>(movesUci);
@@ -1278,7 +1859,7 @@ public class Board extends JPanel {
         reviewEntries = summary.entries;
         lastAnalysisSummary = summary;
         analysisSnapshots.clear();
-        loadPositionFromFEN(fenStartingPosition);
+        loadPositionFromFEN(startFen);
         analysisSnapshots.add(captureSnapshot(null));
         for(String uci : reviewUciMoves){
             Move move = createMoveFromUci(uci);
@@ -1386,6 +1967,7 @@ public class Board extends JPanel {
         analysisFrameConsumer.accept(new AnalysisFrame(
             analysisPointer,
             reviewSanMoves.size(),
+            Math.min(reviewSanMoves.size(), reviewEntries.size()),
             san,
             entry,
             lastAnalysisSummary
@@ -1441,6 +2023,7 @@ public class Board extends JPanel {
     }
 
     private void clearAnalysisReview(){
+        reviewGeneration++;
         analysisMode = false;
         analysisSnapshots.clear();
         analysisPointer = -1;
@@ -1452,7 +2035,7 @@ public class Board extends JPanel {
         currentQualityTag = null;
         liveStateBackup = null;
         if(analysisFrameConsumer != null){
-            analysisFrameConsumer.accept(new AnalysisFrame(-1, 0, null, null, null));
+            analysisFrameConsumer.accept(new AnalysisFrame(-1, 0, 0, null, null, null));
         }
     }
 
@@ -1643,19 +2226,44 @@ public class Board extends JPanel {
         if(analysisMode){
             restoreLiveGameState();
         }
-        if(engineBinaryPath == null){
+        String startFen = gameStartFen;
+        List<String> movesCopy = new ArrayList<>(moveHistory);
+        List<String> sanCopy = new ArrayList<>(sanHistory);
+        Path savedReview = reviewFile(startFen, movesCopy);
+        GameAnalyzer.Summary saved = loadSavedReview(savedReview, startFen, movesCopy);
+        if(saved != null){
+            prepareAnalysisReview(saved, startFen, movesCopy, sanCopy);
+            onReviewProgress(++reviewGeneration, saved);
+            consumer.accept(GameReviewFormatter.buildReport(saved, sanCopy));
+            return;
+        }
+        if(engineCommand == null){
             consumer.accept(java.util.List.of("Engine path not configured. Set STOCKFISH_PATH to enable analysis."));
             return;
         }
-        List<String> movesCopy = new ArrayList<>(moveHistory);
-        List<String> sanCopy = new ArrayList<>(sanHistory);
+        Map<String, String> tags = reviewTags();
+        // open the review at once; moves become reachable as they are analysed
+        prepareAnalysisReview(new GameAnalyzer.Summary(new ArrayList<>()), startFen, movesCopy, sanCopy);
+        int generation = ++reviewGeneration;
         analysisExecutor.submit(() -> {
             try{
-                GameAnalyzer analyzer = new GameAnalyzer(engineBinaryPath, Duration.ofMillis(800));
-                GameAnalyzer.Summary summary = analyzer.analyze(movesCopy);
+                GameAnalyzer analyzer = new GameAnalyzer(engineCommand, REVIEW_THINK_TIME,
+                    EngineProfile.forUseCase(EngineProfile.UseCase.BACKGROUND_ANALYSIS).multiPv);
+                analyzer.setAdaptiveThinkTime(REVIEW_FIRST_PASS, null);
+                GameAnalyzer.Summary summary = analyzer.analyze(startFen, movesCopy,
+                    (entry, soFar) -> SwingUtilities.invokeLater(() -> onReviewProgress(generation, soFar)));
                 List<String> report = GameReviewFormatter.buildReport(summary, sanCopy);
+                if(PRINT_STATS){
+                    System.out.println("Review cache: " + GameAnalyzer.reviewCache() + ", engine time "
+                        + summary.engineMillis + " ms");
+                }
+                try{
+                    ReviewArchive.save(savedReview, new ReviewArchive.Record(tags, startFen, movesCopy, summary));
+                } catch (IOException | IllegalArgumentException e){
+                    System.err.println("Unable to save review to " + savedReview + ": " + e.getMessage());
+                }
                 SwingUtilities.invokeLater(() -> {
-                    prepareAnalysisReview(summary, movesCopy, sanCopy);
+                    onReviewProgress(generation, summary);
                     consumer.accept(report);
                 });
             } catch (IOException e){
@@ -1664,6 +2272,57 @@ public class Board extends JPanel {
         });
     }
 
+    /**
+     * Where the review of this exact game is kept: one file per game, named
+     * by the hash of its start position and moves, under
+     * {@code -Dchess.reviewDir} or {@code ~/.chess/reviews}.
+     */
+    static Path reviewFile(String startFen, List<String> moves){
+        String configured = System.getProperty("chess.reviewDir");
+        Path directory = configured != null
+            ? Paths.get(configured)
+            : Paths.get(System.getProperty("user.home"), ".chess", "reviews");
+        return directory.resolve(String.format("%016x.review", UciPosition.of(startFen, moves).key()));
+    }
+
+    /**
+     * The finished review saved for this game, if there is one, so it opens
+     * without running the engines; null otherwise.
+     */
+    private static GameAnalyzer.Summary loadSavedReview(Path file, String startFen, List<String> moves){
+        if(moves.isEmpty() || !Files.exists(file)){
+            return null;
+        }
+        try{
+            ReviewArchive.Record record = ReviewArchive.load(file);
+            boolean sameGame = java.util.Objects.equals(record.startFen, startFen) && record.moves.equals(moves)
+                && record.summary.entries.size() == moves.size();
+            return sameGame ? record.summary : null;
+        } catch (IOException e){
+            System.err.println("Ignoring saved review " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private Map<String, String> reviewTags(){
+        Map<String, String> tags = new java.util.LinkedHashMap<>();
+        tags.put("Event", "Casual Game");
+        tags.put("Date", LocalDate.now().toString().replace('-', '.'));
+        tags.put("White", getPlayerName(true));
+        tags.put("Black", getPlayerName(false));
+        tags.put("Result", lastResultTag == null ? "*" : lastResultTag);
+        return tags;
+    }
+
+    private void onReviewProgress(int generation, GameAnalyzer.Summary soFar){
+        if(generation != reviewGeneration || !analysisMode){
+            return;
+        }
+        reviewEntries = soFar.entries;
+        lastAnalysisSummary = soFar;
+        notifyAnalysisFrame();
+    }
+
     public void exitAnalysisReview(){
         if(analysisMode){
             restoreLiveGameState();
@@ -1695,6 +2354,18 @@ public class Board extends JPanel {
         notifyClock();
     }
 
+    private void applyIncrement(boolean moverIsWhite){
+        if(incrementMillis <= 0 || !isGameActive){
+            return;
+        }
+        if(moverIsWhite){
+            whiteClockMillis += incrementMillis;
+        } else {
+            blackClockMillis += incrementMillis;
+        }
+        notifyClock();
+    }
+
     private void tickClock(){
         if(!isGameActive){
             return;
@@ -1718,11 +2389,23 @@ public class Board extends JPanel {
     }
 
     private void shutdownEngine(){
+        cancelPonder();
+        builtInEngine.stop();
         engineEnabled = false;
+        builtInEngineOnly = false;
         if(engineExecutor != null){
             engineExecutor.shutdownNow();
             engineExecutor = null;
         }
+        if(liveEvaluator != null){
+            // a restart may bring a different engine command
+            liveEvaluator.close();
+            liveEvaluator = null;
+            liveEvaluationSequence = -1;
+            if(liveEvaluationConsumer != null){
+                liveEvaluationConsumer.accept("");
+            }
+        }
         if(stockfishClient != null){
             try{
                 stockfishClient.close();
@@ -1733,13 +2416,16 @@ public class Board extends JPanel {
     }
 
     private void configureEngine(){
+        builtInEngine.setTargetElo(engineElo);
         if(stockfishClient == null){
             return;
         }
+        cancelPonder();
         try{
             stockfishClient.setSkillLevel(engineSkillLevel);
             stockfishClient.setLimitStrength(true);
             stockfishClient.setTargetElo(engineElo);
+            stockfishClient.setPonder(ponderEnabled);
         } catch (IOException e){
             System.err.println("Unable to configure engine: " + e.getMessage());
         }
@@ -1816,7 +2502,7 @@ public class Board extends JPanel {
         if(!analysisMode || analysisSnapshots.isEmpty()){
             return;
         }
-        int maxPointer = reviewUciMoves.size() - 1;
+        int maxPointer = Math.min(reviewUciMoves.size(), reviewEntries.size()) - 1;
         int newPointer = Math.max(-1, Math.min(maxPointer, analysisPointer + delta));
         if(newPointer == analysisPointer){
             return;
@@ -1831,14 +2517,17 @@ public class Board extends JPanel {
     public static final class AnalysisFrame {
         public final int plyIndex;
         public final int totalPlies;
+        /** Plies reviewed so far; less than {@link #totalPlies} while the analysis runs. */
+        public final int analysedPlies;
         public final String san;
         public final GameAnalyzer.Entry entry;
         public final GameAnalyzer.Summary summary;
 
-        public AnalysisFrame(int plyIndex, int totalPlies, String san,
+        public AnalysisFrame(int plyIndex, int totalPlies, int analysedPlies, String san,
                              GameAnalyzer.Entry entry, GameAnalyzer.Summary summary) {
             this.plyIndex = plyIndex;
             this.totalPlies = totalPlies;
+            this.analysedPlies = analysedPlies;
             this.san = san;
             this.entry = entry;
             this.summary = summary;
@@ -1852,6 +2541,10 @@ public class Board extends JPanel {
             return plyIndex < 0 ? 0 : (plyIndex / 2) + 1;
         }
 
+        public boolean isComplete(){
+            return analysedPlies >= totalPlies;
+        }
+
         public boolean isWhiteMove(){
             return entry != null ? entry.isWhite : (plyIndex % 2 == 0);
         }
@@ -1907,6 +2600,15 @@ public class Board extends JPanel {
         }
     }
 
+    private static final class PonderSession {
+        final String predictedMove;
+        volatile boolean hit;
+
+        PonderSession(String predictedMove){
+            this.predictedMove = predictedMove;
+        }
+    }
+
     private static final class StoredMove {
         final int oldCol;
         final int oldRow;
@@ -1925,6 +2627,7 @@ public class Board extends JPanel {
         final java.util.List<PieceState> pieces;
         final java.util.List<String> capturedByWhite;
         final java.util.List<String> capturedByBlack;
+        final String startFen;
         final java.util.List<String> moveHistory;
         final java.util.List<String> displayMoves;
         final java.util.List<String> sanHistory;
@@ -1945,6 +2648,7 @@ public class Board extends JPanel {
         LiveGameState(java.util.List<PieceState> pieces,
                       java.util.List<String> capturedByWhite,
                       java.util.List<String> capturedByBlack,
+                      String startFen,
                       java.util.List<String> moveHistory,
                       java.util.List<String> displayMoves,
                       java.util.List<String> sanHistory,
@@ -1964,6 +2668,7 @@ public class Board extends JPanel {
             this.pieces = pieces;
             this.capturedByWhite = capturedByWhite;
             this.capturedByBlack = capturedByBlack;
+            this.startFen = startFen;
             this.moveHistory = moveHistory;
             this.displayMoves = displayMoves;
             this.sanHistory = sanHistory;
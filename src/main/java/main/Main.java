@@ -1,6 +1,8 @@
 package main;
 
 import analysis.GameAnalyzer;
+import endgame.Bitbases;
+import pieces.Piece;
 
 import javax.swing.*;
 import javax.swing.plaf.basic.BasicComboBoxUI;
@@ -14,6 +16,16 @@ import java.util.List;
 public class Main {
 
     public static void main(String[] args) {
+        // decode the sprite sheet while Swing starts up; the Board waits for it if needed
+        Thread spriteLoader = new Thread(Piece::spriteSheet, "sprite-loader");
+        spriteLoader.setDaemon(true);
+        spriteLoader.start();
+        // the first run solves the endgames, which takes a few seconds; later runs just read them
+        Thread bitbaseLoader = new Thread(Bitbases::shared, "bitbase-loader");
+        bitbaseLoader.setDaemon(true);
+        bitbaseLoader.setPriority(Thread.MIN_PRIORITY);
+        bitbaseLoader.start();
+
         SwingUtilities.invokeLater(() -> {
             JFrame frame = new JFrame("Chess");
             frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -47,10 +59,14 @@ public class Main {
             statusLabel.setFont(statusLabel.getFont().deriveFont(Font.BOLD, 17f));
             statusLabel.setHorizontalAlignment(SwingConstants.CENTER);
 
-            JLabel evalLabel = new JLabel("Material even");
+            JLabel evalLabel = new JLabel("Even");
             evalLabel.setForeground(Theme.ACCENT_PRIMARY);
             evalLabel.setFont(evalLabel.getFont().deriveFont(Font.BOLD, 13f));
-            final String[] liveEval = {"Material even"};
+            final String[] liveEval = {"Even"};
+
+            JLabel engineEvalLabel = new JLabel(" ");
+            engineEvalLabel.setForeground(Theme.TEXT_SECONDARY);
+            engineEvalLabel.setFont(engineEvalLabel.getFont().deriveFont(Font.PLAIN, 13f));
 
             JLabel whiteCaptureLabel = new JLabel("White captures: -");
             whiteCaptureLabel.setForeground(Theme.TEXT_SECONDARY);
@@ -67,6 +83,10 @@ public class Main {
             styleToggle(botToggle);
             botToggle.addActionListener(e -> board.setHumanVsHuman(!botToggle.isSelected()));
 
+            JCheckBox liveEvalToggle = new JCheckBox("Live engine evaluation", board.isLiveEvaluationEnabled());
+            styleToggle(liveEvalToggle);
+            liveEvalToggle.addActionListener(e -> board.setLiveEvaluationEnabled(liveEvalToggle.isSelected()));
+
             JRadioButton playAsWhite = new JRadioButton("Play as White");
             JRadioButton playAsBlack = new JRadioButton("Play as Black");
             styleToggle(playAsWhite); styleToggle(playAsBlack);
@@ -84,6 +104,16 @@ public class Main {
                 playButton.setText("Playing...");
                 playButton.setEnabled(false);
             });
+            playButton.setText("Starting engine…");
+            playButton.setEnabled(false);
+            board.setEngineReadyConsumer(ready -> {
+                if (!board.isGameActive()) { playButton.setText("Play"); playButton.setEnabled(true); }
+            });
+            botToggle.addActionListener(e -> {
+                if (!botToggle.isSelected() && !board.isGameActive()) {
+                    playButton.setText("Play"); playButton.setEnabled(true);
+                }
+            });
 
             JButton copyPgn = createSecondaryButton("Copy PGN");
             copyPgn.addActionListener(e -> Toolkit.getDefaultToolkit()
@@ -148,6 +178,8 @@ public class Main {
                 liveEval[0] = msg;
                 if (!board.isAnalysisMode()) evalLabel.setText(msg);
             }));
+            board.setLiveEvaluationConsumer(msg -> SwingUtilities.invokeLater(() ->
+                engineEvalLabel.setText(msg.isEmpty() ? " " : "Engine: " + msg)));
             board.setCaptureConsumer((w, b) -> SwingUtilities.invokeLater(() -> {
                 whiteCaptureLabel.setText("White captures: " + w);
                 blackCaptureLabel.setText("Black captures: " + b);
@@ -168,7 +200,7 @@ public class Main {
                     evalLabel.setText(liveEval[0]);
                     return;
                 }
-                analysisSummaryLabel.setText(formatAnalysisSummary(af.summary));
+                analysisSummaryLabel.setText(formatAnalysisSummary(af));
                 if (af.plyIndex < 0) {
                     analysisMoveLabel.setText("<html>Start position</html>");
                     analysisDetailArea.setText("Use ▶ to step through the reviewed game.");
@@ -183,7 +215,7 @@ public class Main {
                     if (af.entry != null) evalLabel.setText(buildEvalHeadline(af.entry));
                 }
                 analysisPrevButton.setEnabled(af.plyIndex >= 0);
-                analysisNextButton.setEnabled(af.plyIndex < af.totalPlies - 1);
+                analysisNextButton.setEnabled(af.plyIndex < af.analysedPlies - 1);
                 exitReviewButton.setEnabled(true);
             }));
 
@@ -234,6 +266,9 @@ public class Main {
             gbc.gridy=3;
             setupForm.add(sideChoice, gbc);
 
+            gbc.gridy=4;
+            setupForm.add(liveEvalToggle, gbc);
+
             // ── Controls panel ────────────────────────────────────────────────
             Dimension btnFull = new Dimension(Integer.MAX_VALUE, 38);
             playButton.setAlignmentX(Component.LEFT_ALIGNMENT);    playButton.setMaximumSize(btnFull);
@@ -322,6 +357,7 @@ public class Main {
             infoLeft.setOpaque(false);
             infoLeft.setLayout(new BoxLayout(infoLeft, BoxLayout.Y_AXIS));
             infoLeft.add(evalLabel);
+            infoLeft.add(engineEvalLabel);
             infoLeft.add(Box.createVerticalStrut(4));
             infoLeft.add(captureBlock);
 
@@ -386,11 +422,17 @@ public class Main {
 
     // ── Formatting helpers ────────────────────────────────────────────────────
 
-    private static String formatAnalysisSummary(GameAnalyzer.Summary s) {
+    private static String formatAnalysisSummary(Board.AnalysisFrame f) {
+        GameAnalyzer.Summary s = f.summary;
+        if (s.entries.isEmpty() && !f.isComplete()) {
+            return String.format("<html>Analysing… 0 of %d moves</html>", f.totalPlies);
+        }
+        String progress = f.isComplete() ? ""
+            : String.format("<br><font color='#9e9e9e'>Analysed %d of %d moves</font>", f.analysedPlies, f.totalPlies);
         return String.format(
             "<html>W <b>%.1f%%</b> &nbsp; B <b>%.1f%%</b><br>" +
-                "<font color='#9e9e9e'>Blunders %d &nbsp; Mistakes %d &nbsp; Inaccuracies %d</font></html>",
-            s.whiteAccuracy, s.blackAccuracy, s.blunders, s.mistakes, s.inaccuracies);
+                "<font color='#9e9e9e'>Blunders %d &nbsp; Mistakes %d &nbsp; Inaccuracies %d</font>%s</html>",
+            s.whiteAccuracy, s.blackAccuracy, s.blunders, s.mistakes, s.inaccuracies, progress);
     }
 
     private static String formatAnalysisDetail(Board.AnalysisFrame f) {
@@ -2,8 +2,6 @@ package pieces;
 
 import main.Board;
 
-import java.awt.image.BufferedImage;
-
 public class Bishop extends Piece{
 
     public Bishop(Board board, int col, int row, boolean isWhite) {
@@ -16,7 +14,7 @@ public class Bishop extends Piece{
         this.name = "Bishop";
         this.value = 3;
 
-        this.sprite = sheet.getSubimage(2 * sheetScale, isWhite ? 0 : sheetScale, sheetScale, sheetScale).getScaledInstance(board.tileSize ,board.tileSize, BufferedImage.SCALE_SMOOTH);
+        this.sprite = sprite(2, isWhite, board.tileSize);
     }
 
     public boolean isValidMovement(int col, int row){
@@ -3,8 +3,6 @@ package pieces;
 import main.Board;
 import main.Move;
 
-import java.awt.image.BufferedImage;
-
 public class King extends Piece{
 
     public King(Board board, int col, int row, boolean isWhite) {
@@ -17,7 +15,7 @@ public class King extends Piece{
         this.name = "King";
         this.value = 0;
 
-        this.sprite = sheet.getSubimage(0, isWhite ? 0 : sheetScale, sheetScale, sheetScale).getScaledInstance(board.tileSize ,board.tileSize, BufferedImage.SCALE_SMOOTH);
+        this.sprite = sprite(0, isWhite, board.tileSize);
     }
 
     public boolean isValidMovement(int col, int row){
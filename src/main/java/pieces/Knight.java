@@ -2,8 +2,6 @@ package pieces;
 
 import main.Board;
 
-import java.awt.image.BufferedImage;
-
 public class Knight extends Piece{
 
     public Knight(Board board, int col, int row, boolean isWhite) {
@@ -16,7 +14,7 @@ public class Knight extends Piece{
         this.name = "Knight";
         this.value = 3;
 
-        this.sprite = sheet.getSubimage(3 * sheetScale, isWhite ? 0 : sheetScale, sheetScale, sheetScale).getScaledInstance(board.tileSize ,board.tileSize, BufferedImage.SCALE_SMOOTH);
+        this.sprite = sprite(3, isWhite, board.tileSize);
     }
 
     public boolean isValidMovement(int col, int row){
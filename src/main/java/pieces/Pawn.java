@@ -1,7 +1,6 @@
 package pieces;
 
 import main.Board;
-import java.awt.image.BufferedImage;
 
 public class Pawn extends Piece {
 
@@ -15,9 +14,7 @@ public class Pawn extends Piece {
         this.name = "Pawn";
         this.value = 1;
 
-        this.sprite = sheet.getSubimage(5 * sheetScale, isWhite ? 0 : sheetScale,
-                sheetScale, sheetScale)
-            .getScaledInstance(board.tileSize, board.tileSize, BufferedImage.SCALE_SMOOTH);
+        this.sprite = sprite(5, isWhite, board.tileSize);
     }
 
     public boolean isValidMovement(int col, int row){
@@ -7,6 +7,8 @@ import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
 
 public class Piece {
 
@@ -19,23 +21,51 @@ public class Piece {
 
     public boolean isFirstMove = true;
 
-    BufferedImage sheet;
-    protected int sheetScale;
-    {
-        try (InputStream spriteStream = ClassLoader.getSystemResourceAsStream("pieces.png")) {
+    private static final String SPRITE_SHEET = "pieces.png";
+    private static BufferedImage sheet;
+    private static final Map<String, Image> scaledSprites = new HashMap<>();
+
+    /**
+     * Decodes the sprite sheet once for all pieces. Safe to call from a
+     * background thread at startup so the first board is built from an
+     * already decoded sheet.
+     */
+    public static synchronized BufferedImage spriteSheet() {
+        if(sheet != null){
+            return sheet;
+        }
+        try (InputStream spriteStream = ClassLoader.getSystemResourceAsStream(SPRITE_SHEET)) {
             if(spriteStream == null){
                 throw new IllegalStateException("Unable to locate sprite sheet 'pieces.png' on the classpath.");
             }
-            sheet = ImageIO.read(spriteStream);
-            if(sheet == null){
+            BufferedImage decoded = ImageIO.read(spriteStream);
+            if(decoded == null){
                 throw new IllegalStateException("Failed to decode sprite sheet 'pieces.png'.");
             }
-            sheetScale = sheet.getWidth()/6;
+            sheet = decoded;
+            return sheet;
         } catch (IOException e) {
             throw new IllegalStateException("Failed to load sprite sheet 'pieces.png'.", e);
         }
     }
 
+    /**
+     * The sprite in column {@code sheetColumn} of the sheet (white on the top
+     * row), scaled to {@code tileSize}; each one is cut and scaled only once.
+     */
+    protected static synchronized Image sprite(int sheetColumn, boolean isWhite, int tileSize) {
+        String key = sheetColumn + (isWhite ? "w" : "b") + tileSize;
+        Image cached = scaledSprites.get(key);
+        if(cached == null){
+            BufferedImage source = spriteSheet();
+            int sheetScale = source.getWidth() / 6;
+            cached = source.getSubimage(sheetColumn * sheetScale, isWhite ? 0 : sheetScale, sheetScale, sheetScale)
+                .getScaledInstance(tileSize, tileSize, BufferedImage.SCALE_SMOOTH);
+            scaledSprites.put(key, cached);
+        }
+        return cached;
+    }
+
 
     Image sprite;
     Board board;
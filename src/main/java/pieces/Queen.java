@@ -1,7 +1,6 @@
 package pieces;
 
 import main.Board;
-import java.awt.image.BufferedImage;
 
 public class Queen extends Piece {
 
@@ -15,8 +14,7 @@ public class Queen extends Piece {
         this.name = "Queen";
         this.value = 9;
 
-        this.sprite = sheet.getSubimage(1 * sheetScale, isWhite ? 0 : sheetScale,
-            sheetScale, sheetScale).getScaledInstance(board.tileSize, board.tileSize, BufferedImage.SCALE_SMOOTH);
+        this.sprite = sprite(1, isWhite, board.tileSize);
     }
 
     @Override
@@ -2,8 +2,6 @@ package pieces;
 
 import main.Board;
 
-import java.awt.image.BufferedImage;
-
 public class Rook extends Piece{
 
     public Rook(Board board, int col, int row, boolean isWhite) {
@@ -16,7 +14,7 @@ public class Rook extends Piece{
         this.name = "Rook";
         this.value = 5;
 
-        this.sprite = sheet.getSubimage(4 * sheetScale, isWhite ? 0 : sheetScale, sheetScale, sheetScale).getScaledInstance(board.tileSize ,board.tileSize, BufferedImage.SCALE_SMOOTH);
+        this.sprite = sprite(4, isWhite, board.tileSize);
     }
 
     public boolean isValidMovement(int col, int row){
@@ -0,0 +1,37 @@
+package uci;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Request/response shape shared by {@link StockfishClient} and the built-in
+ * {@code engine.JavaEngine}: a position and limits in, an
+ * {@link StockfishClient.AnalysisResult} out, with {@code info} updates
+ * streamed to an optional listener while the search runs.
+ */
+public interface AnalysisEngine extends Closeable {
+
+    /**
+     * Searches {@code position} until any of {@code limits} is reached.
+     */
+    StockfishClient.AnalysisResult analyzePosition(UciPosition position, SearchLimits limits,
+                                                   SearchInfoListener listener) throws IOException;
+
+    /**
+     * Searches the top {@code lineCount} lines, ranked best first in
+     * {@link StockfishClient.AnalysisResult#lines}.
+     */
+    StockfishClient.AnalysisResult analyzeLines(UciPosition position, SearchLimits limits, int lineCount,
+                                                SearchInfoListener listener) throws IOException;
+
+    /**
+     * Forgets everything learned about the previous game.
+     */
+    void newGame() throws IOException;
+
+    /**
+     * Ends the running search early; its result is still returned. Safe to
+     * call from any thread.
+     */
+    void stop() throws IOException;
+}
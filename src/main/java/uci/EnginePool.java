@@ -0,0 +1,233 @@
+package uci;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Engine processes kept alive between analyses, so a review borrows one that
+ * has already started, loaded its network and answered {@code uci} instead
+ * of paying for all of that on every call.
+ *
+ * <p>Every borrow starts a new game ({@code ucinewgame}, then
+ * {@code isready}), so nothing one borrower searched leaks into the next
+ * one's results. At most {@code capacity} engines exist at once; further
+ * borrowers wait for one to be returned. An engine left idle for
+ * {@link #IDLE_TIMEOUT_MILLIS} is shut down.</p>
+ */
+public final class EnginePool implements Closeable {
+
+    /**
+     * How long a returned engine is kept for the next borrower.
+     */
+    static final long IDLE_TIMEOUT_MILLIS = 5 * 60_000;
+
+    private static final Map<List<String>, EnginePool> SHARED = new ConcurrentHashMap<>();
+
+    private static final ScheduledExecutorService REAPER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "engine-pool-reaper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<String> command;
+    private final Semaphore permits;
+    private final long idleTimeoutMillis;
+    private final Deque<Idle> idle = new ArrayDeque<>();
+    private int started;
+    private boolean closed;
+
+    /**
+     * An engine waiting in the pool, with the profile it was last set up for.
+     */
+    private static final class Idle {
+        final StockfishClient client;
+        final EngineProfile profile;
+
+        Idle(StockfishClient client, EngineProfile profile) {
+            this.client = client;
+            this.profile = profile;
+        }
+    }
+
+    /**
+     * An engine on loan; closing it hands the engine back.
+     */
+    public final class Lease implements Closeable {
+        private final StockfishClient client;
+        private final EngineProfile profile;
+        private boolean broken;
+        private boolean returned;
+
+        private Lease(StockfishClient client, EngineProfile profile) {
+            this.client = client;
+            this.profile = profile;
+        }
+
+        public StockfishClient client() {
+            return client;
+        }
+
+        /**
+         * Shuts the engine down on close instead of returning it, e.g. after
+         * a search failed and its state is unknown.
+         */
+        public void discard() {
+            broken = true;
+        }
+
+        @Override
+        public void close() {
+            if (returned) {
+                return;
+            }
+            returned = true;
+            release(client, profile, broken);
+        }
+    }
+
+    public EnginePool(List<String> command, int capacity) {
+        this(command, capacity, IDLE_TIMEOUT_MILLIS);
+    }
+
+    EnginePool(List<String> command, int capacity, long idleTimeoutMillis) {
+        if (command == null || command.isEmpty()) {
+            throw new IllegalArgumentException("Engine command is empty");
+        }
+        this.command = List.copyOf(command);
+        this.permits = new Semaphore(Math.max(1, capacity), true);
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * The process-wide pool for {@code command}, with room for one engine
+     * per core.
+     */
+    public static EnginePool shared(List<String> command) {
+        return SHARED.computeIfAbsent(List.copyOf(command),
+            key -> new EnginePool(key, EngineProfile.availableCores()));
+    }
+
+    /**
+     * Takes an idle engine, preferring one already set up for
+     * {@code profile}, or starts a new one; waits while {@code capacity}
+     * engines are on loan.
+     */
+    public Lease borrow(EngineProfile profile) throws IOException, InterruptedException {
+        permits.acquire();
+        StockfishClient client = null;
+        boolean leased = false;
+        try {
+            client = takeIdle(profile);
+            if (client == null) {
+                client = new StockfishClient(command);
+                synchronized (this) {
+                    started++;
+                }
+            } else {
+                client.newGame();
+            }
+            // only sends the options that differ from the last borrower's
+            profile.applyTo(client);
+            leased = true;
+            return new Lease(client, profile);
+        } finally {
+            if (!leased) {
+                if (client != null) {
+                    closeQuietly(client);
+                }
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Engine processes started so far; a pool that is reused well starts
+     * only as many as are ever borrowed at once.
+     */
+    public synchronized int startedCount() {
+        return started;
+    }
+
+    public synchronized int idleCount() {
+        return idle.size();
+    }
+
+    private synchronized StockfishClient takeIdle(EngineProfile profile) {
+        if (closed) {
+            throw new IllegalStateException("Engine pool is closed");
+        }
+        for (Iterator<Idle> it = idle.iterator(); it.hasNext(); ) {
+            Idle candidate = it.next();
+            if (candidate.profile.threads == profile.threads && candidate.profile.hashMb == profile.hashMb) {
+                it.remove();
+                return candidate.client;
+            }
+        }
+        Idle any = idle.pollFirst();
+        return any == null ? null : any.client;
+    }
+
+    private void release(StockfishClient client, EngineProfile profile, boolean broken) {
+        try {
+            boolean keep;
+            synchronized (this) {
+                keep = !broken && !closed;
+                if (keep) {
+                    Idle entry = new Idle(client, profile);
+                    idle.addFirst(entry);
+                    REAPER.schedule(() -> reap(entry), idleTimeoutMillis, TimeUnit.MILLISECONDS);
+                }
+            }
+            if (!keep) {
+                closeQuietly(client);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void reap(Idle entry) {
+        synchronized (this) {
+            if (!idle.remove(entry)) {
+                // borrowed again since
+                return;
+            }
+        }
+        closeQuietly(entry.client);
+    }
+
+    /**
+     * Shuts down the idle engines; engines on loan are shut down when they
+     * come back.
+     */
+    @Override
+    public void close() {
+        Idle[] toClose;
+        synchronized (this) {
+            closed = true;
+            toClose = idle.toArray(new Idle[0]);
+            idle.clear();
+        }
+        SHARED.remove(command, this);
+        for (Idle entry : toClose) {
+            closeQuietly(entry.client);
+        }
+    }
+
+    private static void closeQuietly(StockfishClient client) {
+        try {
+            client.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
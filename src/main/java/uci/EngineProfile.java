@@ -0,0 +1,123 @@
+package uci;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+
+/**
+ * Threads/Hash/MultiPV settings for one engine process, sized from the cores
+ * and memory of the machine we are running on.
+ *
+ * <p>Each use case owns a fixed share of the machine so that running them
+ * side by side never asks for more threads than there are cores: live play
+ * takes an eighth, the live evaluation shown during play another eighth,
+ * background analysis half, and batch workers split everything except the
+ * live-play share between them.</p>
+ */
+public final class EngineProfile {
+
+    public enum UseCase {
+        LIVE_PLAY,
+        LIVE_EVALUATION,
+        BACKGROUND_ANALYSIS,
+        BATCH_WORKER
+    }
+
+    private static final int MIN_HASH_MB = 16;
+    private static final int MAX_HASH_MB = 4096;
+
+    public final UseCase useCase;
+    public final int threads;
+    public final int hashMb;
+    public final int multiPv;
+
+    public EngineProfile(UseCase useCase, int threads, int hashMb, int multiPv) {
+        this.useCase = useCase;
+        this.threads = Math.max(1, threads);
+        this.hashMb = Math.max(MIN_HASH_MB, hashMb);
+        this.multiPv = Math.max(1, multiPv);
+    }
+
+    public static EngineProfile forUseCase(UseCase useCase) {
+        return forUseCase(useCase, 1);
+    }
+
+    /**
+     * @param engines how many engines of this use case run at the same time,
+     *                splitting its share of the machine (ignored for
+     *                {@link UseCase#LIVE_PLAY} and
+     *                {@link UseCase#LIVE_EVALUATION}).
+     */
+    public static EngineProfile forUseCase(UseCase useCase, int engines) {
+        return forMachine(useCase, engines, availableCores(), engineMemoryBudgetMb());
+    }
+
+    static EngineProfile forMachine(UseCase useCase, int engines, int cores, long memoryBudgetMb) {
+        int workers = Math.max(1, engines);
+        int liveThreads = Math.max(1, cores / 8);
+        switch (useCase) {
+            case LIVE_PLAY:
+                return new EngineProfile(useCase, liveThreads,
+                    powerOfTwoAtMost(Math.min(256, memoryBudgetMb / 8)), 1);
+            case LIVE_EVALUATION:
+                return new EngineProfile(useCase, liveThreads,
+                    powerOfTwoAtMost(Math.min(128, memoryBudgetMb / 16)), 1);
+            case BACKGROUND_ANALYSIS:
+                return new EngineProfile(useCase, Math.max(1, cores / 2 / workers),
+                    powerOfTwoAtMost(Math.min(MAX_HASH_MB, memoryBudgetMb / 2 / workers)), 3);
+            case BATCH_WORKER:
+            default:
+                int shared = Math.max(1, cores - liveThreads);
+                return new EngineProfile(UseCase.BATCH_WORKER, Math.max(1, shared / workers),
+                    powerOfTwoAtMost(Math.min(MAX_HASH_MB / 4, memoryBudgetMb / workers)), 3);
+        }
+    }
+
+    /**
+     * Largest number of batch workers that still gives each one a thread of
+     * its own without oversubscribing the machine.
+     */
+    public static int maxBatchWorkers() {
+        return maxBatchWorkers(availableCores());
+    }
+
+    static int maxBatchWorkers(int cores) {
+        return Math.max(1, cores - Math.max(1, cores / 8));
+    }
+
+    public void applyTo(StockfishClient client) throws IOException {
+        client.setThreads(threads);
+        client.setHashMb(hashMb);
+    }
+
+    static int availableCores() {
+        return Math.max(1, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Memory all engine hash tables together may use: a quarter of physical
+     * memory when the JVM can tell us, otherwise the JVM's own max heap as a
+     * stand-in for what the machine can spare.
+     */
+    static long engineMemoryBudgetMb() {
+        long physicalBytes = 0;
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            physicalBytes = ((com.sun.management.OperatingSystemMXBean) os).getTotalMemorySize();
+        }
+        if (physicalBytes <= 0) {
+            physicalBytes = Runtime.getRuntime().maxMemory();
+        }
+        return Math.max(MIN_HASH_MB, physicalBytes / 4 / (1024 * 1024));
+    }
+
+    private static int powerOfTwoAtMost(long mb) {
+        long clamped = Math.max(MIN_HASH_MB, Math.min(MAX_HASH_MB, mb));
+        return (int) Long.highestOneBit(clamped);
+    }
+
+    @Override
+    public String toString() {
+        return useCase + " threads=" + threads + " hash=" + hashMb + "MB multipv=" + multiPv;
+    }
+}
@@ -0,0 +1,17 @@
+package uci;
+
+import java.io.IOException;
+
+/**
+ * The engine hung or died during a request and was replaced by a fresh
+ * process before this was thrown. The client is usable again; the request
+ * itself produced nothing and can simply be retried.
+ */
+public class EngineRestartedException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public EngineRestartedException(String message) {
+        super(message);
+    }
+}
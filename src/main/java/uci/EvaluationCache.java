@@ -0,0 +1,238 @@
+package uci;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded LRU cache of finished searches, consulted by
+ * {@link StockfishClient#analyzeLines} before a position is sent to the
+ * engine. Entries are keyed by position, engine options and MultiPV count;
+ * a request is served from the cache when the stored search was at least as
+ * strong: a depth limit needs a result of that depth or deeper, a movetime or
+ * node limit needs an earlier search of the same kind in the same or a
+ * higher power-of-two class. Clock searches are classed by the time they
+ * actually took and served by a search at least as long as the engine would
+ * likely spend on the move. Ponder searches are never cached.
+ *
+ * <p>Memory is bounded by an estimate of the bytes held per result (mostly
+ * the PV strings); the least recently used entries go first. An optional
+ * {@link PersistentEvaluationCache} behind it is consulted on a miss and
+ * written through on every store, so results survive restarts.</p>
+ */
+public final class EvaluationCache {
+
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+    private static final int MOVE_BYTES = 64;
+
+    private final long budgetBytes;
+    private final PersistentEvaluationCache disk;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long usedBytes;
+    private long hits;
+    private long misses;
+    private long diskHits;
+
+    public EvaluationCache(long budgetBytes) {
+        this(budgetBytes, null);
+    }
+
+    public EvaluationCache(long budgetBytes, PersistentEvaluationCache disk) {
+        this.budgetBytes = Math.max(ENTRY_OVERHEAD_BYTES, budgetBytes);
+        this.disk = disk;
+    }
+
+    public static EvaluationCache withMegabytes(int megabytes) {
+        return withMegabytes(megabytes, null);
+    }
+
+    public static EvaluationCache withMegabytes(int megabytes, PersistentEvaluationCache disk) {
+        return new EvaluationCache(Math.max(1, megabytes) * 1024L * 1024L, disk);
+    }
+
+    /**
+     * True when results for {@code limits} may be stored and reused.
+     */
+    static boolean isCacheable(SearchLimits limits) {
+        return limits.usesClock() || limits.depth > 0 || limits.nodes > 0 || limits.moveTimeMillis > 0;
+    }
+
+    synchronized StockfishClient.AnalysisResult lookup(long positionKey, long optionsKey, int multiPv,
+                                                      SearchLimits limits) {
+        Key key = new Key(positionKey, optionsKey, multiPv);
+        Entry entry = entries.get(key);
+        if (entry != null && entry.satisfies(limits)) {
+            hits++;
+            return entry.result;
+        }
+        if (disk != null) {
+            PersistentEvaluationCache.Hit stored = disk.probe(
+                PersistentEvaluationCache.slotKey(positionKey, optionsKey, multiPv), limits);
+            if (stored != null) {
+                hits++;
+                diskHits++;
+                // the classes the search ran under, which may be stronger than this request's
+                remember(key, new Entry(stored.result, stored.moveTimeClass, stored.nodesClass));
+                return stored.result;
+            }
+        }
+        misses++;
+        return null;
+    }
+
+    synchronized void store(long positionKey, long optionsKey, int multiPv, SearchLimits limits,
+                            StockfishClient.AnalysisResult result) {
+        if (result == null || result.bestMove == null || result.finalInfo == null) {
+            return;
+        }
+        Key key = new Key(positionKey, optionsKey, multiPv);
+        Entry entry = new Entry(limits, result);
+        if (disk != null) {
+            disk.store(PersistentEvaluationCache.slotKey(positionKey, optionsKey, multiPv),
+                entry.moveTimeClass, entry.nodesClass, result);
+        }
+        remember(key, entry);
+    }
+
+    private void remember(Key key, Entry entry) {
+        Entry previous = entries.get(key);
+        if (previous != null && previous.result.depth() > entry.result.depth()) {
+            return;
+        }
+        if (previous != null) {
+            usedBytes -= previous.bytes;
+        }
+        entries.put(key, entry);
+        usedBytes += entry.bytes;
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (usedBytes > budgetBytes && eldest.hasNext()) {
+            Entry evicted = eldest.next();
+            if (evicted == entry) {
+                break;
+            }
+            usedBytes -= evicted.bytes;
+            eldest.remove();
+        }
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Hits that were served from the persistent cache file.
+     */
+    public synchronized long getDiskHits() {
+        return diskHits;
+    }
+
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long estimatedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        usedBytes = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("%d entries, %d KB, %d hits (%d from disk) / %d misses",
+            entries.size(), usedBytes / 1024, hits, diskHits, misses);
+    }
+
+    private static final class Key {
+        final long position;
+        final long options;
+        final int multiPv;
+
+        Key(long position, long options, int multiPv) {
+            this.position = position;
+            this.options = options;
+            this.multiPv = multiPv;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return position == other.position && options == other.options && multiPv == other.multiPv;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(position, options, multiPv);
+        }
+    }
+
+    /**
+     * Whether a search that reached {@code depth} under the given limit
+     * classes is at least as strong as one run with {@code limits}.
+     */
+    static boolean satisfies(SearchLimits limits, int depth, int moveTimeClass, int nodesClass) {
+        if (limits.depth > 0 && depth >= limits.depth) {
+            return true;
+        }
+        long moveTime = limits.expectedMoveTimeMillis();
+        if (moveTime > 0) {
+            return moveTimeClass >= limitClass(moveTime);
+        }
+        if (limits.nodes > 0) {
+            return nodesClass >= limitClass(limits.nodes);
+        }
+        return false;
+    }
+
+    /**
+     * Power-of-two bucket, so 800 ms and 1000 ms searches share a class
+     * but a 2 s search counts as stronger; 0 means no such limit.
+     */
+    static int limitClass(long value) {
+        return value <= 0 ? 0 : 64 - Long.numberOfLeadingZeros(value);
+    }
+
+    private static final class Entry {
+        final int moveTimeClass;
+        final int nodesClass;
+        final StockfishClient.AnalysisResult result;
+        final long bytes;
+
+        Entry(SearchLimits limits, StockfishClient.AnalysisResult result) {
+            this(result,
+                limitClass(limits.usesClock() && limits.moveTimeMillis <= 0
+                    ? result.finalInfo.timeMillis : limits.moveTimeMillis),
+                limitClass(limits.nodes));
+        }
+
+        Entry(StockfishClient.AnalysisResult result, int moveTimeClass, int nodesClass) {
+            this.moveTimeClass = moveTimeClass;
+            this.nodesClass = nodesClass;
+            this.result = result;
+            long moves = result.principalVariation.size();
+            for (StockfishClient.PvLine line : result.lines) {
+                moves += line.principalVariation.size();
+            }
+            this.bytes = ENTRY_OVERHEAD_BYTES * (1L + result.lines.size()) + moves * MOVE_BYTES;
+        }
+
+        boolean satisfies(SearchLimits limits) {
+            return EvaluationCache.satisfies(limits, result.depth(), moveTimeClass, nodesClass);
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package uci;
+
+import java.io.BufferedReader;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Stand-in UCI engine for tests and benchmarks that must run without a
+ * Stockfish binary. It either replays the searches of a recorded transcript
+ * (see {@link StockfishClient#recordTranscript(Path)}) in order, or answers
+ * every {@code go} with the next move of a fixed list.
+ *
+ * <pre>
+ * java -cp target/classes uci.FakeUciEngine --transcript game.txt --latency-ms 200
+ * java -cp target/classes uci.FakeUciEngine --bestmoves e2e4:35,g1f3
+ * </pre>
+ *
+ * <p>A scripted move may carry the centipawn score to report for it, from
+ * the side to move as a real engine would; it defaults to 0.</p>
+ *
+ * <p>{@code --latency-ms} spreads each search's info lines over that many
+ * milliseconds; {@code stop} cuts the wait short as a real engine would.
+ * A {@code go infinite} search holds its bestmove back until {@code stop}.
+ * {@code --hang} answers the first info line of a search and then never
+ * reports a bestmove, for exercising the client's deadlines. The Swing app
+ * runs against it with {@code -Dstockfish.fake="--transcript game.txt"}.</p>
+ */
+public final class FakeUciEngine {
+
+    private final List<String> uciResponse;
+    private final List<List<String>> searches;
+    private final long latencyMillis;
+    private final boolean hang;
+    private final PrintStream out;
+    private final Object signal = new Object();
+    private int nextSearch;
+    private Thread searchThread;
+    private boolean stopRequested;
+    private boolean ponderHit;
+
+    FakeUciEngine(List<String> uciResponse, List<List<String>> searches, long latencyMillis, boolean hang,
+                  PrintStream out) {
+        if (searches.isEmpty()) {
+            throw new IllegalArgumentException("Nothing to answer 'go' with");
+        }
+        this.uciResponse = uciResponse;
+        this.searches = searches;
+        this.latencyMillis = Math.max(0, latencyMillis);
+        this.hang = hang;
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        List<String> uciResponse = List.of();
+        List<List<String>> searches = List.of();
+        long latencyMillis = 0;
+        boolean hang = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--transcript": {
+                    List<String> lines = Files.readAllLines(Path.of(args[++i]), StandardCharsets.US_ASCII);
+                    uciResponse = uciResponse(lines);
+                    searches = searches(lines);
+                    break;
+                }
+                case "--bestmoves":
+                    searches = scripted(Arrays.asList(args[++i].split(",")));
+                    break;
+                case "--latency-ms":
+                    latencyMillis = Long.parseLong(args[++i]);
+                    break;
+                case "--hang":
+                    hang = true;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        if (searches.isEmpty()) {
+            searches = scripted(List.of("e2e4"));
+        }
+        PrintStream out = new PrintStream(new FileOutputStream(FileDescriptor.out), false, StandardCharsets.US_ASCII);
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.US_ASCII));
+        new FakeUciEngine(uciResponse, searches, latencyMillis, hang, out).run(in);
+        System.exit(0);
+    }
+
+    /**
+     * Command line that launches this class in a fresh JVM on the current
+     * class path, for {@link StockfishClient#StockfishClient(List)}.
+     */
+    public static List<String> command(String... args) {
+        List<String> command = new ArrayList<>();
+        command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(FakeUciEngine.class.getName());
+        command.addAll(Arrays.asList(args));
+        return command;
+    }
+
+    void run(BufferedReader in) throws IOException, InterruptedException {
+        String line;
+        while ((line = in.readLine()) != null) {
+            String command = line.trim();
+            if (command.equals("uci")) {
+                for (String response : uciResponse) {
+                    if (!response.equals("uciok")) {
+                        emit(response);
+                    }
+                }
+                if (uciResponse.isEmpty()) {
+                    emit("id name FakeUciEngine");
+                }
+                emit("uciok");
+            } else if (command.equals("isready")) {
+                emit("readyok");
+            } else if (command.startsWith("go")) {
+                startSearch(searches.get(nextSearch++ % searches.size()), command.contains(" ponder"),
+                    command.contains(" infinite"));
+            } else if (command.equals("stop")) {
+                synchronized (signal) {
+                    stopRequested = true;
+                    signal.notifyAll();
+                }
+            } else if (command.equals("ponderhit")) {
+                synchronized (signal) {
+                    ponderHit = true;
+                    signal.notifyAll();
+                }
+            } else if (command.equals("quit")) {
+                break;
+            }
+        }
+        if (searchThread != null) {
+            synchronized (signal) {
+                stopRequested = true;
+                signal.notifyAll();
+            }
+        }
+    }
+
+    private void startSearch(List<String> lines, boolean ponder, boolean infinite) throws InterruptedException {
+        if (searchThread != null) {
+            searchThread.join();
+        }
+        synchronized (signal) {
+            stopRequested = false;
+            ponderHit = !ponder;
+        }
+        searchThread = new Thread(() -> search(lines, infinite), "fake-search");
+        searchThread.setDaemon(true);
+        searchThread.start();
+    }
+
+    private void search(List<String> lines, boolean infinite) {
+        int infoCount = Math.max(1, lines.size() - 1);
+        long pause = latencyMillis / infoCount;
+        try {
+            synchronized (signal) {
+                while (!ponderHit && !stopRequested) {
+                    signal.wait();
+                }
+            }
+            for (int i = 0; i < lines.size(); i++) {
+                String line = lines.get(i);
+                if (line.startsWith("bestmove")) {
+                    synchronized (signal) {
+                        while (infinite && !stopRequested) {
+                            signal.wait();
+                        }
+                    }
+                    emit(line);
+                    return;
+                }
+                synchronized (signal) {
+                    if (stopRequested) {
+                        continue;
+                    }
+                }
+                emit(line);
+                if (hang) {
+                    synchronized (signal) {
+                        while (true) {
+                            signal.wait();
+                        }
+                    }
+                }
+                if (pause > 0) {
+                    synchronized (signal) {
+                        long until = System.currentTimeMillis() + pause;
+                        long left = pause;
+                        while (!stopRequested && left > 0) {
+                            signal.wait(left);
+                            left = until - System.currentTimeMillis();
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void emit(String line) {
+        synchronized (out) {
+            out.print(line);
+            out.print('\n');
+            out.flush();
+        }
+    }
+
+    /**
+     * Engine output between {@code > uci} and the next command.
+     */
+    static List<String> uciResponse(List<String> transcript) {
+        List<String> response = new ArrayList<>();
+        boolean inUci = false;
+        for (String line : transcript) {
+            if (line.startsWith(">")) {
+                inUci = body(line).equals("uci");
+            } else if (inUci && line.startsWith("<")) {
+                response.add(body(line));
+            }
+        }
+        return response;
+    }
+
+    /**
+     * Engine output of each search, from its {@code go} up to and including
+     * {@code bestmove}. Commands sent mid-search ({@code stop},
+     * {@code ponderhit}) do not split a search.
+     */
+    static List<List<String>> searches(List<String> transcript) {
+        List<List<String>> searches = new ArrayList<>();
+        List<String> current = null;
+        for (String line : transcript) {
+            if (line.startsWith(">")) {
+                if (body(line).startsWith("go")) {
+                    current = new ArrayList<>();
+                }
+            } else if (current != null && line.startsWith("<")) {
+                String output = body(line);
+                current.add(output);
+                if (output.startsWith("bestmove")) {
+                    searches.add(current);
+                    current = null;
+                }
+            }
+        }
+        return searches;
+    }
+
+    static List<List<String>> scripted(List<String> moves) {
+        List<List<String>> searches = new ArrayList<>();
+        for (String entry : moves) {
+            String[] parts = entry.trim().split(":", 2);
+            String move = parts[0];
+            int score = parts.length > 1 ? Integer.parseInt(parts[1]) : 0;
+            searches.add(List.of(
+                "info depth 1 seldepth 1 multipv 1 score cp " + score + " nodes 1 nps 1 time 0 pv " + move,
+                "bestmove " + move));
+        }
+        return searches;
+    }
+
+    private static String body(String line) {
+        return line.length() > 2 ? line.substring(2) : "";
+    }
+}
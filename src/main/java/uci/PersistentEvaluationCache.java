@@ -0,0 +1,390 @@
+package uci;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Fixed-size, memory-mapped open-addressing table of finished searches that
+ * outlives the JVM. Each 128-byte slot packs the depth, the limit classes the
+ * search ran under, score, mate, the engine's {@code bestmove}, up to 12 PV
+ * moves and the first move and score of up to three alternative lines.
+ *
+ * <p>The file never grows: a full probe window replaces its shallowest
+ * entry. Slots are written key-last behind a CRC32, so a slot torn by a crash
+ * just reads back as empty. A header with magic, version and slot count
+ * guards the layout; a file that does not match is reinitialised.</p>
+ */
+public final class PersistentEvaluationCache implements Closeable {
+
+    private static final long MAGIC = 0x4348455353455643L; // "CHESSEVC"
+    private static final int VERSION = 3;
+    private static final int HEADER_BYTES = 64;
+    private static final int SLOT_BYTES = 128;
+    private static final int PROBES = 16;
+    private static final int MAX_PV = 12;
+    private static final int MAX_ALTERNATIVES = 3;
+    private static final int NO_MATE = Integer.MIN_VALUE;
+    private static final int FORCE_EVERY = 256;
+
+    // slot layout
+    private static final int KEY = 0;
+    private static final int CHECKSUM = 8;
+    private static final int DEPTH = 12;
+    private static final int MOVE_TIME_CLASS = 14;
+    private static final int NODES_CLASS = 15;
+    private static final int PV_LENGTH = 16;
+    private static final int ALTERNATIVES = 17;
+    private static final int BEST_MOVE = 18;
+    private static final int SCORE = 20;
+    private static final int MATE = 24;
+    private static final int PV = 28;
+    private static final int ALTERNATIVE_LINES = PV + 2 * MAX_PV;
+    private static final int ALTERNATIVE_BYTES = 12;
+
+    private static PersistentEvaluationCache shared;
+    private static boolean sharedOpened;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final int slotCount;
+    private final CRC32 crc = new CRC32();
+    private int unforcedWrites;
+
+    private PersistentEvaluationCache(Path file, FileChannel channel, MappedByteBuffer map, int slotCount) {
+        this.file = file;
+        this.channel = channel;
+        this.map = map;
+        this.slotCount = slotCount;
+    }
+
+    /**
+     * Opens (or creates) a cache file of roughly {@code megabytes}.
+     */
+    public static PersistentEvaluationCache open(Path file, int megabytes) throws IOException {
+        long wanted = Math.max(1, Math.min(1024, megabytes)) * 1024L * 1024L;
+        int slotCount = (int) ((wanted - HEADER_BYTES) / SLOT_BYTES);
+        long size = HEADER_BYTES + (long) slotCount * SLOT_BYTES;
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE);
+        try {
+            boolean fresh = channel.size() != size;
+            if (fresh) {
+                channel.truncate(0);
+            }
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            map.order(ByteOrder.LITTLE_ENDIAN);
+            if (fresh || map.getLong(0) != MAGIC || map.getInt(8) != VERSION || map.getInt(12) != slotCount) {
+                for (long i = 0; i < size; i += 8) {
+                    map.putLong((int) i, 0L);
+                }
+                map.putLong(0, MAGIC);
+                map.putInt(8, VERSION);
+                map.putInt(12, slotCount);
+                map.putInt(16, SLOT_BYTES);
+                map.force();
+            }
+            return new PersistentEvaluationCache(file, channel, map, slotCount);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * The process-wide cache file, {@code -Dchess.analysisCache=<file>} or
+     * {@code ~/.chess/analysis-cache.bin} (64 MB), opened on first use and
+     * closed at JVM exit. Returns null if it cannot be opened; callers then
+     * run with the in-memory cache alone.
+     */
+    public static synchronized PersistentEvaluationCache shared() {
+        if (!sharedOpened) {
+            sharedOpened = true;
+            String configured = System.getProperty("chess.analysisCache");
+            Path path = configured != null
+                ? Paths.get(configured)
+                : Paths.get(System.getProperty("user.home"), ".chess", "analysis-cache.bin");
+            try {
+                shared = open(path, 64);
+                PersistentEvaluationCache cache = shared;
+                Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                    try {
+                        cache.close();
+                    } catch (IOException ignored) {
+                    }
+                }, "analysis-cache-close"));
+            } catch (IOException e) {
+                System.err.println("Analysis cache disabled, cannot open " + path + ": " + e.getMessage());
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Stable across runs, unlike {@link Object#hashCode()}: the Zobrist key
+     * from {@link UciPosition#positionKey()} mixed with the options hash and
+     * MultiPV count; never 0 (empty slot).
+     */
+    static long slotKey(long positionKey, long optionsKey, int multiPv) {
+        long h = positionKey * 0x9E3779B97F4A7C15L;
+        h ^= optionsKey + 0x632BE59BD9B4E019L + (h << 6) + (h >>> 2);
+        h ^= multiPv * 0xC2B2AE3D27D4EB4FL;
+        h ^= h >>> 31;
+        return h == 0 ? 1 : h;
+    }
+
+    /**
+     * A stored search with the limit classes it ran under.
+     */
+    static final class Hit {
+        final StockfishClient.AnalysisResult result;
+        final int moveTimeClass;
+        final int nodesClass;
+
+        Hit(StockfishClient.AnalysisResult result, int moveTimeClass, int nodesClass) {
+            this.result = result;
+            this.moveTimeClass = moveTimeClass;
+            this.nodesClass = nodesClass;
+        }
+    }
+
+    synchronized StockfishClient.AnalysisResult lookup(long key, SearchLimits limits) {
+        Hit hit = probe(key, limits);
+        return hit == null ? null : hit.result;
+    }
+
+    synchronized Hit probe(long key, SearchLimits limits) {
+        int slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+        int base = offset(slot);
+        int depth = map.getShort(base + DEPTH);
+        int moveTimeClass = map.get(base + MOVE_TIME_CLASS);
+        int nodesClass = map.get(base + NODES_CLASS);
+        if (!EvaluationCache.satisfies(limits, depth, moveTimeClass, nodesClass)) {
+            return null;
+        }
+        return new Hit(decode(base), moveTimeClass, nodesClass);
+    }
+
+    synchronized void store(long key, int moveTimeClass, int nodesClass, StockfishClient.AnalysisResult result) {
+        if (result.bestMove == null || result.finalInfo == null || packMove(result.bestMove) == 0) {
+            return;
+        }
+        int home = home(key);
+        int target = -1;
+        int shallowest = -1;
+        int shallowestDepth = Integer.MAX_VALUE;
+        for (int i = 0; i < PROBES; i++) {
+            int slot = (home + i) % slotCount;
+            int base = offset(slot);
+            long stored = map.getLong(base + KEY);
+            if (stored == key) {
+                if (map.getShort(base + DEPTH) > result.depth() && valid(base)) {
+                    return;
+                }
+                target = slot;
+                break;
+            }
+            if (stored == 0 || !valid(base)) {
+                if (target < 0) {
+                    target = slot;
+                }
+                continue;
+            }
+            int depth = map.getShort(base + DEPTH);
+            if (depth < shallowestDepth) {
+                shallowestDepth = depth;
+                shallowest = slot;
+            }
+        }
+        if (target < 0) {
+            target = shallowest;
+        }
+        write(offset(target), key, moveTimeClass, nodesClass, result);
+        if (++unforcedWrites >= FORCE_EVERY) {
+            map.force();
+            unforcedWrites = 0;
+        }
+    }
+
+    public synchronized int size() {
+        int used = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (map.getLong(offset(slot) + KEY) != 0) {
+                used++;
+            }
+        }
+        return used;
+    }
+
+    public int capacity() {
+        return slotCount;
+    }
+
+    public Path file() {
+        return file;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel.isOpen()) {
+            map.force();
+            channel.close();
+        }
+    }
+
+    private int find(long key) {
+        int home = home(key);
+        for (int i = 0; i < PROBES; i++) {
+            int base = offset((home + i) % slotCount);
+            long stored = map.getLong(base + KEY);
+            if (stored == key) {
+                return valid(base) ? (home + i) % slotCount : -1;
+            }
+            if (stored == 0) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private void write(int base, long key, int moveTimeClass, int nodesClass, StockfishClient.AnalysisResult result) {
+        map.putLong(base + KEY, 0L);
+        map.putShort(base + DEPTH, (short) Math.min(Short.MAX_VALUE, result.depth()));
+        map.put(base + MOVE_TIME_CLASS, (byte) moveTimeClass);
+        map.put(base + NODES_CLASS, (byte) nodesClass);
+        map.putShort(base + BEST_MOVE, packMove(result.bestMove));
+        map.putInt(base + SCORE, result.finalInfo.scoreCp);
+        map.putInt(base + MATE, result.finalInfo.mate == null ? NO_MATE : result.finalInfo.mate);
+
+        List<String> pv = result.principalVariation.isEmpty() ? List.of(result.bestMove) : result.principalVariation;
+        int pvLength = 0;
+        for (String move : pv) {
+            short packed = packMove(move);
+            if (pvLength == MAX_PV || packed == 0) {
+                break;
+            }
+            map.putShort(base + PV + 2 * pvLength++, packed);
+        }
+        for (int i = pvLength; i < MAX_PV; i++) {
+            map.putShort(base + PV + 2 * i, (short) 0);
+        }
+        map.put(base + PV_LENGTH, (byte) pvLength);
+
+        int alternatives = 0;
+        for (StockfishClient.PvLine line : result.lines) {
+            if (line.rank < 2 || alternatives == MAX_ALTERNATIVES || line.move == null) {
+                continue;
+            }
+            int at = base + ALTERNATIVE_LINES + ALTERNATIVE_BYTES * alternatives++;
+            map.putShort(at, packMove(line.move));
+            map.putShort(at + 2, (short) line.depth);
+            map.putInt(at + 4, line.scoreCp);
+            map.putInt(at + 8, line.mate == null ? NO_MATE : line.mate);
+        }
+        map.put(base + ALTERNATIVES, (byte) alternatives);
+
+        map.putInt(base + CHECKSUM, checksum(base, key));
+        map.putLong(base + KEY, key);
+    }
+
+    private StockfishClient.AnalysisResult decode(int base) {
+        int depth = map.getShort(base + DEPTH);
+        int score = map.getInt(base + SCORE);
+        int rawMate = map.getInt(base + MATE);
+        Integer mate = rawMate == NO_MATE ? null : rawMate;
+        int pvLength = map.get(base + PV_LENGTH);
+        List<String> pv = new ArrayList<>(pvLength);
+        for (int i = 0; i < pvLength; i++) {
+            pv.add(unpackMove(map.getShort(base + PV + 2 * i)));
+        }
+        SearchInfo info = new SearchInfo(depth, depth, 1, score, mate, false, false, 0, 0, 0, 0, pv);
+        List<StockfishClient.PvLine> lines = new ArrayList<>();
+        lines.add(StockfishClient.PvLine.from(info));
+        int alternatives = map.get(base + ALTERNATIVES);
+        for (int i = 0; i < alternatives; i++) {
+            int at = base + ALTERNATIVE_LINES + ALTERNATIVE_BYTES * i;
+            String move = unpackMove(map.getShort(at));
+            int altMate = map.getInt(at + 8);
+            lines.add(new StockfishClient.PvLine(i + 2, move, map.getInt(at + 4),
+                altMate == NO_MATE ? null : altMate, map.getShort(at + 2), List.of(move)));
+        }
+        // bestmove can differ from the PV's first move, e.g. after a stop
+        String bestMove = unpackMove(map.getShort(base + BEST_MOVE));
+        String ponder = pv.size() > 1 && pv.get(0).equals(bestMove) ? pv.get(1) : null;
+        return new StockfishClient.AnalysisResult(bestMove, info.effectiveScoreCp(), mate, pv, info, ponder, lines);
+    }
+
+    private boolean valid(int base) {
+        return map.getInt(base + CHECKSUM) == checksum(base, map.getLong(base + KEY));
+    }
+
+    private int checksum(int base, long key) {
+        crc.reset();
+        ByteBuffer payload = map.duplicate();
+        payload.position(base + DEPTH).limit(base + SLOT_BYTES);
+        crc.update(payload);
+        return (int) crc.getValue() ^ (int) key ^ (int) (key >>> 32);
+    }
+
+    private int home(long key) {
+        return (int) Long.remainderUnsigned(key, slotCount);
+    }
+
+    private static int offset(int slot) {
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    /**
+     * Packs a UCI move into 15 bits: from square, to square, promotion
+     * piece. Returns 0 for anything that is not a move.
+     */
+    public static short packMove(String move) {
+        if (move == null || move.length() < 4) {
+            return 0;
+        }
+        int from = square(move.charAt(0), move.charAt(1));
+        int to = square(move.charAt(2), move.charAt(3));
+        if (from < 0 || to < 0 || from == to) {
+            return 0;
+        }
+        int promotion = move.length() > 4 ? "nbrq".indexOf(move.charAt(4)) + 1 : 0;
+        return (short) (from | to << 6 | promotion << 12);
+    }
+
+    public static String unpackMove(short packed) {
+        int from = packed & 63;
+        int to = (packed >>> 6) & 63;
+        int promotion = (packed >>> 12) & 7;
+        StringBuilder sb = new StringBuilder(5)
+            .append((char) ('a' + (from & 7))).append((char) ('1' + (from >>> 3)))
+            .append((char) ('a' + (to & 7))).append((char) ('1' + (to >>> 3)));
+        if (promotion > 0) {
+            sb.append("nbrq".charAt(promotion - 1));
+        }
+        return sb.toString();
+    }
+
+    private static int square(char file, char rank) {
+        if (file < 'a' || file > 'h' || rank < '1' || rank > '8') {
+            return -1;
+        }
+        return (rank - '1') * 8 + (file - 'a');
+    }
+}
@@ -0,0 +1,146 @@
+package uci;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * One parsed UCI {@code info} line carrying a score, e.g.
+ * {@code info depth 18 seldepth 24 multipv 1 score cp 31 nodes 912345 nps 1200000 hashfull 42 time 760 pv e2e4 e7e5}.
+ */
+public final class SearchInfo {
+
+    public final int depth;
+    public final int selDepth;
+    public final int multiPv;
+    public final int scoreCp;
+    public final Integer mate;
+    public final boolean lowerBound;
+    public final boolean upperBound;
+    public final long nodes;
+    public final long nps;
+    public final int hashfull;
+    public final long timeMillis;
+    public final List<String> principalVariation;
+
+    public SearchInfo(int depth, int selDepth, int multiPv, int scoreCp, Integer mate,
+                      boolean lowerBound, boolean upperBound, long nodes, long nps,
+                      int hashfull, long timeMillis, List<String> principalVariation) {
+        this.depth = depth;
+        this.selDepth = selDepth;
+        this.multiPv = multiPv;
+        this.scoreCp = scoreCp;
+        this.mate = mate;
+        this.lowerBound = lowerBound;
+        this.upperBound = upperBound;
+        this.nodes = nodes;
+        this.nps = nps;
+        this.hashfull = hashfull;
+        this.timeMillis = timeMillis;
+        this.principalVariation = principalVariation == null ? List.of() : List.copyOf(principalVariation);
+    }
+
+    public boolean isBound() {
+        return lowerBound || upperBound;
+    }
+
+    /**
+     * Score in centipawns from the side to move, with mates folded to +/-10000
+     * the same way {@link StockfishClient.AnalysisResult#scoreCp} does.
+     */
+    public int effectiveScoreCp() {
+        if (mate != null) {
+            return mate > 0 ? 10000 : -10000;
+        }
+        return scoreCp;
+    }
+
+    /**
+     * Parses an engine {@code info} line. Lines without a score (currmove
+     * updates, {@code info string}) return {@code null}.
+     */
+    public static SearchInfo parse(String line) {
+        if (line == null || !line.startsWith("info ")) {
+            return null;
+        }
+        String[] tokens = line.split("\\s+");
+        int depth = 0;
+        int selDepth = 0;
+        int multiPv = 1;
+        int scoreCp = 0;
+        Integer mate = null;
+        boolean hasScore = false;
+        boolean lowerBound = false;
+        boolean upperBound = false;
+        long nodes = 0;
+        long nps = 0;
+        int hashfull = 0;
+        long time = 0;
+        List<String> pv = List.of();
+
+        try {
+            for (int i = 1; i < tokens.length; i++) {
+                switch (tokens[i]) {
+                    case "depth":
+                        depth = Integer.parseInt(tokens[++i]);
+                        break;
+                    case "seldepth":
+                        selDepth = Integer.parseInt(tokens[++i]);
+                        break;
+                    case "multipv":
+                        multiPv = Integer.parseInt(tokens[++i]);
+                        break;
+                    case "score":
+                        String kind = tokens[++i];
+                        int value = Integer.parseInt(tokens[++i]);
+                        if ("mate".equals(kind)) {
+                            mate = value;
+                        } else {
+                            scoreCp = value;
+                        }
+                        hasScore = true;
+                        break;
+                    case "lowerbound":
+                        lowerBound = true;
+                        break;
+                    case "upperbound":
+                        upperBound = true;
+                        break;
+                    case "nodes":
+                        nodes = Long.parseLong(tokens[++i]);
+                        break;
+                    case "nps":
+                        nps = Long.parseLong(tokens[++i]);
+                        break;
+                    case "hashfull":
+                        hashfull = Integer.parseInt(tokens[++i]);
+                        break;
+                    case "time":
+                        time = Long.parseLong(tokens[++i]);
+                        break;
+                    case "pv":
+                        List<String> moves = new ArrayList<>(tokens.length - i);
+                        for (int j = i + 1; j < tokens.length; j++) {
+                            if (tokens[j].length() >= 4) {
+                                moves.add(tokens[j]);
+                            }
+                        }
+                        pv = moves;
+                        i = tokens.length;
+                        break;
+                    case "string":
+                        return null;
+                    default:
+                        break;
+                }
+            }
+        } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+            return null;
+        }
+
+        if (!hasScore) {
+            return null;
+        }
+        return new SearchInfo(depth, selDepth, multiPv, scoreCp, mate, lowerBound, upperBound,
+            nodes, nps, hashfull, time, pv);
+    }
+}
@@ -0,0 +1,116 @@
+package uci;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * Thins out the info stream for a downstream listener: an update is forwarded
+ * when a line reaches a new depth or when the time slice has elapsed since the
+ * last forwarded update. Depth and suppressed lines are tracked per
+ * {@code multipv} rank; if anything was suppressed, the final line of each
+ * rank is flushed when the search completes, so subscribers always see the
+ * final numbers.
+ */
+public final class SearchInfoCoalescer implements SearchInfoListener {
+
+    private static final int MAX_TRACKED_LINES = 64;
+
+    private final SearchInfoListener delegate;
+    private final long sliceNanos;
+    private final int[] lastDepth = new int[MAX_TRACKED_LINES + 1];
+    private long lastPublishNanos;
+    /** Per rank, the last line that was held back, until it is published. */
+    private final SearchInfo[] pending = new SearchInfo[MAX_TRACKED_LINES + 1];
+    /** Per rank, whether a line was skipped unparsed since the last publish. */
+    private final boolean[] suppressedSincePublish = new boolean[MAX_TRACKED_LINES + 1];
+
+    public SearchInfoCoalescer(SearchInfoListener delegate, Duration timeSlice) {
+        this.delegate = delegate;
+        this.sliceNanos = Math.max(0, timeSlice.toNanos());
+        reset();
+    }
+
+    /**
+     * Returns whether a line with the given depth would be forwarded right now.
+     * Lets callers skip building the {@link SearchInfo} for suppressed lines.
+     */
+    public boolean wouldPublish(int multiPv, int depth, long nowNanos) {
+        return depth > lastDepth[slot(multiPv)] || nowNanos - lastPublishNanos >= sliceNanos;
+    }
+
+    @Override
+    public boolean wantsInfo(int multiPv, int depth, long nowNanos) {
+        if (wouldPublish(multiPv, depth, nowNanos)) {
+            return true;
+        }
+        suppressedSincePublish[slot(multiPv)] = true;
+        return false;
+    }
+
+    @Override
+    public void onInfo(SearchInfo info) {
+        long now = System.nanoTime();
+        if (wouldPublish(info.multiPv, info.depth, now)) {
+            publish(info, now);
+        } else {
+            pending[slot(info.multiPv)] = info;
+        }
+    }
+
+    @Override
+    public void onSearchComplete(StockfishClient.AnalysisResult result) {
+        SearchInfo finalInfo = result == null ? null : result.finalInfo;
+        for (int slot = 1; slot <= MAX_TRACKED_LINES; slot++) {
+            if (pending[slot] != null) {
+                publish(pending[slot], System.nanoTime());
+            } else if (suppressedSincePublish[slot]) {
+                SearchInfo last = finalLine(result, finalInfo, slot);
+                if (last != null) {
+                    publish(last, System.nanoTime());
+                }
+            }
+        }
+        delegate.onSearchComplete(result);
+        reset();
+    }
+
+    private void publish(SearchInfo info, long now) {
+        int slot = slot(info.multiPv);
+        lastDepth[slot] = Math.max(lastDepth[slot], info.depth);
+        lastPublishNanos = now;
+        pending[slot] = null;
+        suppressedSincePublish[slot] = false;
+        delegate.onInfo(info);
+    }
+
+    /**
+     * The final line of a rank whose last update was skipped unparsed: the
+     * full info for the main line, otherwise rebuilt from the result's lines.
+     */
+    private static SearchInfo finalLine(StockfishClient.AnalysisResult result, SearchInfo finalInfo, int slot) {
+        if (finalInfo != null && slot(finalInfo.multiPv) == slot) {
+            return finalInfo;
+        }
+        if (result == null) {
+            return null;
+        }
+        for (StockfishClient.PvLine line : result.lines) {
+            if (slot(line.rank) == slot) {
+                return new SearchInfo(line.depth, line.depth, line.rank, line.scoreCp, line.mate,
+                    false, false, 0, 0, 0, 0, line.principalVariation);
+            }
+        }
+        return null;
+    }
+
+    private static int slot(int multiPv) {
+        return Math.max(1, Math.min(MAX_TRACKED_LINES, multiPv));
+    }
+
+    private void reset() {
+        Arrays.fill(lastDepth, 0);
+        lastPublishNanos = System.nanoTime() - sliceNanos;
+        Arrays.fill(pending, null);
+        Arrays.fill(suppressedSincePublish, false);
+    }
+}
@@ -0,0 +1,27 @@
+package uci;
+
+/**
+ * Receives parsed {@code info} updates while a search is running. Callbacks run
+ * on the thread that drives the search, so implementations should hand work
+ * off (e.g. via {@code SwingUtilities.invokeLater}) rather than block.
+ */
+@FunctionalInterface
+public interface SearchInfoListener {
+
+    void onInfo(SearchInfo info);
+
+    /**
+     * Asked before a line is turned into a {@link SearchInfo}; returning false
+     * skips building it. Listeners that thin out updates override this so
+     * suppressed lines cost no allocation.
+     */
+    default boolean wantsInfo(int multiPv, int depth, long nowNanos) {
+        return true;
+    }
+
+    /**
+     * Called once after {@code bestmove} has been read.
+     */
+    default void onSearchComplete(StockfishClient.AnalysisResult result) {
+    }
+}
@@ -0,0 +1,148 @@
+package uci;
+
+import java.time.Duration;
+
+/**
+ * Limits for one UCI {@code go} command. Unset limits are zero; any
+ * combination may be set, in which case the engine stops at whichever limit
+ * it reaches first. An {@link #infinite()} search has no limit and runs
+ * until it is stopped.
+ */
+public final class SearchLimits {
+
+    public final int depth;
+    public final long nodes;
+    public final long moveTimeMillis;
+    public final long whiteTimeMillis;
+    public final long blackTimeMillis;
+    public final long whiteIncrementMillis;
+    public final long blackIncrementMillis;
+    public final int movesToGo;
+    public final boolean infinite;
+
+    private SearchLimits(int depth, long nodes, long moveTimeMillis,
+                         long whiteTimeMillis, long blackTimeMillis,
+                         long whiteIncrementMillis, long blackIncrementMillis, int movesToGo) {
+        this(depth, nodes, moveTimeMillis, whiteTimeMillis, blackTimeMillis, whiteIncrementMillis,
+            blackIncrementMillis, movesToGo, false);
+    }
+
+    private SearchLimits(int depth, long nodes, long moveTimeMillis,
+                         long whiteTimeMillis, long blackTimeMillis,
+                         long whiteIncrementMillis, long blackIncrementMillis, int movesToGo, boolean infinite) {
+        this.depth = Math.max(0, depth);
+        this.nodes = Math.max(0, nodes);
+        this.moveTimeMillis = Math.max(0, moveTimeMillis);
+        this.whiteTimeMillis = Math.max(0, whiteTimeMillis);
+        this.blackTimeMillis = Math.max(0, blackTimeMillis);
+        this.whiteIncrementMillis = Math.max(0, whiteIncrementMillis);
+        this.blackIncrementMillis = Math.max(0, blackIncrementMillis);
+        this.movesToGo = Math.max(0, movesToGo);
+        this.infinite = infinite;
+    }
+
+    public static SearchLimits moveTime(Duration thinkTime) {
+        return new SearchLimits(0, 0, Math.max(thinkTime.toMillis(), 1), 0, 0, 0, 0, 0);
+    }
+
+    public static SearchLimits depth(int depth) {
+        return new SearchLimits(Math.max(1, depth), 0, 0, 0, 0, 0, 0, 0);
+    }
+
+    public static SearchLimits nodes(long nodes) {
+        return new SearchLimits(0, Math.max(1, nodes), 0, 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * {@code go infinite}: searches until {@code stop}, reporting as it
+     * deepens, e.g. for a live evaluation. Never served from a cache.
+     */
+    public static SearchLimits infinite() {
+        return new SearchLimits(0, 0, 0, 0, 0, 0, 0, 0, true);
+    }
+
+    /**
+     * Lets the engine budget its own time from the remaining clocks, as in a
+     * real game. {@code movesToGo} of zero means sudden death.
+     */
+    public static SearchLimits clock(long whiteTimeMillis, long blackTimeMillis,
+                                     long whiteIncrementMillis, long blackIncrementMillis, int movesToGo) {
+        return new SearchLimits(0, 0, 0,
+            Math.max(1, whiteTimeMillis), Math.max(1, blackTimeMillis),
+            whiteIncrementMillis, blackIncrementMillis, movesToGo);
+    }
+
+    public boolean usesClock() {
+        return whiteTimeMillis > 0 || blackTimeMillis > 0;
+    }
+
+    /**
+     * Longest the engine may legitimately think under these limits, in
+     * milliseconds, or 0 when only depth/nodes bound the search. With clocks
+     * the engine never spends more than the mover's remaining time, which we
+     * bound by the larger of the two clocks.
+     */
+    long timeBudgetMillis() {
+        if (moveTimeMillis > 0) {
+            return moveTimeMillis;
+        }
+        if (usesClock()) {
+            return Math.max(whiteTimeMillis, blackTimeMillis) + Math.max(whiteIncrementMillis, blackIncrementMillis);
+        }
+        return 0;
+    }
+
+    /**
+     * Rough time the engine will spend on this search, in milliseconds: the
+     * movetime, or for clock searches a conservative share of the shorter
+     * clock (engines rarely spend more than a thirtieth of it plus the
+     * increment); 0 when only depth/nodes apply.
+     */
+    long expectedMoveTimeMillis() {
+        if (moveTimeMillis > 0) {
+            return moveTimeMillis;
+        }
+        if (usesClock()) {
+            return Math.min(whiteTimeMillis, blackTimeMillis) / 30
+                + Math.min(whiteIncrementMillis, blackIncrementMillis);
+        }
+        return 0;
+    }
+
+    /**
+     * Builds the {@code go} command, e.g. {@code go ponder wtime 60000 btime 58000 winc 0 binc 0}.
+     */
+    public String toGoCommand(boolean ponder) {
+        StringBuilder sb = new StringBuilder(64).append("go");
+        if (ponder) {
+            sb.append(" ponder");
+        }
+        if (infinite) {
+            return sb.append(" infinite").toString();
+        }
+        if (usesClock()) {
+            sb.append(" wtime ").append(whiteTimeMillis);
+            sb.append(" btime ").append(blackTimeMillis);
+            sb.append(" winc ").append(whiteIncrementMillis);
+            sb.append(" binc ").append(blackIncrementMillis);
+            if (movesToGo > 0) {
+                sb.append(" movestogo ").append(movesToGo);
+            }
+        }
+        if (depth > 0) {
+            sb.append(" depth ").append(depth);
+        }
+        if (nodes > 0) {
+            sb.append(" nodes ").append(nodes);
+        }
+        if (moveTimeMillis > 0) {
+            sb.append(" movetime ").append(moveTimeMillis);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toGoCommand(false);
+    }
+}
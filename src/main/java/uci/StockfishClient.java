@@ -1,174 +1,793 @@
 package uci;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.Closeable;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * Minimal UCI bridge for communicating with a Stockfish binary.
+ *
+ * <p>Every request runs against a deadline. A search that overruns its limits
+ * is sent {@code stop}; if no {@code bestmove} follows within a short grace
+ * period the process is killed and replaced by a fresh one with the same
+ * options. The caller then gets the deepest line seen so far, or an
+ * {@link EngineRestartedException} when there was none.</p>
  */
-public class StockfishClient implements Closeable {
+public class StockfishClient implements AnalysisEngine {
 
     public static final class AnalysisResult {
         public final String bestMove;
         public final double scoreCp;
         public final Integer mate;
         public final List<String> principalVariation;
+        public final SearchInfo finalInfo;
+        public final String ponderMove;
+        public final List<PvLine> lines;
 
         public AnalysisResult(String bestMove, double scoreCp, Integer mate, List<String> principalVariation) {
+            this(bestMove, scoreCp, mate, principalVariation, null, null, null);
+        }
+
+        public AnalysisResult(String bestMove, double scoreCp, Integer mate, List<String> principalVariation,
+                              SearchInfo finalInfo, String ponderMove, List<PvLine> lines) {
             this.bestMove = bestMove;
             this.scoreCp = scoreCp;
             this.mate = mate;
             this.principalVariation = principalVariation == null ? List.of() : List.copyOf(principalVariation);
+            this.finalInfo = finalInfo;
+            this.ponderMove = ponderMove;
+            this.lines = lines == null ? List.of() : List.copyOf(lines);
+        }
+
+        public int depth() {
+            return finalInfo == null ? 0 : finalInfo.depth;
+        }
+
+        /**
+         * The reply the engine expects to {@link #bestMove}: the second move of
+         * the principal variation, or the {@code ponder} token of
+         * {@code bestmove} when the PV does not start with the played move.
+         */
+        public String predictedReply() {
+            if (principalVariation.size() >= 2 && principalVariation.get(0).equals(bestMove)) {
+                return principalVariation.get(1);
+            }
+            return ponderMove;
+        }
+
+        /**
+         * Score gap in centipawns between the best and second-best line, or
+         * {@code Integer.MAX_VALUE} when only one line was searched.
+         */
+        public int gapToSecondBest() {
+            if (lines.size() < 2) {
+                return Integer.MAX_VALUE;
+            }
+            return lines.get(0).scoreCp - lines.get(1).scoreCp;
         }
     }
 
-    private final Process process;
-    private final BufferedWriter writer;
-    private final BufferedReader reader;
+    /**
+     * One ranked line of a MultiPV search; rank 1 is the engine's best line.
+     * Scores are from the side to move, mates folded to +/-10000.
+     */
+    public static final class PvLine {
+        public final int rank;
+        public final String move;
+        public final int scoreCp;
+        public final Integer mate;
+        public final int depth;
+        public final List<String> principalVariation;
+
+        public PvLine(int rank, String move, int scoreCp, Integer mate, int depth, List<String> principalVariation) {
+            this.rank = rank;
+            this.move = move;
+            this.scoreCp = scoreCp;
+            this.mate = mate;
+            this.depth = depth;
+            this.principalVariation = principalVariation == null ? List.of() : List.copyOf(principalVariation);
+        }
+
+        static PvLine from(SearchInfo info) {
+            String move = info.principalVariation.isEmpty() ? null : info.principalVariation.get(0);
+            return new PvLine(info.multiPv, move, info.effectiveScoreCp(), info.mate, info.depth, info.principalVariation);
+        }
+    }
+
+    private static final byte[] BESTMOVE = "bestmove".getBytes(StandardCharsets.US_ASCII);
+
+    private static final long HANDSHAKE_TIMEOUT_MILLIS = 10_000;
+    private static final long SEARCH_MARGIN_MILLIS = 2_000;
+    private static final long STOP_GRACE_MILLIS = 1_000;
+
+    private static final ScheduledExecutorService WATCHDOG = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "uci-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<String> command;
+    private volatile Process process;
+    private BufferedWriter writer;
+    private UciLineReader reader;
+    private final UciInfoParser infoParser = new UciInfoParser();
+    private UciInfoParser.Snapshot[] lineSnapshots = new UciInfoParser.Snapshot[0];
+    private final Object writeLock = new Object();
+    private boolean ponderActive;
+    private String queuedPonderSignal;
+    private UciPosition lastSentPosition;
+    private long lastSentGeneration;
+    private int lastSentSize = -1;
+    private int multiPv = 1;
+    private final Map<String, String> options = new LinkedHashMap<>();
+    private SearchLimits ponderLimits;
+    private ScheduledFuture<?> deadline;
+    private long deadlineToken;
+    private boolean deadlineMissed;
+    private long searchTimeoutMillis = 300_000;
+    private int restartCount;
+    private volatile Consumer<String> restartListener;
+    private volatile TranscriptRecorder recorder;
+    private EvaluationCache evaluationCache;
+    private long optionsKey;
+    private boolean lastSearchRecovered;
 
     public StockfishClient(Path enginePath) throws IOException {
         if (enginePath == null || !Files.exists(enginePath)) {
             throw new IllegalArgumentException("Stockfish binary not found at " + enginePath);
         }
+        command = List.of(enginePath.toAbsolutePath().toString());
+        start();
+    }
+
+    /**
+     * Starts the engine from a full command line, e.g. one built by
+     * {@link FakeUciEngine#command(String...)}.
+     */
+    public StockfishClient(List<String> command) throws IOException {
+        if (command == null || command.isEmpty()) {
+            throw new IllegalArgumentException("Engine command is empty");
+        }
+        this.command = List.copyOf(command);
+        start();
+    }
 
-        process = new ProcessBuilder(enginePath.toAbsolutePath().toString())
+    private void start() throws IOException {
+        Process started = new ProcessBuilder(command)
             .redirectErrorStream(true)
             .start();
+        synchronized (writeLock) {
+            process = started;
+            writer = new BufferedWriter(new OutputStreamWriter(started.getOutputStream()));
+            ponderActive = false;
+            queuedPonderSignal = null;
+        }
+        reader = new UciLineReader(started.getInputStream(), 16 * 1024);
+        reader.setTap(recorder);
 
-        writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream()));
-        reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        try {
+            sendCommand("uci");
+            waitForKeyword("uciok", HANDSHAKE_TIMEOUT_MILLIS);
+            for (Map.Entry<String, String> option : options.entrySet()) {
+                sendCommand("setoption name " + option.getKey() + " value " + option.getValue());
+            }
+            sendCommand("isready");
+            waitForKeyword("readyok", HANDSHAKE_TIMEOUT_MILLIS);
+            sendCommand("ucinewgame");
+        } catch (IOException e) {
+            kill(started);
+            throw e;
+        }
+    }
 
-        initialize();
+    /**
+     * Kills the current process and starts a fresh one with the same options.
+     */
+    private void restart(String reason) throws IOException {
+        disarmDeadline();
+        kill(process);
+        try {
+            reader.close();
+        } catch (IOException ignored) {
+        }
+        lastSentPosition = null;
+        multiPv = 1;
+        restartCount++;
+        start();
+        Consumer<String> listener = restartListener;
+        if (listener != null) {
+            listener.accept(reason);
+        }
+    }
+
+    /**
+     * Called with a short reason each time the engine had to be restarted.
+     */
+    public void setRestartListener(Consumer<String> listener) {
+        restartListener = listener;
     }
 
-    private void initialize() throws IOException {
-        sendCommand("uci");
-        waitForKeyword("uciok");
-        sendCommand("isready");
-        waitForKeyword("readyok");
-        sendCommand("ucinewgame");
+    /**
+     * Records everything sent to and read from the engine into {@code file}
+     * from now on, replacing any earlier recording; {@code null} stops
+     * recording. The result can be replayed with {@link FakeUciEngine}.
+     */
+    public synchronized void recordTranscript(Path file) throws IOException {
+        TranscriptRecorder previous = recorder;
+        TranscriptRecorder next = file == null ? null : new TranscriptRecorder(file);
+        synchronized (writeLock) {
+            recorder = next;
+        }
+        reader.setTap(next);
+        if (previous != null) {
+            previous.close();
+        }
     }
 
+    /**
+     * Serves repeated fixed-limit searches from {@code cache} ({@code null}
+     * to disable). One cache may be shared by several clients; results are
+     * only reused between clients with the same options.
+     */
+    public synchronized void setEvaluationCache(EvaluationCache cache) {
+        evaluationCache = cache;
+    }
+
+    public synchronized EvaluationCache getEvaluationCache() {
+        return evaluationCache;
+    }
+
+    public synchronized int getRestartCount() {
+        return restartCount;
+    }
+
+    /**
+     * Deadline for searches bounded only by depth or nodes (default five
+     * minutes). Timed searches get their own time plus a small margin.
+     */
+    public synchronized void setSearchTimeout(Duration timeout) {
+        searchTimeoutMillis = Math.max(1, timeout.toMillis());
+    }
+
+    @Override
     public synchronized void newGame() throws IOException {
-        sendCommand("ucinewgame");
-        sendCommand("isready");
-        waitForKeyword("readyok");
+        lastSentPosition = null;
+        try {
+            sendCommand("ucinewgame");
+            sendCommand("isready");
+            waitForKeyword("readyok", HANDSHAKE_TIMEOUT_MILLIS);
+        } catch (IOException e) {
+            restart("engine unresponsive on ucinewgame: " + e.getMessage());
+        }
     }
 
     public synchronized String requestBestMove(String moves, Duration thinkTime) throws IOException {
-        AnalysisResult result = analyzePosition(moves, thinkTime);
+        return requestBestMove(UciPosition.fromMoveString(moves), thinkTime);
+    }
+
+    public synchronized String requestBestMove(UciPosition position, Duration thinkTime) throws IOException {
+        AnalysisResult result = analyzePosition(position, thinkTime, null);
         return result == null ? null : result.bestMove;
     }
 
     public synchronized AnalysisResult analyzePosition(String moves, Duration thinkTime) throws IOException {
-        String sanitizedMoves = moves == null ? "" : moves.trim();
-        if (sanitizedMoves.isEmpty()) {
-            sendCommand("position startpos");
+        return analyzePosition(UciPosition.fromMoveString(moves), thinkTime, null);
+    }
+
+    public synchronized AnalysisResult analyzePosition(String moves, Duration thinkTime,
+                                                       SearchInfoListener listener) throws IOException {
+        return analyzePosition(UciPosition.fromMoveString(moves), thinkTime, listener);
+    }
+
+    public synchronized AnalysisResult analyzePosition(UciPosition position, Duration thinkTime) throws IOException {
+        return analyzePosition(position, thinkTime, null);
+    }
+
+    /**
+     * Runs a fixed-time search and streams every scored {@code info} line to
+     * {@code listener} as it arrives. Wrap the listener in a
+     * {@link SearchInfoCoalescer} to receive at most one update per depth or
+     * time slice; call {@link #stop()} from the listener to end the search early.
+     */
+    public synchronized AnalysisResult analyzePosition(UciPosition position, Duration thinkTime,
+                                                       SearchInfoListener listener) throws IOException {
+        return analyzePosition(position, SearchLimits.moveTime(thinkTime), listener);
+    }
+
+    /**
+     * Searches {@code position} until any of {@code limits} is reached.
+     */
+    @Override
+    public synchronized AnalysisResult analyzePosition(UciPosition position, SearchLimits limits,
+                                                       SearchInfoListener listener) throws IOException {
+        return analyzeLines(position, limits, 1, listener);
+    }
+
+    /**
+     * Runs one MultiPV search and returns the top {@code lineCount} lines in
+     * {@link AnalysisResult#lines}, ranked best first. The best line also
+     * fills the usual bestMove/score/PV fields. With an
+     * {@link EvaluationCache} set, a cached search at least as strong as
+     * {@code limits} is returned without asking the engine.
+     */
+    @Override
+    public synchronized AnalysisResult analyzeLines(UciPosition position, SearchLimits limits, int lineCount,
+                                                    SearchInfoListener listener) throws IOException {
+        EvaluationCache cache = evaluationCache != null && EvaluationCache.isCacheable(limits) ? evaluationCache : null;
+        int lines = clampMultiPv(lineCount);
+        long positionKey = 0;
+        if (cache != null) {
+            try {
+                positionKey = position.positionKey();
+            } catch (IllegalArgumentException e) {
+                // the engine gets to reject the position itself
+                cache = null;
+            }
+        }
+        if (cache != null) {
+            AnalysisResult cached = cache.lookup(positionKey, optionsKey, lines, limits);
+            if (cached != null) {
+                if (listener != null) {
+                    if (cached.finalInfo != null) {
+                        listener.onInfo(cached.finalInfo);
+                    }
+                    listener.onSearchComplete(cached);
+                }
+                return cached;
+            }
+        }
+        AnalysisResult result = search(position, limits, lines, listener);
+        if (cache != null && !lastSearchRecovered) {
+            cache.store(positionKey, optionsKey, lines, limits, result);
+        }
+        return result;
+    }
+
+    private AnalysisResult search(UciPosition position, SearchLimits limits, int lineCount,
+                                  SearchInfoListener listener) throws IOException {
+        if (limits.infinite) {
+            return searchUntilSignalled(position, limits, lineCount, false, listener);
+        }
+        try {
+            setMultiPv(lineCount);
+            sendPosition(position);
+            armDeadline(searchDeadlineMillis(limits), true);
+            sendCommand(limits.toGoCommand(false));
+        } catch (IOException e) {
+            restart("engine unreachable: " + e.getMessage());
+            throw new EngineRestartedException("Engine restarted before the search could start");
+        }
+        return readSearchResult(listener);
+    }
+
+    /**
+     * Starts a {@code go ponder} search on {@code position}, which should
+     * already include the predicted opponent reply, and blocks until the
+     * engine reports {@code bestmove}. The search only ends after another
+     * thread calls {@link #ponderHit()} (the prediction came true, and the
+     * engine switches to a normal timed search) or {@link #stopPonder()} (it
+     * did not, and the result should be discarded). The search deadline only
+     * starts running once one of those signals has been sent.
+     */
+    public synchronized AnalysisResult ponder(UciPosition position, SearchLimits limits,
+                                              SearchInfoListener listener) throws IOException {
+        return searchUntilSignalled(position, limits, 1, true, listener);
+    }
+
+    /**
+     * A ponder or {@code go infinite} search: no deadline until another
+     * thread signals it, and a signal that arrives before the {@code go} is
+     * held back and sent right after it.
+     */
+    private AnalysisResult searchUntilSignalled(UciPosition position, SearchLimits limits, int lineCount,
+                                                boolean ponder, SearchInfoListener listener) throws IOException {
+        try {
+            setMultiPv(lineCount);
+            sendPosition(position);
+
+            synchronized (writeLock) {
+                writeLine(limits.toGoCommand(ponder));
+                ponderLimits = limits;
+                ponderActive = true;
+                if (queuedPonderSignal != null) {
+                    sendPonderSignal(queuedPonderSignal);
+                    queuedPonderSignal = null;
+                }
+            }
+        } catch (IOException e) {
+            restart("engine unreachable: " + e.getMessage());
+            throw new EngineRestartedException("Engine restarted before " + (ponder ? "pondering" : "analysis")
+                + " could start");
+        }
+        try {
+            return readSearchResult(listener);
+        } finally {
+            synchronized (writeLock) {
+                ponderActive = false;
+                ponderLimits = null;
+            }
+        }
+    }
+
+    /**
+     * Tells a pondering engine that the predicted move was played. Safe to
+     * call from any thread; if the ponder search has not been started yet the
+     * signal is held back and sent right after its {@code go ponder}.
+     */
+    public void ponderHit() throws IOException {
+        signalPonder("ponderhit");
+    }
+
+    /**
+     * Ends a ponder search whose prediction missed. Like {@link #ponderHit()},
+     * the signal is queued if the search has not reached the engine yet, so a
+     * quick reply can never leave the engine pondering forever.
+     */
+    public void stopPonder() throws IOException {
+        signalPonder("stop");
+    }
+
+    /**
+     * Ends a {@link SearchLimits#infinite()} search, which then returns its
+     * best move so far. Queued like {@link #stopPonder()} when the search has
+     * not reached the engine yet.
+     */
+    public void stopInfinite() throws IOException {
+        signalPonder("stop");
+    }
+
+    /**
+     * Forgets a ponderhit or stop that was queued for a search which ended
+     * before it could be sent, so it cannot cut the next search short.
+     */
+    public void clearQueuedSignal() {
+        synchronized (writeLock) {
+            queuedPonderSignal = null;
+        }
+    }
+
+    private void signalPonder(String command) throws IOException {
+        synchronized (writeLock) {
+            if (ponderActive) {
+                sendPonderSignal(command);
+            } else {
+                queuedPonderSignal = command;
+            }
+        }
+    }
+
+    /**
+     * Writes ponderhit/stop and starts the clock on the ponder search: a hit
+     * gets the normal search deadline, a stop only the grace period.
+     */
+    private void sendPonderSignal(String command) throws IOException {
+        ponderActive = false;
+        if ("ponderhit".equals(command)) {
+            armDeadline(searchDeadlineMillis(ponderLimits), true);
         } else {
-            sendCommand("position startpos moves " + sanitizedMoves);
+            armDeadline(STOP_GRACE_MILLIS, false);
         }
+        writeLine(command);
+    }
 
-        long millis = Math.max(thinkTime.toMillis(), 1);
-        sendCommand("go movetime " + millis);
+    public synchronized void setPonder(boolean enabled) throws IOException {
+        setOption("Ponder", enabled ? "true" : "false");
+    }
 
-        double lastScore = 0;
-        Integer mate = null;
+    private static int clampMultiPv(int lines) {
+        return Math.max(1, Math.min(500, lines));
+    }
+
+    private void setMultiPv(int lines) throws IOException {
+        int clamped = clampMultiPv(lines);
+        if (clamped == multiPv) {
+            return;
+        }
+        sendCommand("setoption name MultiPV value " + clamped);
+        multiPv = clamped;
+    }
+
+    /**
+     * Reads engine output until {@code bestmove}. Info lines are parsed in
+     * place; only the latest line per MultiPV rank is kept (as bytes), and
+     * Strings/PV lists are built for those final lines, plus whatever the
+     * listener asks for along the way.
+     */
+    private AnalysisResult readSearchResult(SearchInfoListener listener) throws IOException {
+        UciInfoParser.Snapshot[] snapshots = snapshotsFor(multiPv);
         String bestMove = null;
-        List<String> pvMoves = Collections.emptyList();
-        String line;
-        while ((line = reader.readLine()) != null) {
-            if (line.startsWith("info ")) {
-                if (line.contains(" score mate ")) {
-                    String value = extractAfter(line, "score mate ");
-                    try {
-                        mate = Integer.parseInt(value);
-                    } catch (NumberFormatException ignored) {
-                    }
-                } else if (line.contains(" score cp ")) {
-                    String value = extractAfter(line, "score cp ");
-                    try {
-                        lastScore = Double.parseDouble(value);
-                        mate = null;
-                    } catch (NumberFormatException ignored) {
-                    }
+        String ponderMove = null;
+        lastSearchRecovered = false;
+        try {
+            bestMove = readUntilBestMove(snapshots, listener);
+        } catch (IOException e) {
+            // the watchdog killed the process, or it died on its own
+        } finally {
+            disarmDeadline();
+            TranscriptRecorder transcript = recorder;
+            if (transcript != null) {
+                transcript.flush();
+            }
+        }
+        if (bestMove == null) {
+            return recoverSearch(snapshots, listener);
+        }
+        int space = bestMove.indexOf(' ');
+        if (space > 0) {
+            ponderMove = bestMove.substring(space + 1);
+            bestMove = bestMove.substring(0, space);
+        }
+        return completeSearch(snapshots, bestMove, ponderMove, listener);
+    }
+
+    /**
+     * Returns the best move, followed by a space and the ponder move if the
+     * engine gave one, or null if the output ended first.
+     */
+    private String readUntilBestMove(UciInfoParser.Snapshot[] snapshots,
+                                     SearchInfoListener listener) throws IOException {
+        while (reader.readLine()) {
+            if (UciInfoParser.isInfo(reader)) {
+                if (!infoParser.parse(reader.buffer(), reader.lineStart(), reader.lineEnd())) {
+                    continue;
+                }
+                int rank = infoParser.multiPv;
+                if (rank >= 1 && rank <= multiPv) {
+                    infoParser.copyTo(snapshots[rank]);
+                }
+                if (listener != null && listener.wantsInfo(rank, infoParser.depth, System.nanoTime())) {
+                    listener.onInfo(infoParser.toSearchInfo());
                 }
-                int pvIndex = line.indexOf(" pv ");
-                if (pvIndex >= 0 && pvIndex + 4 < line.length()) {
-                    String pvPart = line.substring(pvIndex + 4).trim();
-                    pvMoves = parsePvMoves(pvPart);
+            } else if (reader.startsWith(BESTMOVE)) {
+                String[] parts = reader.lineAsString().split("\\s+");
+                if (parts.length < 2) {
+                    return null;
                 }
-            } else if (line.startsWith("bestmove")) {
-                String[] parts = line.split("\\s+");
-                if (parts.length >= 2) {
-                    bestMove = parts[1];
+                if (parts.length >= 4 && "ponder".equals(parts[2])) {
+                    return parts[1] + " " + parts[3];
+                }
+                return parts[1];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The engine produced no bestmove: restart it and fall back to the first
+     * move of the deepest main line it reported, if any.
+     */
+    private AnalysisResult recoverSearch(UciInfoParser.Snapshot[] snapshots,
+                                         SearchInfoListener listener) throws IOException {
+        String reason;
+        synchronized (writeLock) {
+            reason = deadlineMissed ? "no bestmove before the search deadline" : "engine exited during search";
+        }
+        String fallbackMove = null;
+        if (snapshots[1].present) {
+            List<String> pv = snapshots[1].toSearchInfo().principalVariation;
+            fallbackMove = pv.isEmpty() ? null : pv.get(0);
+        }
+        AnalysisResult partial = fallbackMove == null ? null : completeSearch(snapshots, fallbackMove, null, null);
+        lastSearchRecovered = true;
+        restart(reason);
+        if (partial == null) {
+            throw new EngineRestartedException("Engine restarted: " + reason);
+        }
+        if (listener != null) {
+            listener.onSearchComplete(partial);
+        }
+        return partial;
+    }
+
+    private AnalysisResult completeSearch(UciInfoParser.Snapshot[] snapshots, String bestMove, String ponderMove,
+                                          SearchInfoListener listener) {
+        SearchInfo lastInfo = null;
+        List<PvLine> lines = new ArrayList<>(multiPv);
+        for (int rank = 1; rank <= multiPv; rank++) {
+            if (!snapshots[rank].present) {
+                continue;
+            }
+            SearchInfo info = snapshots[rank].toSearchInfo();
+            if (rank == 1) {
+                lastInfo = info;
+            }
+            lines.add(PvLine.from(info));
+        }
+        AnalysisResult result = lastInfo == null
+            ? new AnalysisResult(bestMove, 0, null, Collections.emptyList(), null, ponderMove, lines)
+            : new AnalysisResult(bestMove, lastInfo.effectiveScoreCp(), lastInfo.mate,
+                lastInfo.principalVariation, lastInfo, ponderMove, lines);
+        if (listener != null) {
+            listener.onSearchComplete(result);
+        }
+        return result;
+    }
+
+    private UciInfoParser.Snapshot[] snapshotsFor(int lineCount) {
+        if (lineSnapshots.length < lineCount + 1) {
+            UciInfoParser.Snapshot[] grown = new UciInfoParser.Snapshot[lineCount + 1];
+            System.arraycopy(lineSnapshots, 0, grown, 0, lineSnapshots.length);
+            for (int i = lineSnapshots.length; i < grown.length; i++) {
+                grown[i] = new UciInfoParser.Snapshot();
+            }
+            lineSnapshots = grown;
+        }
+        for (UciInfoParser.Snapshot snapshot : lineSnapshots) {
+            snapshot.present = false;
+        }
+        return lineSnapshots;
+    }
+
+    /**
+     * Sends {@code position} straight from the position's buffer. Re-sending
+     * the position the engine already holds is skipped entirely.
+     */
+    private void sendPosition(UciPosition position) throws IOException {
+        synchronized (position) {
+            long generation = position.generation();
+            int size = position.size();
+            if (position == lastSentPosition && generation == lastSentGeneration && size == lastSentSize) {
+                return;
+            }
+            synchronized (writeLock) {
+                TranscriptRecorder transcript = recorder;
+                if (transcript != null) {
+                    transcript.sent(position);
                 }
-                break;
+                position.appendCommand(writer);
+                writer.newLine();
+                writer.flush();
             }
+            lastSentPosition = position;
+            lastSentGeneration = generation;
+            lastSentSize = size;
         }
-        return new AnalysisResult(bestMove, mate != null ? (mate > 0 ? 10000 : -10000) : lastScore, mate, pvMoves);
+    }
+
+    /**
+     * Asks the engine to finish the current search and report its best move.
+     * Safe to call from any thread, including from a {@link SearchInfoListener}.
+     */
+    @Override
+    public void stop() throws IOException {
+        sendCommand("stop");
     }
 
     public synchronized void setSkillLevel(int level) throws IOException {
         int clamped = Math.max(0, Math.min(20, level));
-        sendCommand("setoption name Skill Level value " + clamped);
+        setOption("Skill Level", String.valueOf(clamped));
     }
 
     public synchronized void setLimitStrength(boolean enabled) throws IOException {
-        sendCommand("setoption name UCI_LimitStrength value " + (enabled ? "true" : "false"));
+        setOption("UCI_LimitStrength", enabled ? "true" : "false");
     }
 
     public synchronized void setTargetElo(int elo) throws IOException {
         int clamped = Math.max(300, Math.min(3500, elo));
-        sendCommand("setoption name UCI_Elo value " + clamped);
+        setOption("UCI_Elo", String.valueOf(clamped));
     }
 
-    private String extractAfter(String line, String token) {
-        int idx = line.indexOf(token);
-        if (idx < 0) return "";
-        int start = idx + token.length();
-        int end = start;
-        while (end < line.length() && !Character.isWhitespace(line.charAt(end))) {
-            end++;
+    public synchronized void setThreads(int threads) throws IOException {
+        setOption("Threads", String.valueOf(Math.max(1, threads)));
+    }
+
+    public synchronized void setHashMb(int hashMb) throws IOException {
+        setOption("Hash", String.valueOf(Math.max(1, hashMb)));
+    }
+
+    /**
+     * Sends an option and remembers it so a restarted engine gets it again.
+     * Setting an option to its current value sends nothing, so re-applying a
+     * profile to a reused engine does not reallocate its hash.
+     */
+    private void setOption(String name, String value) throws IOException {
+        if (value.equals(options.get(name))) {
+            return;
         }
-        return line.substring(start, end);
+        options.put(name, value);
+        optionsKey = options.hashCode();
+        sendCommand("setoption name " + name + " value " + value);
     }
 
-    private List<String> parsePvMoves(String pvPart) {
-        if (pvPart.isEmpty()) {
-            return Collections.emptyList();
+    private void waitForKeyword(String keyword, long timeoutMillis) throws IOException {
+        byte[] prefix = keyword.getBytes(StandardCharsets.US_ASCII);
+        armDeadline(timeoutMillis, false);
+        try {
+            while (reader.readLine()) {
+                if (reader.startsWith(prefix)) {
+                    return;
+                }
+            }
+        } finally {
+            disarmDeadline();
         }
-        String[] tokens = pvPart.split("\\s+");
-        List<String> moves = new ArrayList<>(tokens.length);
-        for (String token : tokens) {
-            if (token.length() < 4) {
-                continue;
+        throw new IOException("Engine closed while waiting for " + keyword);
+    }
+
+    private long searchDeadlineMillis(SearchLimits limits) {
+        long budget = limits == null ? 0 : limits.timeBudgetMillis();
+        return budget > 0 ? budget + SEARCH_MARGIN_MILLIS : searchTimeoutMillis;
+    }
+
+    /**
+     * Schedules the watchdog for the current process. With {@code stopFirst}
+     * a missed deadline first sends {@code stop} and allows
+     * {@link #STOP_GRACE_MILLIS} for the bestmove; otherwise, or when that
+     * also passes, the process is killed so the blocked read returns.
+     */
+    private void armDeadline(long millis, boolean stopFirst) {
+        synchronized (writeLock) {
+            disarmDeadline();
+            deadlineMissed = false;
+            long token = deadlineToken;
+            Process target = process;
+            deadline = WATCHDOG.schedule(() -> onDeadline(token, target, stopFirst), millis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void disarmDeadline() {
+        synchronized (writeLock) {
+            deadlineToken++;
+            if (deadline != null) {
+                deadline.cancel(false);
+                deadline = null;
             }
-            moves.add(token);
         }
-        return moves;
     }
 
-    private void waitForKeyword(String keyword) throws IOException {
-        String line;
-        while ((line = reader.readLine()) != null) {
-            if (line.startsWith(keyword)) {
+    private void onDeadline(long token, Process target, boolean stopFirst) {
+        synchronized (writeLock) {
+            if (token != deadlineToken || target != process) {
                 return;
             }
+            if (stopFirst) {
+                try {
+                    writeLine("stop");
+                } catch (IOException ignored) {
+                }
+                deadline = WATCHDOG.schedule(() -> onDeadline(token, target, false),
+                    STOP_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+                return;
+            }
+            deadlineMissed = true;
         }
-        throw new IOException("Engine closed while waiting for " + keyword);
+        kill(target);
+    }
+
+    /**
+     * Kills the engine and anything it spawned; a wrapper script's children
+     * would otherwise keep the output pipe open and the read blocked.
+     */
+    private static void kill(Process target) {
+        target.descendants().forEach(ProcessHandle::destroyForcibly);
+        target.destroyForcibly();
     }
 
     private void sendCommand(String command) throws IOException {
+        synchronized (writeLock) {
+            writeLine(command);
+        }
+    }
+
+    private void writeLine(String command) throws IOException {
+        TranscriptRecorder transcript = recorder;
+        if (transcript != null) {
+            transcript.sent(command);
+        }
         writer.write(command);
         writer.newLine();
         writer.flush();
@@ -176,12 +795,17 @@ public class StockfishClient implements Closeable {
 
     @Override
     public void close() throws IOException {
+        disarmDeadline();
         try {
             sendCommand("quit");
         } finally {
             reader.close();
             writer.close();
             process.destroy();
+            TranscriptRecorder transcript = recorder;
+            if (transcript != null) {
+                transcript.close();
+            }
         }
     }
 }
@@ -0,0 +1,63 @@
+package uci;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Writes an engine session as {@code > command} / {@code < output} lines, the
+ * format {@link FakeUciEngine} replays.
+ */
+final class TranscriptRecorder implements Closeable {
+
+    private final Writer out;
+
+    TranscriptRecorder(Path file) throws IOException {
+        out = Files.newBufferedWriter(file, StandardCharsets.US_ASCII);
+    }
+
+    synchronized void sent(String command) {
+        try {
+            out.write("> ");
+            out.write(command);
+            out.write('\n');
+        } catch (IOException ignored) {
+            // a broken transcript must never break the engine session
+        }
+    }
+
+    synchronized void sent(UciPosition position) {
+        try {
+            out.write("> ");
+            position.appendCommand(out);
+            out.write('\n');
+        } catch (IOException ignored) {
+        }
+    }
+
+    synchronized void received(byte[] bytes, int start, int end) {
+        try {
+            out.write("< ");
+            for (int i = start; i < end; i++) {
+                out.write(bytes[i] & 0xff);
+            }
+            out.write('\n');
+        } catch (IOException ignored) {
+        }
+    }
+
+    synchronized void flush() {
+        try {
+            out.flush();
+        } catch (IOException ignored) {
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,289 @@
+package uci;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tokenizes an {@code info} line directly from the reader's byte buffer into
+ * primitive fields, without creating Strings or arrays. The PV is only
+ * recorded as a byte range; {@link #copyTo(Snapshot)} keeps the bytes of a
+ * line that must outlive the buffer, and a {@link SearchInfo} is only built
+ * when someone actually asks for one.
+ */
+final class UciInfoParser {
+
+    private static final byte[] INFO = ascii("info ");
+    private static final byte[] DEPTH = ascii("depth");
+    private static final byte[] SELDEPTH = ascii("seldepth");
+    private static final byte[] MULTIPV = ascii("multipv");
+    private static final byte[] SCORE = ascii("score");
+    private static final byte[] CP = ascii("cp");
+    private static final byte[] MATE = ascii("mate");
+    private static final byte[] LOWERBOUND = ascii("lowerbound");
+    private static final byte[] UPPERBOUND = ascii("upperbound");
+    private static final byte[] NODES = ascii("nodes");
+    private static final byte[] NPS = ascii("nps");
+    private static final byte[] HASHFULL = ascii("hashfull");
+    private static final byte[] TIME = ascii("time");
+    private static final byte[] PV = ascii("pv");
+    private static final byte[] STRING = ascii("string");
+
+    int depth;
+    int selDepth;
+    int multiPv;
+    int scoreCp;
+    boolean isMate;
+    int mate;
+    boolean lowerBound;
+    boolean upperBound;
+    long nodes;
+    long nps;
+    int hashfull;
+    long timeMillis;
+    int pvStart;
+    int pvEnd;
+
+    private byte[] buf;
+    private int pos;
+    private int end;
+    private int tokenStart;
+    private int tokenEnd;
+
+    static boolean isInfo(UciLineReader reader) {
+        return reader.startsWith(INFO);
+    }
+
+    /**
+     * Parses {@code bytes[start, end)}. Returns true only for lines carrying a
+     * score, mirroring {@link SearchInfo#parse(String)}.
+     */
+    boolean parse(byte[] bytes, int start, int end) {
+        this.buf = bytes;
+        this.pos = start;
+        this.end = end;
+        depth = 0;
+        selDepth = 0;
+        multiPv = 1;
+        scoreCp = 0;
+        isMate = false;
+        mate = 0;
+        lowerBound = false;
+        upperBound = false;
+        nodes = 0;
+        nps = 0;
+        hashfull = 0;
+        timeMillis = 0;
+        pvStart = 0;
+        pvEnd = 0;
+        boolean hasScore = false;
+
+        if (!nextToken() || !tokenIs(INFO, INFO.length - 1)) {
+            return false;
+        }
+        while (nextToken()) {
+            if (tokenIs(DEPTH)) {
+                depth = (int) nextNumber();
+            } else if (tokenIs(SELDEPTH)) {
+                selDepth = (int) nextNumber();
+            } else if (tokenIs(MULTIPV)) {
+                multiPv = (int) nextNumber();
+            } else if (tokenIs(SCORE)) {
+                if (!nextToken()) {
+                    return false;
+                }
+                boolean mateScore = tokenIs(MATE);
+                if (!mateScore && !tokenIs(CP)) {
+                    return false;
+                }
+                long value = nextNumber();
+                if (value == Long.MIN_VALUE) {
+                    return false;
+                }
+                if (mateScore) {
+                    isMate = true;
+                    mate = (int) value;
+                } else {
+                    scoreCp = (int) value;
+                }
+                hasScore = true;
+            } else if (tokenIs(LOWERBOUND)) {
+                lowerBound = true;
+            } else if (tokenIs(UPPERBOUND)) {
+                upperBound = true;
+            } else if (tokenIs(NODES)) {
+                nodes = nextNumber();
+            } else if (tokenIs(NPS)) {
+                nps = nextNumber();
+            } else if (tokenIs(HASHFULL)) {
+                hashfull = (int) nextNumber();
+            } else if (tokenIs(TIME)) {
+                timeMillis = nextNumber();
+            } else if (tokenIs(PV)) {
+                skipSpaces();
+                pvStart = pos;
+                pvEnd = trimEnd(end);
+                break;
+            } else if (tokenIs(STRING)) {
+                return false;
+            }
+        }
+        return hasScore && depth >= 0 && nodes >= 0;
+    }
+
+    int effectiveScoreCp() {
+        if (isMate) {
+            return mate > 0 ? 10000 : -10000;
+        }
+        return scoreCp;
+    }
+
+    SearchInfo toSearchInfo() {
+        return new SearchInfo(depth, selDepth, multiPv, scoreCp, isMate ? mate : null, lowerBound, upperBound,
+            nodes, nps, hashfull, timeMillis, decodeMoves(buf, pvStart, pvEnd));
+    }
+
+    void copyTo(Snapshot snapshot) {
+        snapshot.depth = depth;
+        snapshot.selDepth = selDepth;
+        snapshot.multiPv = multiPv;
+        snapshot.scoreCp = scoreCp;
+        snapshot.isMate = isMate;
+        snapshot.mate = mate;
+        snapshot.lowerBound = lowerBound;
+        snapshot.upperBound = upperBound;
+        snapshot.nodes = nodes;
+        snapshot.nps = nps;
+        snapshot.hashfull = hashfull;
+        snapshot.timeMillis = timeMillis;
+        int length = pvEnd - pvStart;
+        if (snapshot.pv.length < length) {
+            snapshot.pv = new byte[Math.max(length, snapshot.pv.length * 2)];
+        }
+        System.arraycopy(buf, pvStart, snapshot.pv, 0, length);
+        snapshot.pvLength = length;
+        snapshot.present = true;
+    }
+
+    /**
+     * Primitive copy of one info line whose PV bytes are kept off the shared
+     * reader buffer; reused across lines and searches.
+     */
+    static final class Snapshot {
+        boolean present;
+        int depth;
+        int selDepth;
+        int multiPv;
+        int scoreCp;
+        boolean isMate;
+        int mate;
+        boolean lowerBound;
+        boolean upperBound;
+        long nodes;
+        long nps;
+        int hashfull;
+        long timeMillis;
+        byte[] pv = new byte[256];
+        int pvLength;
+
+        SearchInfo toSearchInfo() {
+            return new SearchInfo(depth, selDepth, multiPv, scoreCp, isMate ? mate : null, lowerBound, upperBound,
+                nodes, nps, hashfull, timeMillis, decodeMoves(pv, 0, pvLength));
+        }
+    }
+
+    static List<String> decodeMoves(byte[] bytes, int start, int end) {
+        if (end <= start) {
+            return List.of();
+        }
+        List<String> moves = new ArrayList<>(16);
+        int i = start;
+        while (i < end) {
+            while (i < end && bytes[i] == ' ') {
+                i++;
+            }
+            int tokenStart = i;
+            while (i < end && bytes[i] != ' ') {
+                i++;
+            }
+            if (i - tokenStart >= 4) {
+                moves.add(new String(bytes, tokenStart, i - tokenStart, StandardCharsets.US_ASCII));
+            }
+        }
+        return moves;
+    }
+
+    private boolean nextToken() {
+        skipSpaces();
+        if (pos >= end) {
+            return false;
+        }
+        tokenStart = pos;
+        while (pos < end && !isSpace(buf[pos])) {
+            pos++;
+        }
+        tokenEnd = pos;
+        return true;
+    }
+
+    private long nextNumber() {
+        if (!nextToken()) {
+            return Long.MIN_VALUE;
+        }
+        int i = tokenStart;
+        boolean negative = false;
+        if (buf[i] == '-' || buf[i] == '+') {
+            negative = buf[i] == '-';
+            i++;
+        }
+        if (i >= tokenEnd) {
+            return Long.MIN_VALUE;
+        }
+        long value = 0;
+        for (; i < tokenEnd; i++) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return Long.MIN_VALUE;
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    private boolean tokenIs(byte[] keyword) {
+        return tokenIs(keyword, keyword.length);
+    }
+
+    private boolean tokenIs(byte[] keyword, int length) {
+        if (tokenEnd - tokenStart != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (buf[tokenStart + i] != keyword[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void skipSpaces() {
+        while (pos < end && isSpace(buf[pos])) {
+            pos++;
+        }
+    }
+
+    private int trimEnd(int index) {
+        while (index > pos && isSpace(buf[index - 1])) {
+            index--;
+        }
+        return index;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
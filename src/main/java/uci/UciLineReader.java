@@ -0,0 +1,125 @@
+package uci;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Splits engine output into lines inside one reusable byte buffer. The
+ * current line is exposed as {@code bytes[lineStart, lineEnd)} and stays valid
+ * until the next {@link #readLine()}; nothing is decoded unless a caller asks
+ * for {@link #lineAsString()}.
+ *
+ * <p>Reads go straight from the process stream into the backing array rather
+ * than through {@code Channels.newChannel}, whose channel closes for good if
+ * the reading thread is ever interrupted.</p>
+ */
+final class UciLineReader {
+
+    private final InputStream in;
+    private byte[] bytes;
+    private int lineStart;
+    private int lineEnd;
+    private int dataStart;
+    private int dataEnd;
+    private int scanPos;
+    private TranscriptRecorder tap;
+
+    UciLineReader(InputStream in, int initialCapacity) {
+        this.in = in;
+        this.bytes = new byte[Math.max(256, initialCapacity)];
+    }
+
+    /**
+     * Advances to the next line. Returns false once the stream has ended and
+     * no partial line is left.
+     */
+    boolean readLine() throws IOException {
+        while (true) {
+            for (int i = scanPos; i < dataEnd; i++) {
+                if (bytes[i] == '\n') {
+                    setLine(dataStart, i);
+                    dataStart = i + 1;
+                    scanPos = dataStart;
+                    return true;
+                }
+            }
+            scanPos = dataEnd;
+            compact();
+            int read = in.read(bytes, dataEnd, bytes.length - dataEnd);
+            if (read < 0) {
+                if (dataEnd > dataStart) {
+                    setLine(dataStart, dataEnd);
+                    dataStart = dataEnd;
+                    scanPos = dataEnd;
+                    return true;
+                }
+                return false;
+            }
+            dataEnd += read;
+        }
+    }
+
+    byte[] buffer() {
+        return bytes;
+    }
+
+    int lineStart() {
+        return lineStart;
+    }
+
+    int lineEnd() {
+        return lineEnd;
+    }
+
+    boolean startsWith(byte[] prefix) {
+        if (lineEnd - lineStart < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[lineStart + i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    String lineAsString() {
+        return new String(bytes, lineStart, lineEnd - lineStart, StandardCharsets.US_ASCII);
+    }
+
+    void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Copies every line read from now on to {@code recorder} ({@code null} to
+     * stop).
+     */
+    void setTap(TranscriptRecorder recorder) {
+        tap = recorder;
+    }
+
+    private void setLine(int start, int end) {
+        lineStart = start;
+        lineEnd = end > start && bytes[end - 1] == '\r' ? end - 1 : end;
+        if (tap != null) {
+            tap.received(bytes, lineStart, lineEnd);
+        }
+    }
+
+    private void compact() {
+        if (dataStart > 0) {
+            int remaining = dataEnd - dataStart;
+            System.arraycopy(bytes, dataStart, bytes, 0, remaining);
+            scanPos -= dataStart;
+            dataEnd = remaining;
+            dataStart = 0;
+        }
+        if (dataEnd == bytes.length) {
+            byte[] grown = new byte[bytes.length * 2];
+            System.arraycopy(bytes, 0, grown, 0, dataEnd);
+            bytes = grown;
+        }
+    }
+}
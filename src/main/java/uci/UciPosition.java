@@ -0,0 +1,192 @@
+package uci;
+
+import engine.Position;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A game as the engine sees it: a start position plus the UCI moves played
+ * from it. The {@code position ...} command is kept in a growing buffer, so
+ * pushing a move appends a few characters instead of rebuilding the whole
+ * history string on every engine request.
+ */
+public final class UciPosition {
+
+    public static final String STANDARD_START_FEN = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    private final StringBuilder command = new StringBuilder(256);
+    private final List<String> moves = new ArrayList<>();
+    private String startFen;
+    private int baseLength;
+    private long generation;
+    /** Zobrist key of the current position, computed on demand. */
+    private long positionKey;
+    private boolean positionKeyKnown;
+
+    private UciPosition(String startFen) {
+        reset(startFen);
+    }
+
+    public static UciPosition startpos() {
+        return new UciPosition(null);
+    }
+
+    public static UciPosition fromFen(String fen) {
+        return new UciPosition(fen);
+    }
+
+    public static UciPosition of(String startFen, List<String> moves) {
+        UciPosition position = new UciPosition(startFen);
+        for (String move : moves) {
+            position.push(move);
+        }
+        return position;
+    }
+
+    /**
+     * Parses the legacy space-separated move string used by
+     * {@link StockfishClient#analyzePosition(String, java.time.Duration)}.
+     */
+    public static UciPosition fromMoveString(String moves) {
+        UciPosition position = startpos();
+        String sanitized = moves == null ? "" : moves.trim();
+        if (!sanitized.isEmpty()) {
+            for (String move : sanitized.split("\\s+")) {
+                position.push(move);
+            }
+        }
+        return position;
+    }
+
+    /**
+     * Clears the move list and starts again from {@code fen}; {@code null} or
+     * the standard start FEN use the shorter {@code position startpos} form.
+     */
+    public synchronized void reset(String fen) {
+        String normalized = fen == null || fen.isBlank() || STANDARD_START_FEN.equals(fen.trim()) ? null : fen.trim();
+        startFen = normalized;
+        moves.clear();
+        command.setLength(0);
+        if (normalized == null) {
+            command.append("position startpos");
+        } else {
+            command.append("position fen ").append(normalized);
+        }
+        baseLength = command.length();
+        generation++;
+        positionKeyKnown = false;
+    }
+
+    public synchronized void push(String uciMove) {
+        if (moves.isEmpty()) {
+            command.append(" moves");
+        }
+        command.append(' ').append(uciMove);
+        moves.add(uciMove);
+        positionKeyKnown = false;
+    }
+
+    /**
+     * Drops moves beyond {@code size}, e.g. when stepping back to an earlier ply.
+     */
+    public synchronized void truncate(int size) {
+        if (size >= moves.size()) {
+            return;
+        }
+        int keep = Math.max(0, size);
+        while (moves.size() > keep) {
+            moves.remove(moves.size() - 1);
+        }
+        command.setLength(baseLength);
+        for (int i = 0; i < moves.size(); i++) {
+            if (i == 0) {
+                command.append(" moves");
+            }
+            command.append(' ').append(moves.get(i));
+        }
+        generation++;
+        positionKeyKnown = false;
+    }
+
+    public synchronized UciPosition copy() {
+        UciPosition copy = new UciPosition(startFen);
+        copy.command.setLength(0);
+        copy.command.append(command);
+        copy.moves.addAll(moves);
+        copy.generation = generation;
+        copy.positionKey = positionKey;
+        copy.positionKeyKnown = positionKeyKnown;
+        return copy;
+    }
+
+    public synchronized int size() {
+        return moves.size();
+    }
+
+    public synchronized String lastMove() {
+        return moves.isEmpty() ? null : moves.get(moves.size() - 1);
+    }
+
+    public synchronized List<String> moves() {
+        return Collections.unmodifiableList(new ArrayList<>(moves));
+    }
+
+    /**
+     * Start FEN, or {@code null} for the standard start position.
+     */
+    public synchronized String startFen() {
+        return startFen;
+    }
+
+    /**
+     * Bumped whenever the position is reset or truncated, so a client can tell
+     * an extended game apart from a different one of the same length.
+     */
+    synchronized long generation() {
+        return generation;
+    }
+
+    /**
+     * 64-bit FNV-1a hash of the {@code position} command: equal for the same
+     * start position and move list, e.g. to name a saved game. Move orders
+     * that transpose get different keys; see {@link #positionKey()}.
+     */
+    public synchronized long key() {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < command.length(); i++) {
+            hash ^= command.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Zobrist key of the position reached after the moves, so transposed move
+     * orders share a key; it keys cached evaluations.
+     *
+     * @throws IllegalArgumentException if the FEN or a move is not legal
+     */
+    public synchronized long positionKey() {
+        if (!positionKeyKnown) {
+            positionKey = Position.of(startFen, moves).key();
+            positionKeyKnown = true;
+        }
+        return positionKey;
+    }
+
+    /**
+     * Writes the current {@code position} command to {@code out} without
+     * materialising it as a String.
+     */
+    synchronized void appendCommand(Appendable out) throws IOException {
+        out.append(command);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return command.toString();
+    }
+}
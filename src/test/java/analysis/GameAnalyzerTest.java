@@ -0,0 +1,44 @@
+package analysis;
+
+import endgame.Bitbases;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uci.FakeUciEngine;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GameAnalyzerTest {
+
+    @TempDir
+    static Path tempDir;
+
+    @BeforeAll
+    static void solveEndgames() {
+        System.setProperty("chess.analysisCache", tempDir.resolve("analysis-cache.bin").toString());
+        System.setProperty("chess.bitbases", tempDir.resolve("bitbases").toString());
+        assertNotNull(Bitbases.shared());
+    }
+
+    @Test
+    void throwingAWinIntoASolvedDrawWithBlackIsABlunder() throws Exception {
+        // Kxa3 leaves Black a won king and pawn ending; bxa3 leaves a rook pawn
+        // against a king in the corner, a solved draw
+        String startFen = "8/8/8/8/1p6/Nk6/8/K7 b - - 0 1";
+        GameAnalyzer analyzer = new GameAnalyzer(FakeUciEngine.command("--bestmoves", "b3a3:800,a1b1:0"),
+            Duration.ofMillis(50), 1, 1);
+
+        GameAnalyzer.Summary summary = analyzer.analyze(startFen, List.of("b4a3"));
+
+        GameAnalyzer.Entry entry = summary.entries.get(0);
+        assertFalse(entry.isWhite);
+        assertEquals(-8.0, entry.evalBefore, 1e-9, "the engine's +8 is Black's, so -8 for White");
+        assertEquals(0.0, entry.evalAfter, 1e-9);
+        assertEquals(8.0, entry.loss, 1e-9);
+        assertEquals("Blunder", entry.severity);
+    }
+}
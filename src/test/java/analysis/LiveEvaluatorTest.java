@@ -0,0 +1,56 @@
+package analysis;
+
+import org.junit.jupiter.api.Test;
+import uci.FakeUciEngine;
+import uci.UciPosition;
+
+import java.time.Duration;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LiveEvaluatorTest {
+
+    @Test
+    void followsEachNewPositionAndReportsFromWhitesSide() throws Exception {
+        BlockingQueue<LiveEvaluator.Update> updates = new LinkedBlockingQueue<>();
+        LiveEvaluator evaluator = new LiveEvaluator(FakeUciEngine.command("--bestmoves", "e2e4:35,e7e5:20"),
+            Duration.ZERO, updates::add);
+        try {
+            UciPosition position = UciPosition.startpos();
+            long first = evaluator.analyze(position, true);
+            LiveEvaluator.Update update = updates.poll(10, TimeUnit.SECONDS);
+            assertNotNull(update);
+            assertEquals(first, update.sequence);
+            assertEquals("e2e4", update.bestMove);
+            assertEquals(35, update.whiteCp);
+
+            // the infinite search of the first position has to be stopped for this one to start
+            position.push("e2e4");
+            long second = evaluator.analyze(position, false);
+            update = nextFor(updates, second);
+            assertEquals("e7e5", update.bestMove);
+            assertEquals(-20, update.whiteCp, "Black's +20 is -20 for White");
+            assertNull(update.whiteMate);
+
+            evaluator.pause();
+            updates.clear();
+            assertNull(updates.poll(300, TimeUnit.MILLISECONDS));
+        } finally {
+            evaluator.close();
+        }
+    }
+
+    private static LiveEvaluator.Update nextFor(BlockingQueue<LiveEvaluator.Update> updates, long sequence)
+        throws InterruptedException {
+        while (true) {
+            LiveEvaluator.Update update = updates.poll(10, TimeUnit.SECONDS);
+            assertNotNull(update, "no update for position " + sequence);
+            if (update.sequence == sequence) {
+                return update;
+            }
+        }
+    }
+}
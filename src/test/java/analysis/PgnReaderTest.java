@@ -0,0 +1,55 @@
+package analysis;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PgnReaderTest {
+
+    private static final String PGN = """
+        [Event "Casual"]
+        [White "Anderssen"]
+        [Black "Kieseritzky"]
+        [Result "1-0"]
+
+        1. e4 e5 {open game} 2. f4 (2. Nf3 Nc6) exf4 3. Bc4 Qh4+ $1 4. Kf1 b5 ; the gambit
+        5. Bxb5 Nf6 6. Nf3 Qh6 1-0
+
+        [Event "Second"]
+        [FEN "4k3/P7/8/8/8/8/8/R3K2R w KQ - 0 1"]
+        [Result "*"]
+
+        1. a8=Q+ Kd7 2. O-O *
+        """;
+
+    @Test
+    void readsTagsAndMainLineOfEveryGame() throws Exception {
+        try (PgnReader reader = new PgnReader(new StringReader(PGN))) {
+            PgnReader.Game first = reader.next();
+            assertEquals(1, first.number);
+            assertEquals("Kieseritzky", first.tags.get("Black"));
+            assertEquals("1-0", first.result());
+            assertNull(first.startFen());
+            assertEquals(List.of("e4", "e5", "f4", "exf4", "Bc4", "Qh4+", "Kf1", "b5", "Bxb5", "Nf6", "Nf3", "Qh6"),
+                first.sanMoves);
+            assertEquals(List.of("e2e4", "e7e5", "f2f4", "e5f4", "f1c4", "d8h4", "e1f1", "b7b5",
+                "c4b5", "g8f6", "g1f3", "h4h6"), first.uciMoves());
+
+            PgnReader.Game second = reader.next();
+            assertEquals(2, second.number);
+            assertEquals(List.of("a7a8q", "e8d7", "e1g1"), second.uciMoves());
+            assertNull(reader.next());
+        }
+    }
+
+    @Test
+    void rejectsIllegalMoves() throws Exception {
+        try (PgnReader reader = new PgnReader(new StringReader("1. e4 e5 2. Ke3 *"))) {
+            PgnReader.Game game = reader.next();
+            assertThrows(IllegalArgumentException.class, game::uciMoves);
+        }
+    }
+}
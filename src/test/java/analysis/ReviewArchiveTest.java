@@ -0,0 +1,129 @@
+package analysis;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import uci.StockfishClient;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReviewArchiveTest {
+
+    private static final String FEN = "4k3/P7/8/8/8/8/8/R3K2R w KQ - 0 1";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void savedReviewLoadsBackUnchanged() throws Exception {
+        ReviewArchive.Record record = sampleRecord("Casual");
+        Path file = directory.resolve("game.review");
+        ReviewArchive.save(file, record);
+
+        ReviewArchive.Record loaded = ReviewArchive.load(file);
+        assertEquals(record.tags, loaded.tags);
+        assertEquals(FEN, loaded.startFen);
+        assertEquals(record.moves, loaded.moves);
+        assertEquals(1234, loaded.summary.engineMillis);
+        assertEquals(record.summary.entries.size(), loaded.summary.entries.size());
+        for (int i = 0; i < record.summary.entries.size(); i++) {
+            GameAnalyzer.Entry expected = record.summary.entries.get(i);
+            GameAnalyzer.Entry actual = loaded.summary.entries.get(i);
+            assertEquals(expected.plyIndex, actual.plyIndex);
+            assertEquals(expected.isWhite, actual.isWhite);
+            assertEquals(expected.playedMove, actual.playedMove);
+            assertEquals(expected.bestMove, actual.bestMove);
+            assertEquals(expected.bestLine, actual.bestLine);
+            assertEquals(expected.evalBefore, actual.evalBefore, 1e-9);
+            assertEquals(expected.evalAfter, actual.evalAfter, 1e-9);
+            assertEquals(expected.loss, actual.loss, 1e-9);
+            assertEquals(expected.severity, actual.severity);
+            assertEquals(expected.qualityTag, actual.qualityTag);
+            assertEquals(expected.onlyMove, actual.onlyMove);
+            assertEquals(expected.alternatives.size(), actual.alternatives.size());
+            for (int k = 0; k < expected.alternatives.size(); k++) {
+                StockfishClient.PvLine line = expected.alternatives.get(k);
+                StockfishClient.PvLine restored = actual.alternatives.get(k);
+                assertEquals(line.rank, restored.rank);
+                assertEquals(line.move, restored.move);
+                assertEquals(line.scoreCp, restored.scoreCp);
+                assertEquals(line.mate, restored.mate);
+                assertEquals(line.depth, restored.depth);
+                assertEquals(line.principalVariation, restored.principalVariation);
+            }
+        }
+        assertEquals(record.summary.blunders, loaded.summary.blunders);
+        assertEquals(record.summary.accuracyScore, loaded.summary.accuracyScore, 1e-9);
+    }
+
+    @Test
+    void appendedRecordsAreReadBackInOrderDespiteATornTail() throws Exception {
+        Path file = directory.resolve("reviews.bin");
+        try (ReviewArchive.Writer writer = ReviewArchive.Writer.append(file)) {
+            writer.write(sampleRecord("First"));
+            writer.write(sampleRecord("Second"));
+        }
+        long complete = Files.size(file);
+        try (ReviewArchive.Writer writer = ReviewArchive.Writer.append(file)) {
+            writer.write(sampleRecord("Third"));
+        }
+        // a write cut short by a crash
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 3);
+        }
+        assertEquals(List.of("First", "Second"), events(file));
+
+        try (ReviewArchive.Writer writer = ReviewArchive.Writer.append(file)) {
+            assertEquals(complete, Files.size(file));
+            writer.write(sampleRecord("Fourth"));
+        }
+        assertEquals(List.of("First", "Second", "Fourth"), events(file));
+    }
+
+    @Test
+    void rejectsFilesThatAreNotArchives() throws Exception {
+        Path file = directory.resolve("other.bin");
+        Files.writeString(file, "[Event \"Casual\"]\n");
+        assertThrows(IOException.class, () -> ReviewArchive.load(file));
+    }
+
+    private static List<String> events(Path file) throws IOException {
+        List<String> events = new ArrayList<>();
+        try (ReviewArchive.Reader reader = ReviewArchive.Reader.open(file)) {
+            for (ReviewArchive.Record record; (record = reader.next()) != null; ) {
+                events.add(record.tags.get("Event"));
+            }
+        }
+        return events;
+    }
+
+    private static ReviewArchive.Record sampleRecord(String event) {
+        Map<String, String> tags = new LinkedHashMap<>();
+        tags.put("Event", event);
+        tags.put("Result", "*");
+        List<String> moves = List.of("a7a8q", "e8d7", "e1g1");
+        List<GameAnalyzer.Entry> entries = List.of(
+            new GameAnalyzer.Entry(0, true, "a7a8q", "a7a8q", List.of("a7a8q", "e8d7", "a8b7"),
+                4.1, 9.25, -5.15, "Best", "Best",
+                List.of(new StockfishClient.PvLine(1, "a7a8q", 925, null, 18, List.of("a7a8q", "e8d7", "a8b7")),
+                    new StockfishClient.PvLine(2, "a1a6", 410, null, 18, List.of("a1a6", "e8d7"))),
+                true),
+            new GameAnalyzer.Entry(1, false, "e8d7", "e8d7", List.of("e8d7", "a8b7"),
+                9.25, 9.25, 0.0, null, null,
+                List.of(new StockfishClient.PvLine(1, "e8d7", -9999, -4, 22, List.of("e8d7", "a8b7", "d7d6"))),
+                true),
+            new GameAnalyzer.Entry(2, true, "e1g1", null, List.of(),
+                9.25, 7.5, 1.75, "Inaccuracy", "Inaccuracy"));
+        return new ReviewArchive.Record(tags, FEN, moves, new GameAnalyzer.Summary(entries, 1234));
+    }
+}
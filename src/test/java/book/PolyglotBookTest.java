@@ -0,0 +1,122 @@
+package book;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PolyglotBookTest {
+
+    private static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    @TempDir
+    Path tempDir;
+
+    private static PolyglotKey syntheticKey() {
+        long[] table = new long[781];
+        Random random = new Random(781);
+        for (int i = 0; i < table.length; i++) {
+            table[i] = random.nextLong();
+        }
+        return new PolyglotKey(table);
+    }
+
+    private static int move(String from, String to, int promotion) {
+        return (promotion << 12) | ((from.charAt(1) - '1') << 9) | ((from.charAt(0) - 'a') << 6)
+            | ((to.charAt(1) - '1') << 3) | (to.charAt(0) - 'a');
+    }
+
+    private Path writeBook(long[] keys, int[] moves, int[] weights) throws IOException {
+        Path file = tempDir.resolve("book.bin");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            for (int i = 0; i < keys.length; i++) {
+                out.writeLong(keys[i]);
+                out.writeShort(moves[i]);
+                out.writeShort(weights[i]);
+                out.writeInt(0);
+            }
+        }
+        return file;
+    }
+
+    @Test
+    void hashDependsOnSideCastlingAndCapturableEnPassant() {
+        PolyglotKey key = syntheticKey();
+        long start = key.fromFen(START);
+        assertNotEquals(start, key.fromFen(START.replace(" w ", " b ")));
+        assertNotEquals(start, key.fromFen(START.replace("KQkq", "Kkq")));
+
+        String afterE4 = "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq ";
+        assertEquals(key.fromFen(afterE4 + "- 0 1"), key.fromFen(afterE4 + "e3 0 1"),
+            "no black pawn can take en passant, so the square is ignored");
+        String capturable = "rnbqkbnr/ppp1pppp/8/8/3pP3/8/PPPP1PPP/RNBQKBNR b KQkq ";
+        assertNotEquals(key.fromFen(capturable + "- 0 1"), key.fromFen(capturable + "e3 0 1"));
+    }
+
+    @Test
+    void findsAndPicksWeightedMoves() throws IOException {
+        char[] squares = PolyglotKey.squaresFromFen(START.split(" ")[0]);
+        long key = 0x8000_0000_0000_0010L;
+        Path file = writeBook(
+            new long[]{0x10L, key, key, 0x9000_0000_0000_0000L},
+            new int[]{move("d2", "d4", 0), move("e2", "e4", 0), move("g1", "f3", 0), move("c2", "c4", 0)},
+            new int[]{5, 3, 1, 7});
+        try (PolyglotBook book = PolyglotBook.open(file)) {
+            assertEquals(4, book.size());
+            List<PolyglotBook.Entry> entries = book.entries(key, squares);
+            assertEquals(2, entries.size());
+            assertEquals("e2e4", entries.get(0).move);
+            assertEquals("g1f3", entries.get(1).move);
+            assertNull(book.pickMove(0x20L, squares, new Random()));
+
+            Random random = new Random(7);
+            int e4 = 0;
+            for (int i = 0; i < 4000; i++) {
+                if (book.pickMove(key, squares, random).equals("e2e4")) {
+                    e4++;
+                }
+            }
+            assertTrue(e4 > 2700 && e4 < 3300, "e2e4 should be picked about 3 times in 4, was " + e4);
+        }
+    }
+
+    @Test
+    void convertsCastlingAndPromotionsToUci() {
+        char[] squares = PolyglotKey.squaresFromFen("r3k2r/1P6/8/8/8/8/8/R3K2R");
+        assertEquals("e1g1", PolyglotBook.toUci(move("e1", "h1", 0), squares));
+        assertEquals("e1c1", PolyglotBook.toUci(move("e1", "a1", 0), squares));
+        assertEquals("e8g8", PolyglotBook.toUci(move("e8", "h8", 0), squares));
+        assertEquals("b7b8q", PolyglotBook.toUci(move("b7", "b8", 4), squares));
+        assertEquals("b7a8n", PolyglotBook.toUci(move("b7", "a8", 1), squares));
+    }
+
+    @Test
+    void standardTableReproducesTheReferenceKeys() {
+        PolyglotKey key = PolyglotKey.standard();
+        assertEquals(PolyglotKey.START_POSITION_KEY, key.fromFen(START));
+        // the examples from the Polyglot book format description
+        assertEquals(0x823C9B50FD114196L,
+            key.fromFen("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1"));
+        assertEquals(0x0756B94461C50FB0L,
+            key.fromFen("rnbqkbnr/ppp1pppp/8/3p4/4P3/8/PPPP1PPP/RNBQKBNR w KQkq d6 0 2"));
+        assertEquals(0x662FAFB965DB29D4L,
+            key.fromFen("rnbqkbnr/ppp1pppp/8/3pP3/8/8/PPPP1PPP/RNBQKBNR b KQkq - 0 2"));
+        assertEquals(0x22A48B5A8E47FF78L,
+            key.fromFen("rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPP1PPP/RNBQKBNR w KQkq f6 0 3"));
+        assertEquals(0x652A607CA3F242C1L,
+            key.fromFen("rnbqkbnr/ppp1p1pp/8/3pPp2/8/8/PPPPKPPP/RNBQ1BNR b kq - 0 3"));
+        assertEquals(0x00FDD303C946BDD9L,
+            key.fromFen("rnbq1bnr/ppp1pkpp/8/3pPp2/8/8/PPPPKPPP/RNBQ1BNR w - - 0 4"));
+        assertEquals(0x3C8123EA7B067637L,
+            key.fromFen("rnbqkbnr/p1pppppp/8/8/PpP4P/8/1P1PPPP1/RNBQKBNR b KQkq c3 0 3"));
+        assertEquals(0x5C3F9B829B279560L,
+            key.fromFen("rnbqkbnr/p1pppppp/8/8/P6P/R1p5/1P1PPPP1/1NBQKBNR b Kkq - 0 4"));
+    }
+}
@@ -0,0 +1,73 @@
+package endgame;
+
+import book.PolyglotKey;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BitbasesTest {
+
+    private static Bitbases bitbases;
+
+    @BeforeAll
+    static void solve() {
+        bitbases = Bitbases.generate();
+    }
+
+    private static Wdl probe(String fen) {
+        String[] parts = fen.split(" ");
+        return bitbases.probe(PolyglotKey.squaresFromFen(parts[0]), parts[1].equals("w"));
+    }
+
+    @Test
+    void queenAndRookEndingsAreWonExceptStalemateAndHangingPieces() {
+        assertEquals(Wdl.WIN, probe("8/8/8/4k3/8/8/8/3QK3 w"));
+        assertEquals(Wdl.LOSS, probe("8/8/8/4k3/8/8/8/R3K3 b"));
+        assertEquals(Wdl.LOSS, probe("k7/1Q6/1K6/8/8/8/8/8 b"), "mated");
+        assertEquals(Wdl.DRAW, probe("k7/2Q5/1K6/8/8/8/8/8 b"), "stalemated");
+        assertEquals(Wdl.DRAW, probe("8/8/8/8/8/8/1k6/1Q5K b"), "the queen hangs");
+        assertEquals(Wdl.LOSS, probe("8/8/8/8/8/1k6/8/1Q2K3 b"), "in check but nothing hangs");
+    }
+
+    @Test
+    void pawnEndingsFollowTheTheory() {
+        assertEquals(Wdl.WIN, probe("4k3/8/4K3/4P3/8/8/8/8 w"), "king on the sixth in front of the pawn");
+        assertEquals(Wdl.LOSS, probe("4k3/8/4K3/4P3/8/8/8/8 b"));
+        assertEquals(Wdl.DRAW, probe("k7/8/K7/P7/8/8/8/8 w"), "rook pawn with the king in the corner");
+        assertEquals(Wdl.WIN, probe("7k/8/8/8/8/8/P7/K7 w"), "outside the square of the pawn");
+    }
+
+    @Test
+    void blackAsTheStrongerSideIsMirrored() {
+        assertEquals(Wdl.WIN, probe("8/8/8/8/4p3/4k3/8/4K3 b"));
+        assertEquals(Wdl.DRAW, probe("8/8/8/8/p7/k7/8/K7 b"));
+        assertEquals(Wdl.LOSS, probe("8/8/8/4K3/8/8/8/3qk3 w"));
+    }
+
+    @Test
+    void bishopAndKnightMateIsWon() {
+        assertEquals(Wdl.WIN, probe("8/8/8/4k3/8/8/8/2B1KN2 w"));
+        assertEquals(Wdl.LOSS, probe("8/8/8/4k3/8/8/8/2B1KN2 b"));
+        assertEquals(Wdl.DRAW, probe("8/8/8/8/8/8/2k5/1BN1K3 b"), "the knight hangs");
+        assertNull(probe("8/8/8/4k3/8/8/8/1NB1KN2 w"), "not a solved ending");
+        assertNull(probe("8/8/8/4k3/8/8/3p4/2B1K3 w"), "both sides have material");
+    }
+
+    @Test
+    void tablesRoundTripThroughFiles(@TempDir Path directory) throws Exception {
+        for (String name : Bitbases.ENDGAMES) {
+            bitbases.table(name).write(directory.resolve(name + ".bb"));
+        }
+        Bitbases read = Bitbases.load(directory);
+        for (String name : Bitbases.ENDGAMES) {
+            assertArrayEquals(bitbases.table(name).strongToMove, read.table(name).strongToMove, name);
+            assertArrayEquals(bitbases.table(name).weakToMove, read.table(name).weakToMove, name);
+        }
+        assertThrows(IOException.class, () -> Bitbase.read(directory.resolve("KPK.bb"), "KRK"));
+    }
+}
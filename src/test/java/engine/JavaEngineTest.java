@@ -0,0 +1,105 @@
+package engine;
+
+import org.junit.jupiter.api.Test;
+import uci.SearchInfo;
+import uci.SearchInfoListener;
+import uci.SearchLimits;
+import uci.StockfishClient;
+import uci.UciPosition;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JavaEngineTest {
+
+    @Test
+    void findsMateInOne() throws Exception {
+        JavaEngine engine = new JavaEngine();
+        StockfishClient.AnalysisResult result = engine.analyzePosition(
+            UciPosition.fromFen("6k1/5ppp/8/8/8/8/5PPP/R5K1 w - - 0 1"), SearchLimits.depth(4), null);
+        assertEquals("a1a8", result.bestMove);
+        assertEquals(Integer.valueOf(1), result.mate);
+        assertEquals(10000, result.scoreCp);
+    }
+
+    @Test
+    void winsHangingMaterialAndStreamsDepths() throws Exception {
+        JavaEngine engine = new JavaEngine();
+        List<SearchInfo> infos = new ArrayList<>();
+        SearchInfoListener listener = infos::add;
+        StockfishClient.AnalysisResult result = engine.analyzePosition(
+            UciPosition.of(null, List.of("e2e4", "d7d5", "g1f3", "d8d6", "f3e5", "d6e5")),
+            SearchLimits.depth(5), listener);
+        assertNotEquals("d2d4", result.bestMove);
+        assertTrue(result.scoreCp < -300, "White is a knight down: " + result.scoreCp);
+        assertEquals(5, result.depth());
+        assertEquals(5, infos.size());
+        assertEquals(List.of(1, 2, 3, 4, 5), infos.stream().map(info -> info.depth).toList());
+    }
+
+    @Test
+    void ranksMultipleLinesAndRespectsMoveTime() throws Exception {
+        JavaEngine engine = new JavaEngine();
+        long started = System.nanoTime();
+        StockfishClient.AnalysisResult result = engine.analyzeLines(UciPosition.startpos(),
+            SearchLimits.moveTime(Duration.ofMillis(300)), 3, null);
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        assertTrue(elapsedMillis < 1_500, "took " + elapsedMillis + " ms");
+        assertEquals(3, result.lines.size());
+        assertEquals(result.bestMove, result.lines.get(0).move);
+        assertTrue(result.lines.get(0).scoreCp >= result.lines.get(1).scoreCp);
+        assertTrue(result.lines.get(1).scoreCp >= result.lines.get(2).scoreCp);
+        assertEquals(3, result.lines.stream().map(line -> line.move).distinct().count());
+    }
+
+    @Test
+    void reportsNoMoveWhenMatedAndRejectsIllegalMoves() throws Exception {
+        JavaEngine engine = new JavaEngine();
+        StockfishClient.AnalysisResult mated = engine.analyzePosition(
+            UciPosition.of(null, List.of("f2f3", "e7e5", "g2g4", "d8h4")), SearchLimits.depth(3), null);
+        assertNull(mated.bestMove);
+        assertEquals(Integer.valueOf(0), mated.mate);
+        assertThrows(java.io.IOException.class, () -> engine.analyzePosition(
+            UciPosition.of(null, List.of("e2e5")), SearchLimits.depth(1), null));
+    }
+
+    @Test
+    void weakenedEngineStillPlaysLegalMovesQuickly() throws Exception {
+        JavaEngine engine = new JavaEngine();
+        engine.setTargetElo(800);
+        UciPosition position = UciPosition.startpos();
+        for (int ply = 0; ply < 20; ply++) {
+            StockfishClient.AnalysisResult result = engine.analyzePosition(position,
+                SearchLimits.moveTime(Duration.ofMillis(50)), null);
+            if (result.bestMove == null) {
+                break;
+            }
+            assertNotEquals(Position.NO_MOVE, Position.of(position.startFen(), position.moves())
+                .parseUciMove(result.bestMove));
+            position.push(result.bestMove);
+        }
+    }
+
+    @Test
+    void helperThreadsShareTheTableAndStopWithTheMainSearch() throws Exception {
+        JavaEngine engine = new JavaEngine();
+        engine.setThreads(4);
+        assertEquals(4, engine.threads());
+        StockfishClient.AnalysisResult mate = engine.analyzePosition(
+            UciPosition.fromFen("6k1/5ppp/8/8/8/8/5PPP/R5K1 w - - 0 1"), SearchLimits.depth(6), null);
+        assertEquals("a1a8", mate.bestMove);
+
+        long started = System.nanoTime();
+        StockfishClient.AnalysisResult timed = engine.analyzePosition(UciPosition.startpos(),
+            SearchLimits.moveTime(Duration.ofMillis(300)), null);
+        long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+        assertTrue(elapsedMillis < 1_500, "took " + elapsedMillis + " ms");
+        assertNotNull(timed.bestMove);
+        assertTrue(timed.finalInfo.hashfull > 0);
+        engine.close();
+        assertEquals(1, engine.threads());
+    }
+}
@@ -0,0 +1,104 @@
+package engine;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import uci.SearchLimits;
+import uci.StockfishClient;
+import uci.UciPosition;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lazy SMP scaling of the built-in engine on a fixed suite of positions:
+ * {@code timeToDepth} is the time to search every position to a fixed
+ * depth, {@code nodesPerSecond} reports the summed node rate of all threads
+ * as its {@code nodes} counter. Each search starts from an empty table.
+ *
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main LazySmpBenchmark -p threads=1,2,4,8"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class LazySmpBenchmark {
+
+    static final List<String> SUITE = List.of(
+        Position.START_FEN,
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+        "r1bq1rk1/pp2bppp/2n1pn2/3p4/2PP4/2N1PN2/PP1B1PPP/R2QKB1R w KQ - 0 8",
+        "2rq1rk1/pp1bppbp/2np1np1/8/3NP3/1BN1BP2/PPPQ2PP/2KR3R b - - 0 11",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+        "6k1/p4p1p/1p4p1/3r4/8/1P3KP1/P4P1P/3R4 w - - 0 30");
+
+    @Param({"1", "2", "4"})
+    public int threads;
+
+    @Param({"7"})
+    public int depth;
+
+    private JavaEngine engine;
+
+    @Setup
+    public void start() {
+        engine = new JavaEngine();
+        engine.setThreads(threads);
+    }
+
+    @TearDown
+    public void close() {
+        engine.close();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Nodes {
+        public long nodes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            nodes = 0;
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    public long timeToDepth() throws IOException {
+        return searchSuite();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public void nodesPerSecond(Nodes counter) throws IOException {
+        counter.nodes += searchSuite();
+    }
+
+    private long searchSuite() throws IOException {
+        long nodes = 0;
+        for (String fen : SUITE) {
+            engine.newGame();
+            StockfishClient.AnalysisResult result = engine.analyzePosition(UciPosition.fromFen(fen),
+                SearchLimits.depth(depth), null);
+            nodes += result.finalInfo.nodes;
+        }
+        return nodes;
+    }
+}
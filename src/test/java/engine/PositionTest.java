@@ -0,0 +1,94 @@
+package engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PositionTest {
+
+    private static long perft(Position position, int depth) {
+        if (depth == 0) {
+            return 1;
+        }
+        int[] moves = new int[Position.MAX_MOVES];
+        int count = position.generateMoves(moves, false);
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            if (position.makeMove(moves[i])) {
+                total += perft(position, depth - 1);
+                position.unmakeMove();
+            }
+        }
+        return total;
+    }
+
+    @Test
+    void perftMatchesKnownCounts() {
+        assertEquals(197_281, perft(Position.startpos(), 4));
+        assertEquals(97_862, perft(Position.fromFen(
+            "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1"), 3));
+        assertEquals(43_238, perft(Position.fromFen("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1"), 4));
+        assertEquals(9_467, perft(Position.fromFen(
+            "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1"), 3));
+        assertEquals(62_379, perft(Position.fromFen(
+            "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8"), 3));
+    }
+
+    @Test
+    void unmakeRestoresFenAndKey() {
+        Position position = Position.fromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1");
+        String fen = position.toFen();
+        long key = position.key();
+        for (int move : position.legalMoves()) {
+            position.makeMove(move);
+            assertEquals(Position.fromFen(position.toFen()).key(), position.key(), Position.toUci(move));
+            position.unmakeMove();
+            assertEquals(fen, position.toFen());
+            assertEquals(key, position.key());
+        }
+    }
+
+    @Test
+    void playsUciMovesIncludingCastlingEnPassantAndPromotion() {
+        Position position = Position.of(null, List.of("e2e4", "g8f6", "e4e5", "d7d5", "e5d6", "e7d6", "g1f3",
+            "f8e7", "f1c4", "e8g8"));
+        assertEquals("rnbq1rk1/ppp1bppp/3p1n2/8/2B5/5N2/PPPP1PPP/RNBQK2R w KQ - 4 6", position.toFen());
+        Position promotion = Position.fromFen("8/1P6/8/8/8/8/6k1/4K3 w - - 0 1");
+        assertTrue(promotion.makeMove(promotion.parseUciMove("b7b8n")));
+        assertEquals("1N6/8/8/8/8/8/6k1/4K3 b - - 0 1", promotion.toFen());
+        assertEquals(Position.NO_MOVE, Position.startpos().parseUciMove("e2e5"));
+        assertThrows(IllegalArgumentException.class, () -> Position.of(null, List.of("e2e4", "e2e4")));
+    }
+
+    @Test
+    void detectsRepetitionThroughGameHistory() {
+        Position position = Position.of(null, List.of("g1f3", "g8f6", "f3g1", "f6g8"));
+        assertTrue(position.isRepetitionOrFiftyMoves());
+        assertFalse(Position.startpos().isRepetitionOrFiftyMoves());
+    }
+
+    @Test
+    void incrementalEvaluationMatchesAFullRecount() {
+        Position position = Position.fromFen("r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1");
+        assertEvaluationInSync(position, 3);
+        assertEquals(0, Position.startpos().evaluation());
+        assertTrue(Position.fromFen("4k3/8/8/8/8/8/4P3/4K3 w - - 0 1").evaluation() > 100);
+    }
+
+    private static void assertEvaluationInSync(Position position, int depth) {
+        int[] totals = Evaluator.totals(position.board);
+        assertEquals(totals[0], position.middlegame, position.toFen());
+        assertEquals(totals[1], position.endgame, position.toFen());
+        assertEquals(totals[2], position.phase, position.toFen());
+        if (depth == 0) {
+            return;
+        }
+        for (int move : position.legalMoves()) {
+            position.makeMove(move);
+            assertEvaluationInSync(position, depth - 1);
+            position.unmakeMove();
+        }
+    }
+}
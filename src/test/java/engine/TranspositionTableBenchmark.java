@@ -0,0 +1,108 @@
+package engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Probe and store throughput of the shared transposition table, alone and
+ * with readers and writers hammering the same table as search threads do.
+ * Keys are drawn from a working set a few times larger than the table so
+ * both hits and replacements occur.
+ *
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main TranspositionTableBenchmark"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TranspositionTableBenchmark {
+
+    private static final int KEY_COUNT = 1 << 20;
+
+    @Param({"16", "256"})
+    public int megabytes;
+
+    private TranspositionTable table;
+    private long[] keys;
+
+    @Setup
+    public void fill() {
+        table = new TranspositionTable(megabytes);
+        keys = new long[KEY_COUNT];
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = random.nextLong();
+            table.store(keys[i], i & 0xFFF, i & 0x3FF, i & 15, TranspositionTable.BOUND_EXACT);
+        }
+    }
+
+    /**
+     * Each benchmark thread walks the key set from its own seed.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        private int next = (int) (Thread.currentThread().getId() * 7919);
+
+        int nextIndex() {
+            next = next * 1_103_515_245 + 12_345;
+            return (next >>> 8) & (KEY_COUNT - 1);
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long probeSingleThread(Cursor cursor) {
+        return table.probe(keys[cursor.nextIndex()]);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void storeSingleThread(Cursor cursor) {
+        int i = cursor.nextIndex();
+        table.store(keys[i], i & 0xFFF, i & 0x3FF, i & 15, TranspositionTable.BOUND_LOWER);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long probeContended(Cursor cursor) {
+        return table.probe(keys[cursor.nextIndex()]);
+    }
+
+    /**
+     * Roughly the mix seen in search: several probes per store.
+     */
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(3)
+    public long mixedProbe(Cursor cursor) {
+        return table.probe(keys[cursor.nextIndex()]);
+    }
+
+    @Benchmark
+    @Group("mixed")
+    @GroupThreads(1)
+    public void mixedStore(Cursor cursor) {
+        int i = cursor.nextIndex();
+        table.store(keys[i], i & 0xFFF, i & 0x3FF, i & 15, TranspositionTable.BOUND_UPPER);
+    }
+}
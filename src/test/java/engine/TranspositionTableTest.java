@@ -0,0 +1,80 @@
+package engine;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TranspositionTableTest {
+
+    @Test
+    void packsEveryField() {
+        TranspositionTable table = new TranspositionTable(1);
+        int move = Position.move(12, 28, 0, Position.FLAG_DOUBLE_PUSH);
+        table.store(0x1234_5678_9ABC_DEF0L, move, -Search.MATE + 3, 17, TranspositionTable.BOUND_LOWER);
+        long entry = table.probe(0x1234_5678_9ABC_DEF0L);
+        assertEquals(move, TranspositionTable.move(entry));
+        assertEquals(-Search.MATE + 3, TranspositionTable.score(entry));
+        assertEquals(17, TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.BOUND_LOWER, TranspositionTable.bound(entry));
+        assertEquals(TranspositionTable.NO_ENTRY, table.probe(0x1234_5678_9ABC_DEF1L));
+        assertEquals(1024 * 1024, table.sizeBytes());
+    }
+
+    @Test
+    void deepEntriesSurviveShallowOnesOfTheSameSearch() {
+        TranspositionTable table = new TranspositionTable(1);
+        long buckets = table.capacity() / 2;
+        long deep = 5;
+        long shallow = deep + buckets;
+        long newer = deep + 2 * buckets;
+        table.store(deep, 1, 10, 9, TranspositionTable.BOUND_EXACT);
+        table.store(shallow, 2, 20, 3, TranspositionTable.BOUND_EXACT);
+        table.store(newer, 3, 30, 2, TranspositionTable.BOUND_EXACT);
+        assertEquals(9, TranspositionTable.depth(table.probe(deep)));
+        assertEquals(TranspositionTable.NO_ENTRY, table.probe(shallow), "the always-replace slot was reused");
+        assertEquals(3, TranspositionTable.move(table.probe(newer)));
+
+        table.newSearch();
+        table.store(shallow, 2, 20, 1, TranspositionTable.BOUND_UPPER);
+        assertEquals(TranspositionTable.NO_ENTRY, table.probe(deep), "an old search gives way");
+        assertEquals(2, TranspositionTable.move(table.probe(shallow)));
+    }
+
+    @Test
+    void keepsTheBestMoveWhenAnUpperBoundHasNone() {
+        TranspositionTable table = new TranspositionTable(1);
+        table.store(42, 7, 10, 4, TranspositionTable.BOUND_EXACT);
+        table.store(42, Position.NO_MOVE, -5, 6, TranspositionTable.BOUND_UPPER);
+        long entry = table.probe(42);
+        assertEquals(7, TranspositionTable.move(entry));
+        assertEquals(6, TranspositionTable.depth(entry));
+    }
+
+    @Test
+    void concurrentWritersNeverProduceAMismatchedEntry() throws Exception {
+        TranspositionTable table = new TranspositionTable(1);
+        long buckets = table.capacity() / 2;
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            int id = t + 1;
+            writers[t] = new Thread(() -> {
+                for (int i = 0; i < 200_000; i++) {
+                    long key = (i % 8) * buckets + 3;
+                    // every writer stores a move derived from the key
+                    table.store(key, (int) (key & 0xFFFF), id, i & 63, TranspositionTable.BOUND_EXACT);
+                }
+            });
+            writers[t].start();
+        }
+        for (int i = 0; i < 200_000; i++) {
+            long key = (i % 8) * buckets + 3;
+            long entry = table.probe(key);
+            if (entry != TranspositionTable.NO_ENTRY) {
+                assertEquals((int) (key & 0xFFFF), TranspositionTable.move(entry));
+            }
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package main;
+
+import analysis.ReviewArchive;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import uci.FakeUciEngine;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchAnalysisTest {
+
+    private static final String TWO_GAMES = """
+        [Event "First"]
+        [White "Anna"]
+        [Black "Ben"]
+        [Result "*"]
+
+        1. e4 e5 2. Nf3 *
+
+        [Event "Second"]
+        [White "Carl"]
+        [Black "Dora"]
+        [Result "*"]
+
+        1. d4 d5 *
+        """;
+
+    private static final List<String> ENGINE = FakeUciEngine.command("--bestmoves", "e2e4");
+
+    @TempDir
+    static Path tempDir;
+
+    @TempDir
+    Path out;
+
+    @BeforeAll
+    static void writeGames() throws Exception {
+        System.setProperty("chess.analysisCache", tempDir.resolve("analysis-cache.bin").toString());
+        System.setProperty("chess.bitbases", tempDir.resolve("bitbases").toString());
+        Files.createDirectories(tempDir.resolve("games/club"));
+        Files.writeString(tempDir.resolve("games/club/games.pgn"), TWO_GAMES);
+    }
+
+    @Test
+    void writesOneJsonReviewPerGameUnderTheInputDirectory() throws Exception {
+        assertEquals(0, run("--format", "json"));
+
+        String first = Files.readString(out.resolve("club/games-1.json"));
+        assertTrue(first.contains("\"game\": 1"));
+        assertTrue(first.contains("\"Event\": \"First\""));
+        assertTrue(first.contains("\"san\": \"Nf3\""));
+        assertTrue(Files.readString(out.resolve("club/games-2.json")).contains("\"Event\": \"Second\""));
+    }
+
+    @Test
+    void csvGetsASummaryRowPerGameInInputOrder() throws Exception {
+        assertEquals(0, run("--format", "csv"));
+
+        List<String> entries = Files.readAllLines(out.resolve("club/games-1.csv"));
+        assertEquals(4, entries.size(), "header and three plies");
+        assertTrue(entries.get(3).startsWith("2,white,Nf3,g1f3,"));
+        List<String> summary = Files.readAllLines(out.resolve("summary.csv"));
+        assertEquals(3, summary.size());
+        assertTrue(summary.get(1).startsWith("club/games-1,Anna,Ben,"));
+        assertTrue(summary.get(2).startsWith("club/games-2,Carl,Dora,"));
+    }
+
+    @Test
+    void binAppendsEveryReviewToOneArchive() throws Exception {
+        assertEquals(0, run("--format", "bin"));
+        assertEquals(0, run("--format", "bin"));
+
+        List<String> events = new ArrayList<>();
+        try (ReviewArchive.Reader reader = ReviewArchive.Reader.open(out.resolve("reviews.bin"))) {
+            for (ReviewArchive.Record record; (record = reader.next()) != null; ) {
+                events.add(record.tags.get("Event"));
+            }
+        }
+        assertEquals(4, events.size());
+        assertEquals(2, events.stream().filter("Second"::equals).count());
+        try (var files = Files.list(out)) {
+            assertEquals(List.of(out.resolve("reviews.bin")), files.toList());
+        }
+    }
+
+    @Test
+    void singleFileIsNamedFromItsOwnDirectory() throws Exception {
+        assertEquals(0, BatchAnalysis.run(new String[] {tempDir.resolve("games/club/games.pgn").toString(),
+            "--out", out.toString(), "--workers", "1", "--movetime", "20", "--first-pass", "0"}, ENGINE));
+
+        assertTrue(Files.exists(out.resolve("games-1.json")));
+        assertTrue(Files.exists(out.resolve("games-2.json")));
+    }
+
+    @Test
+    void rejectsBadArguments() throws Exception {
+        assertEquals(2, BatchAnalysis.run(new String[] {"--format", "xml", "games"}, ENGINE));
+        assertEquals(2, BatchAnalysis.run(new String[] {"games", "--workers"}, ENGINE));
+        assertEquals(2, BatchAnalysis.run(new String[] {}, ENGINE));
+        assertEquals(1, BatchAnalysis.run(new String[] {tempDir.resolve("games").toString()}, null));
+    }
+
+    private int run(String... options) throws Exception {
+        List<String> args = new ArrayList<>(List.of(tempDir.resolve("games").toString(), "--out", out.toString(),
+            "--workers", "2", "--movetime", "20", "--first-pass", "0"));
+        args.addAll(List.of(options));
+        return BatchAnalysis.run(args.toArray(new String[0]), ENGINE);
+    }
+}
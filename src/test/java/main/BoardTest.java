@@ -12,6 +12,7 @@ class BoardTest {
 
     static {
         System.setProperty("java.awt.headless", "true");
+        System.setProperty("chess.builtinEngine", "false");
     }
 
     @Test
@@ -0,0 +1,72 @@
+package uci;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EnginePoolTest {
+
+    private static final EngineProfile PROFILE = new EngineProfile(EngineProfile.UseCase.BATCH_WORKER, 1, 16, 1);
+
+    @Test
+    void reusesReturnedEngines() throws Exception {
+        try (EnginePool pool = new EnginePool(FakeUciEngine.command("--bestmoves", "e2e4"), 2)) {
+            StockfishClient first;
+            try (EnginePool.Lease lease = pool.borrow(PROFILE)) {
+                first = lease.client();
+                assertEquals("e2e4", first.requestBestMove(UciPosition.startpos(), Duration.ofMillis(20)));
+            }
+            long started = System.nanoTime();
+            try (EnginePool.Lease lease = pool.borrow(PROFILE)) {
+                assertSame(first, lease.client());
+                assertEquals("e2e4", lease.client().requestBestMove(UciPosition.startpos(), Duration.ofMillis(20)));
+            }
+            assertTrue(System.nanoTime() - started < TimeUnit.SECONDS.toNanos(1));
+            assertEquals(1, pool.startedCount());
+            assertEquals(1, pool.idleCount());
+        }
+    }
+
+    @Test
+    void discardedEnginesAreNotLentAgain() throws Exception {
+        try (EnginePool pool = new EnginePool(FakeUciEngine.command("--bestmoves", "e2e4"), 1)) {
+            StockfishClient first;
+            try (EnginePool.Lease lease = pool.borrow(PROFILE)) {
+                first = lease.client();
+                lease.discard();
+            }
+            try (EnginePool.Lease lease = pool.borrow(PROFILE)) {
+                assertNotSame(first, lease.client());
+            }
+            assertEquals(2, pool.startedCount());
+        }
+    }
+
+    @Test
+    void borrowersWaitWhileThePoolIsFull() throws Exception {
+        try (EnginePool pool = new EnginePool(FakeUciEngine.command("--bestmoves", "e2e4"), 1)) {
+            EnginePool.Lease held = pool.borrow(PROFILE);
+            CountDownLatch borrowed = new CountDownLatch(1);
+            AtomicReference<StockfishClient> second = new AtomicReference<>();
+            Thread waiter = new Thread(() -> {
+                try (EnginePool.Lease lease = pool.borrow(PROFILE)) {
+                    second.set(lease.client());
+                    borrowed.countDown();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            waiter.start();
+            assertFalse(borrowed.await(200, TimeUnit.MILLISECONDS));
+            held.close();
+            assertTrue(borrowed.await(5, TimeUnit.SECONDS));
+            waiter.join();
+            assertSame(held.client(), second.get());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package uci;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EngineProfileTest {
+
+    private static final int[] CORE_COUNTS = {1, 2, 3, 4, 6, 8, 12, 16, 24, 32, 64, 128};
+    private static final long MEMORY_MB = 8192;
+
+    @Test
+    void liveEnginesAndBackgroundReviewShareTheCores() {
+        for (int cores : CORE_COUNTS) {
+            int live = profile(EngineProfile.UseCase.LIVE_PLAY, 1, cores).threads;
+            int liveEvaluation = profile(EngineProfile.UseCase.LIVE_EVALUATION, 1, cores).threads;
+            // the GUI review runs one engine per background thread
+            int reviewers = profile(EngineProfile.UseCase.BACKGROUND_ANALYSIS, 1, cores).threads;
+            for (int workers = 1; workers <= reviewers; workers++) {
+                int each = profile(EngineProfile.UseCase.BACKGROUND_ANALYSIS, workers, cores).threads;
+                int engines = 2 + workers;
+                assertWithinCores(cores, engines, live + liveEvaluation + workers * each,
+                    "live + live evaluation + " + workers + " reviewers");
+            }
+        }
+    }
+
+    @Test
+    void batchWorkersLeaveTheLiveShareFree() {
+        for (int cores : CORE_COUNTS) {
+            int live = profile(EngineProfile.UseCase.LIVE_PLAY, 1, cores).threads;
+            for (int workers = 1; workers <= EngineProfile.maxBatchWorkers(cores); workers++) {
+                int each = profile(EngineProfile.UseCase.BATCH_WORKER, workers, cores).threads;
+                assertWithinCores(cores, 1 + workers, live + workers * each, "live + " + workers + " batch workers");
+            }
+        }
+    }
+
+    @Test
+    void largeMachinesGiveEveryUseCaseItsShare() {
+        assertEquals(8, profile(EngineProfile.UseCase.LIVE_PLAY, 1, 64).threads);
+        assertEquals(8, profile(EngineProfile.UseCase.LIVE_EVALUATION, 1, 64).threads);
+        assertEquals(32, profile(EngineProfile.UseCase.BACKGROUND_ANALYSIS, 1, 64).threads);
+        assertEquals(56, profile(EngineProfile.UseCase.BATCH_WORKER, 1, 64).threads);
+        assertEquals(56, EngineProfile.maxBatchWorkers(64));
+    }
+
+    private static EngineProfile profile(EngineProfile.UseCase useCase, int engines, int cores) {
+        EngineProfile profile = EngineProfile.forMachine(useCase, engines, cores, MEMORY_MB);
+        assertTrue(profile.threads >= 1, profile + " on " + cores + " cores");
+        return profile;
+    }
+
+    /**
+     * Every engine needs at least one thread, so only a machine with fewer
+     * cores than engines may be oversubscribed, and then only with one
+     * thread per engine.
+     */
+    private static void assertWithinCores(int cores, int engines, int threads, String what) {
+        assertTrue(threads <= Math.max(cores, engines),
+            what + " take " + threads + " threads on " + cores + " cores");
+    }
+}
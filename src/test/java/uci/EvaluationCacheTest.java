@@ -0,0 +1,58 @@
+package uci;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EvaluationCacheTest {
+
+    private static StockfishClient.AnalysisResult result(String move, int depth) {
+        SearchInfo info = new SearchInfo(depth, depth, 1, 20, null, false, false, 1000, 1000, 0, 10,
+            List.of(move, "e7e5"));
+        return new StockfishClient.AnalysisResult(move, 20, null, info.principalVariation, info, null,
+            List.of(StockfishClient.PvLine.from(info)));
+    }
+
+    @Test
+    void servesDeeperResultsForShallowerRequests() {
+        EvaluationCache cache = EvaluationCache.withMegabytes(1);
+        cache.store(1, 0, 1, SearchLimits.depth(18), result("e2e4", 18));
+
+        assertNotNull(cache.lookup(1, 0, 1, SearchLimits.depth(12)));
+        assertNull(cache.lookup(1, 0, 1, SearchLimits.depth(20)));
+        assertNull(cache.lookup(1, 0, 3, SearchLimits.depth(12)), "MultiPV count is part of the key");
+        assertNull(cache.lookup(1, 7, 1, SearchLimits.depth(12)), "engine options are part of the key");
+        assertEquals(1, cache.getHits());
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    void matchesMoveTimeByClass() {
+        EvaluationCache cache = EvaluationCache.withMegabytes(1);
+        cache.store(1, 0, 1, SearchLimits.moveTime(Duration.ofMillis(1000)), result("d2d4", 15));
+
+        assertNotNull(cache.lookup(1, 0, 1, SearchLimits.moveTime(Duration.ofMillis(800))));
+        assertNotNull(cache.lookup(1, 0, 1, SearchLimits.moveTime(Duration.ofMillis(600))));
+        assertNull(cache.lookup(1, 0, 1, SearchLimits.moveTime(Duration.ofMillis(3000))));
+        assertTrue(EvaluationCache.isCacheable(SearchLimits.clock(60000, 60000, 0, 0, 0)));
+        assertNotNull(cache.lookup(1, 0, 1, SearchLimits.clock(30000, 30000, 0, 0, 0)), "~1 s per move expected");
+        assertNull(cache.lookup(1, 0, 1, SearchLimits.clock(300000, 300000, 0, 0, 0)), "~10 s per move expected");
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedWithinBudget() {
+        EvaluationCache cache = new EvaluationCache(2000);
+        cache.store(1, 0, 1, SearchLimits.depth(10), result("e2e4", 10));
+        cache.store(2, 0, 1, SearchLimits.depth(10), result("d2d4", 10));
+        cache.lookup(1, 0, 1, SearchLimits.depth(10));
+        cache.store(3, 0, 1, SearchLimits.depth(10), result("c2c4", 10));
+
+        assertTrue(cache.estimatedBytes() <= 2000);
+        assertNotNull(cache.lookup(1, 0, 1, SearchLimits.depth(10)));
+        assertNull(cache.lookup(2, 0, 1, SearchLimits.depth(10)));
+        assertNotNull(cache.lookup(3, 0, 1, SearchLimits.depth(10)));
+    }
+}
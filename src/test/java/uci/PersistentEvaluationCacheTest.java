@@ -0,0 +1,131 @@
+package uci;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PersistentEvaluationCacheTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static StockfishClient.AnalysisResult result(int depth) {
+        SearchInfo best = new SearchInfo(depth, depth, 1, 35, null, false, false, 1000, 1000, 0, 900,
+            List.of("e2e4", "e7e5", "g1f3", "b8c6"));
+        SearchInfo second = new SearchInfo(depth, depth, 2, -40, null, false, false, 1000, 1000, 0, 900,
+            List.of("a7a8q", "b7b5"));
+        return new StockfishClient.AnalysisResult("e2e4", 35, null, best.principalVariation, best, "e7e5",
+            List.of(StockfishClient.PvLine.from(best), StockfishClient.PvLine.from(second)));
+    }
+
+    @Test
+    void packsMovesIncludingPromotions() {
+        for (String move : List.of("e2e4", "a7a8q", "h2h1n", "e1g1", "b7c8r")) {
+            assertEquals(move, PersistentEvaluationCache.unpackMove(PersistentEvaluationCache.packMove(move)));
+        }
+        assertEquals(0, PersistentEvaluationCache.packMove("(none)"));
+    }
+
+    @Test
+    void entriesSurviveReopening() throws Exception {
+        Path file = tempDir.resolve("cache.bin");
+        long key = PersistentEvaluationCache.slotKey(42, 7, 2);
+        try (PersistentEvaluationCache cache = PersistentEvaluationCache.open(file, 1)) {
+            cache.store(key, 0, 0, result(20));
+        }
+        try (PersistentEvaluationCache cache = PersistentEvaluationCache.open(file, 1)) {
+            StockfishClient.AnalysisResult cached = cache.lookup(key, SearchLimits.depth(18));
+            assertNotNull(cached);
+            assertEquals("e2e4", cached.bestMove);
+            assertEquals(35, cached.scoreCp);
+            assertEquals(20, cached.depth());
+            assertEquals(List.of("e2e4", "e7e5", "g1f3", "b8c6"), cached.principalVariation);
+            assertEquals(2, cached.lines.size());
+            assertEquals("a7a8q", cached.lines.get(1).move);
+            assertEquals(75, cached.gapToSecondBest());
+            assertNull(cache.lookup(key, SearchLimits.depth(22)));
+            assertNull(cache.lookup(PersistentEvaluationCache.slotKey(42, 7, 1), SearchLimits.depth(18)));
+        }
+    }
+
+    @Test
+    void transposedMoveOrderHitsAfterReopening() throws Exception {
+        Path file = tempDir.resolve("cache.bin");
+        UciPosition stored = UciPosition.of(null, List.of("g1f3", "g8f6", "b1c3"));
+        UciPosition transposed = UciPosition.of(null, List.of("b1c3", "g8f6", "g1f3"));
+        try (PersistentEvaluationCache cache = PersistentEvaluationCache.open(file, 1)) {
+            cache.store(PersistentEvaluationCache.slotKey(stored.positionKey(), 7, 2), 0, 0, result(20));
+        }
+        try (PersistentEvaluationCache cache = PersistentEvaluationCache.open(file, 1)) {
+            assertNotNull(cache.lookup(PersistentEvaluationCache.slotKey(transposed.positionKey(), 7, 2),
+                SearchLimits.depth(18)));
+        }
+    }
+
+    @Test
+    void tornSlotReadsAsEmptyAndWrongVersionIsReset() throws Exception {
+        Path file = tempDir.resolve("cache.bin");
+        long key = PersistentEvaluationCache.slotKey(1, 0, 1);
+        try (PersistentEvaluationCache cache = PersistentEvaluationCache.open(file, 1)) {
+            cache.store(key, 0, 0, result(12));
+            assertEquals(1, cache.size());
+        }
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            for (long slot = 64; slot < raw.length(); slot += 128) {
+                raw.seek(slot);
+                if (raw.readLong() != 0) {
+                    raw.seek(slot + 20);
+                    raw.writeInt(999);
+                }
+            }
+        }
+        try (PersistentEvaluationCache cache = PersistentEvaluationCache.open(file, 1)) {
+            assertNull(cache.lookup(key, SearchLimits.depth(1)));
+            cache.store(key, 0, 0, result(12));
+            assertNotNull(cache.lookup(key, SearchLimits.depth(1)));
+        }
+        try (RandomAccessFile raw = new RandomAccessFile(file.toFile(), "rw")) {
+            raw.seek(8);
+            raw.writeInt(Integer.reverseBytes(99));
+        }
+        try (PersistentEvaluationCache cache = PersistentEvaluationCache.open(file, 1)) {
+            assertEquals(0, cache.size());
+        }
+    }
+
+    @Test
+    void keepsTheEnginesBestMoveWhenItDiffersFromThePv() throws Exception {
+        SearchInfo info = new SearchInfo(9, 9, 1, 20, null, false, false, 1000, 1000, 0, 50,
+            List.of("d2d4", "d7d5"));
+        StockfishClient.AnalysisResult stopped = new StockfishClient.AnalysisResult("e2e4", 20, null,
+            info.principalVariation, info, null, List.of(StockfishClient.PvLine.from(info)));
+        long key = PersistentEvaluationCache.slotKey(3, 0, 1);
+        try (PersistentEvaluationCache cache = PersistentEvaluationCache.open(tempDir.resolve("cache.bin"), 1)) {
+            cache.store(key, 0, 0, stopped);
+            StockfishClient.AnalysisResult cached = cache.lookup(key, SearchLimits.depth(9));
+            assertEquals("e2e4", cached.bestMove);
+            assertEquals(List.of("d2d4", "d7d5"), cached.principalVariation);
+            assertNull(cached.ponderMove);
+        }
+    }
+
+    @Test
+    void diskHitsKeepTheLimitClassTheyWereSearchedWith() throws Exception {
+        try (PersistentEvaluationCache disk = PersistentEvaluationCache.open(tempDir.resolve("cache.bin"), 1)) {
+            new EvaluationCache(1 << 20, disk).store(5, 0, 1, SearchLimits.moveTime(Duration.ofSeconds(4)), result(20));
+
+            EvaluationCache restarted = new EvaluationCache(1 << 20, disk);
+            assertNotNull(restarted.lookup(5, 0, 1, SearchLimits.moveTime(Duration.ofMillis(500))));
+            assertNotNull(restarted.lookup(5, 0, 1, SearchLimits.moveTime(Duration.ofSeconds(4))));
+            assertEquals(2, restarted.getHits());
+            // the second hit came from memory
+            assertEquals(1, restarted.getDiskHits());
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package uci;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SearchInfoTest {
+
+    @Test
+    void parsesFullInfoLine() {
+        SearchInfo info = SearchInfo.parse("info depth 18 seldepth 24 multipv 1 score cp 31 nodes 912345 "
+            + "nps 1200000 hashfull 42 tbhits 0 time 760 pv e2e4 e7e5 g1f3");
+
+        assertNotNull(info);
+        assertEquals(18, info.depth);
+        assertEquals(24, info.selDepth);
+        assertEquals(1, info.multiPv);
+        assertEquals(31, info.scoreCp);
+        assertNull(info.mate);
+        assertEquals(912345, info.nodes);
+        assertEquals(1200000, info.nps);
+        assertEquals(42, info.hashfull);
+        assertEquals(760, info.timeMillis);
+        assertEquals(List.of("e2e4", "e7e5", "g1f3"), info.principalVariation);
+    }
+
+    @Test
+    void parsesMateAndBounds() {
+        SearchInfo info = SearchInfo.parse("info depth 9 score mate -3 upperbound nodes 100 pv h7h8q");
+
+        assertNotNull(info);
+        assertEquals(-3, info.mate);
+        assertTrue(info.upperBound);
+        assertEquals(-10000, info.effectiveScoreCp());
+    }
+
+    @Test
+    void ignoresLinesWithoutScore() {
+        assertNull(SearchInfo.parse("info depth 12 currmove e2e4 currmovenumber 1"));
+        assertNull(SearchInfo.parse("info string NNUE evaluation using nn-abc.nnue"));
+        assertNull(SearchInfo.parse("bestmove e2e4"));
+    }
+
+    @Test
+    void coalescerForwardsOneUpdatePerDepthAndFlushesOnCompletion() {
+        List<SearchInfo> received = new ArrayList<>();
+        SearchInfoCoalescer coalescer = new SearchInfoCoalescer(received::add, Duration.ofHours(1));
+
+        coalescer.onInfo(SearchInfo.parse("info depth 1 score cp 10 pv e2e4"));
+        coalescer.onInfo(SearchInfo.parse("info depth 1 score cp 12 pv d2d4"));
+        coalescer.onInfo(SearchInfo.parse("info depth 2 score cp 15 pv e2e4"));
+        coalescer.onInfo(SearchInfo.parse("info depth 2 score cp 18 lowerbound pv e2e4"));
+        assertEquals(2, received.size());
+
+        coalescer.onSearchComplete(new StockfishClient.AnalysisResult("e2e4", 18, null, List.of()));
+        assertEquals(3, received.size());
+        assertEquals(18, received.get(2).scoreCp);
+    }
+
+    @Test
+    void coalescerFlushesTheSuppressedLineOfEveryRank() {
+        List<SearchInfo> received = new ArrayList<>();
+        SearchInfoCoalescer coalescer = new SearchInfoCoalescer(received::add, Duration.ofHours(1));
+
+        coalescer.onInfo(SearchInfo.parse("info depth 5 multipv 1 score cp 30 pv e2e4"));
+        coalescer.onInfo(SearchInfo.parse("info depth 5 multipv 2 score cp 20 pv d2d4"));
+        coalescer.onInfo(SearchInfo.parse("info depth 5 multipv 2 score cp 22 pv d2d4"));
+        coalescer.onInfo(SearchInfo.parse("info depth 5 multipv 1 score cp 33 pv e2e4"));
+        assertEquals(2, received.size());
+
+        coalescer.onSearchComplete(new StockfishClient.AnalysisResult("e2e4", 33, null, List.of()));
+        assertEquals(4, received.size());
+        assertEquals(33, received.get(2).scoreCp);
+        assertEquals(22, received.get(3).scoreCp);
+    }
+
+    @Test
+    void coalescerFlushesTheFinalLineOfASkippedSecondRank() {
+        List<SearchInfo> received = new ArrayList<>();
+        SearchInfoCoalescer coalescer = new SearchInfoCoalescer(received::add, Duration.ofHours(1));
+
+        coalescer.onInfo(SearchInfo.parse("info depth 5 multipv 1 score cp 30 pv e2e4"));
+        coalescer.onInfo(SearchInfo.parse("info depth 5 multipv 2 score cp 20 pv d2d4"));
+        assertFalse(coalescer.wantsInfo(2, 5, System.nanoTime()));
+        assertEquals(2, received.size());
+
+        SearchInfo best = SearchInfo.parse("info depth 5 multipv 1 score cp 30 pv e2e4");
+        coalescer.onSearchComplete(new StockfishClient.AnalysisResult("e2e4", 30, null, List.of("e2e4"), best, null,
+            List.of(StockfishClient.PvLine.from(best),
+                new StockfishClient.PvLine(2, "d2d4", 24, null, 5, List.of("d2d4", "d7d5")))));
+        assertEquals(3, received.size());
+        SearchInfo flushed = received.get(2);
+        assertEquals(2, flushed.multiPv);
+        assertEquals(24, flushed.scoreCp);
+        assertEquals(List.of("d2d4", "d7d5"), flushed.principalVariation);
+    }
+}
@@ -0,0 +1,149 @@
+package uci;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StockfishClientTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void answersWithScriptedBestMovesInOrder() throws Exception {
+        try (StockfishClient client = new StockfishClient(FakeUciEngine.command("--bestmoves", "e2e4,d2d4"))) {
+            UciPosition position = UciPosition.startpos();
+            assertEquals("e2e4", client.requestBestMove(position, Duration.ofMillis(50)));
+            position.push("e2e4");
+            position.push("e7e5");
+            assertEquals("d2d4", client.requestBestMove(position, Duration.ofMillis(50)));
+        }
+    }
+
+    @Test
+    void repeatedSearchIsServedFromCache() throws Exception {
+        try (StockfishClient client = new StockfishClient(FakeUciEngine.command("--bestmoves", "e2e4,d2d4"))) {
+            EvaluationCache cache = EvaluationCache.withMegabytes(1);
+            client.setEvaluationCache(cache);
+            UciPosition position = UciPosition.startpos();
+            assertEquals("e2e4", client.requestBestMove(position, Duration.ofMillis(50)));
+            assertEquals("e2e4", client.requestBestMove(position.copy(), Duration.ofMillis(50)));
+            assertEquals(1, cache.getHits());
+            assertEquals(1, cache.getMisses());
+
+            client.setSkillLevel(3);
+            assertEquals("d2d4", client.requestBestMove(position, Duration.ofMillis(50)));
+        }
+    }
+
+    @Test
+    void transposedMoveOrderIsServedFromCache() throws Exception {
+        try (StockfishClient client = new StockfishClient(FakeUciEngine.command("--bestmoves", "e7e5,d7d5"))) {
+            EvaluationCache cache = EvaluationCache.withMegabytes(1);
+            client.setEvaluationCache(cache);
+            UciPosition viaKingsideFirst = UciPosition.of(null, List.of("g1f3", "g8f6", "b1c3"));
+            UciPosition viaQueensideFirst = UciPosition.of(null, List.of("b1c3", "g8f6", "g1f3"));
+            assertNotEquals(viaKingsideFirst.key(), viaQueensideFirst.key());
+            assertEquals(viaKingsideFirst.positionKey(), viaQueensideFirst.positionKey());
+
+            assertEquals("e7e5", client.requestBestMove(viaKingsideFirst, Duration.ofMillis(50)));
+            assertEquals("e7e5", client.requestBestMove(viaQueensideFirst, Duration.ofMillis(50)));
+            assertEquals(1, cache.getHits());
+            assertEquals(1, cache.getMisses());
+        }
+    }
+
+    @Test
+    void replaysRecordedSearches() throws Exception {
+        Path transcript = Path.of(getClass().getResource("/transcripts/synthetic-middlegame.txt").toURI());
+        try (StockfishClient client = new StockfishClient(
+                FakeUciEngine.command("--transcript", transcript.toString()))) {
+            List<SearchInfo> infos = new ArrayList<>();
+            StockfishClient.AnalysisResult first = client.analyzePosition(UciPosition.startpos(),
+                SearchLimits.moveTime(Duration.ofSeconds(1)), infos::add);
+            assertEquals("c7a2", first.bestMove);
+            assertEquals("b6a4", first.ponderMove);
+            assertEquals(24, first.depth());
+            assertEquals(-12, first.scoreCp);
+            assertFalse(infos.isEmpty());
+
+            StockfishClient.AnalysisResult second = client.analyzeLines(UciPosition.of(null, List.of("d2d4")),
+                SearchLimits.moveTime(Duration.ofMillis(800)), 3, null);
+            assertEquals("a8e2", second.bestMove);
+            assertEquals(3, second.lines.size());
+            assertEquals(30, second.gapToSecondBest());
+        }
+    }
+
+    @Test
+    void recordedTranscriptReplaysTheSameSession() throws Exception {
+        Path recording = tempDir.resolve("session.txt");
+        try (StockfishClient client = new StockfishClient(FakeUciEngine.command("--bestmoves", "g1f3"))) {
+            client.recordTranscript(recording);
+            client.requestBestMove(UciPosition.startpos(), Duration.ofMillis(50));
+        }
+        List<String> lines = Files.readAllLines(recording);
+        assertTrue(lines.contains("> position startpos"));
+        assertTrue(lines.contains("< bestmove g1f3"));
+
+        try (StockfishClient replay = new StockfishClient(
+                FakeUciEngine.command("--transcript", recording.toString()))) {
+            assertEquals("g1f3", replay.requestBestMove(UciPosition.startpos(), Duration.ofMillis(50)));
+        }
+    }
+
+    @Test
+    void restartsHungEngineAndFallsBackToLastLine() throws Exception {
+        try (StockfishClient client = new StockfishClient(
+                FakeUciEngine.command("--bestmoves", "e2e4", "--hang"))) {
+            List<String> restarts = new ArrayList<>();
+            client.setRestartListener(restarts::add);
+            client.setSkillLevel(5);
+
+            long started = System.nanoTime();
+            StockfishClient.AnalysisResult result = client.analyzePosition(UciPosition.startpos(),
+                Duration.ofMillis(100));
+            long elapsedMillis = (System.nanoTime() - started) / 1_000_000;
+
+            assertEquals("e2e4", result.bestMove);
+            assertEquals(1, client.getRestartCount());
+            assertEquals(1, restarts.size());
+            assertTrue(elapsedMillis < 10_000, "took " + elapsedMillis + " ms");
+        }
+    }
+
+    @Test
+    void infiniteSearchRunsUntilStoppedEvenIfTheStopComesFirst() throws Exception {
+        try (StockfishClient client = new StockfishClient(FakeUciEngine.command("--bestmoves", "e2e4"))) {
+            // queued: the search has not been sent yet
+            client.stopInfinite();
+            StockfishClient.AnalysisResult result = client.analyzeLines(UciPosition.startpos(),
+                SearchLimits.infinite(), 1, null);
+            assertEquals("e2e4", result.bestMove);
+
+            List<SearchInfo> infos = new ArrayList<>();
+            Thread stopper = new Thread(() -> {
+                try {
+                    Thread.sleep(200);
+                    client.stopInfinite();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            long started = System.nanoTime();
+            stopper.start();
+            result = client.analyzeLines(UciPosition.startpos(), SearchLimits.infinite(), 1, infos::add);
+            stopper.join();
+            assertEquals("e2e4", result.bestMove);
+            assertFalse(infos.isEmpty());
+            assertTrue(System.nanoTime() - started >= 150_000_000L, "returned before the stop");
+        }
+    }
+}
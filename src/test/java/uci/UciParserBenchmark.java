@@ -0,0 +1,102 @@
+package uci;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays the engine side ({@code <} lines) of a transcript through the old
+ * String-based parsing and through the byte-level reader/parser.
+ *
+ * <pre>
+ * mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test \
+ *     -Dexec.args="-cp %classpath org.openjdk.jmh.Main UciParserBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UciParserBenchmark {
+
+    @Param({"transcripts/synthetic-middlegame.txt"})
+    public String transcript;
+
+    private byte[] engineOutput;
+    private final UciInfoParser parser = new UciInfoParser();
+    private final UciInfoParser.Snapshot snapshot = new UciInfoParser.Snapshot();
+
+    @Setup
+    public void load() throws IOException {
+        engineOutput = engineSide(transcript);
+    }
+
+    @Benchmark
+    public void stringLines(Blackhole bh) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+            new ByteArrayInputStream(engineOutput), StandardCharsets.US_ASCII));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.startsWith("info ")) {
+                bh.consume(SearchInfo.parse(line));
+            } else {
+                bh.consume(line);
+            }
+        }
+    }
+
+    @Benchmark
+    public void byteLines(Blackhole bh) throws IOException {
+        UciLineReader reader = new UciLineReader(new ByteArrayInputStream(engineOutput), 16 * 1024);
+        while (reader.readLine()) {
+            if (UciInfoParser.isInfo(reader)
+                && parser.parse(reader.buffer(), reader.lineStart(), reader.lineEnd())) {
+                parser.copyTo(snapshot);
+                bh.consume(snapshot.depth);
+            }
+        }
+        bh.consume(snapshot.toSearchInfo());
+    }
+
+    /**
+     * Extracts what the engine printed: the text of every {@code <} line.
+     */
+    static byte[] engineSide(String resource) throws IOException {
+        try (InputStream in = UciParserBenchmark.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("Missing transcript " + resource);
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("<")) {
+                    String text = line.length() > 2 ? line.substring(2) : "";
+                    out.write(text.getBytes(StandardCharsets.US_ASCII));
+                    out.write('\n');
+                }
+            }
+            return out.toByteArray();
+        }
+    }
+}